@@ -0,0 +1,103 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.jsweet.transpiler.JSweetContext;
+import org.jsweet.transpiler.JSweetProblem;
+import org.jsweet.transpiler.JSweetTranspiler;
+import org.jsweet.transpiler.OverloadScanner;
+import org.jsweet.transpiler.SourceFile;
+import org.jsweet.transpiler.TranspilationHandler;
+import org.jsweet.transpiler.util.JavaCompilationEnvironment;
+import org.jsweet.transpiler.util.Util;
+
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+
+/**
+ * A corpus of Java sources, parsed and attributed once by <code>javac</code>,
+ * so that the benchmarks only measure the JSweet code.
+ */
+class BenchmarkCorpus {
+
+	/**
+	 * The directory containing the test sources used as benchmark corpora.
+	 */
+	static final String SOURCE_DIRECTORY_NAME = "src/test/java/source";
+
+	/**
+	 * A transpilation handler that ignores all the reported problems.
+	 */
+	static final TranspilationHandler SILENT_HANDLER = new TranspilationHandler() {
+		@Override
+		public void report(JSweetProblem problem, SourcePosition sourcePosition, String message) {
+		}
+
+		@Override
+		public void onCompleted(JSweetTranspiler transpiler, boolean fullPass, SourceFile[] files) {
+		}
+
+		@Override
+		public void reportSilentError() {
+		}
+	};
+
+	final JSweetContext context;
+	final List<JCCompilationUnit> compilationUnits;
+
+	/**
+	 * Parses and attributes the Java files found in the given directories
+	 * (relative to {@link #SOURCE_DIRECTORY_NAME}).
+	 */
+	BenchmarkCorpus(String... directories) throws IOException {
+		LinkedList<File> files = new LinkedList<>();
+		for (String directory : directories) {
+			Util.addFiles(".java", new File(SOURCE_DIRECTORY_NAME, directory), files);
+		}
+		JavaCompilationEnvironment environment = JavaCompilationEnvironment.create(System.getProperty("java.class.path"));
+		environment.log.dumpOnError = false;
+		compilationUnits = environment.parseAndAttributeJavaFiles(files);
+		context = environment.context;
+		context.sourceFiles = SourceFile.toSourceFiles(files);
+	}
+
+	/**
+	 * Runs the overload scanner on all the compilation units in one pass, as
+	 * done by the transpiler before printing.
+	 */
+	void scanOverloads() {
+		context.overloads = Collections.emptyMap();
+		new OverloadScanner(context).process(compilationUnits);
+	}
+
+	/**
+	 * Clears the names registered in the context while printing, so that
+	 * each printing pass starts from the same state.
+	 */
+	void clearPrintingState() {
+		for (JCCompilationUnit cu : compilationUnits) {
+			context.clearImportedNames(cu.packge);
+		}
+		context.globalImports.clear();
+	}
+
+}
@@ -0,0 +1,74 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.jsweet.transpiler.candies.CandiesProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the processing of the candies found in the classpath: cold (empty
+ * working directory) and warm (up-to-date candies store, as in a subsequent
+ * launcher run).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CandiesProcessorBenchmark {
+
+	private File coldWorkingDir;
+	private File warmWorkingDir;
+
+	@Setup(Level.Trial)
+	public void setupTrial() throws Exception {
+		File root = new File("target/benchmarks/candies");
+		coldWorkingDir = new File(root, "cold");
+		warmWorkingDir = new File(root, "warm");
+		FileUtils.deleteQuietly(warmWorkingDir);
+		new CandiesProcessor(warmWorkingDir, null).processCandies();
+	}
+
+	@Setup(Level.Invocation)
+	public void setupInvocation() {
+		FileUtils.deleteQuietly(coldWorkingDir);
+	}
+
+	@Benchmark
+	public CandiesProcessor cold() throws Exception {
+		CandiesProcessor processor = new CandiesProcessor(coldWorkingDir, null);
+		processor.processCandies();
+		return processor;
+	}
+
+	@Benchmark
+	public CandiesProcessor warm() throws Exception {
+		CandiesProcessor processor = new CandiesProcessor(warmWorkingDir, null);
+		processor.processCandies();
+		return processor;
+	}
+
+}
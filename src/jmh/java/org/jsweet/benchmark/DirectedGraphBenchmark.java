@@ -0,0 +1,69 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jsweet.transpiler.util.DirectedGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the topological sort on large synthetic acyclic graphs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DirectedGraphBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	public int size;
+
+	@Param({ "4" })
+	public int edgesPerNode;
+
+	private DirectedGraph<Integer> graph;
+
+	@Setup
+	public void setup() {
+		graph = new DirectedGraph<>();
+		for (int i = 0; i < size; i++) {
+			graph.add(i);
+		}
+		// edges always go to a greater node, so that the graph is acyclic
+		Random random = new Random(size);
+		for (int i = 0; i < size - 1; i++) {
+			for (int j = 0; j < edgesPerNode; j++) {
+				graph.addEdge(i, i + 1 + random.nextInt(Math.min(size - i - 1, 100)));
+			}
+		}
+	}
+
+	@Benchmark
+	public List<Integer> topologicalSort() {
+		return graph.topologicalSort(null);
+	}
+
+}
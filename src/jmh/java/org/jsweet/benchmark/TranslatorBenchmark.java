@@ -0,0 +1,68 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jsweet.transpiler.typescript.Java2TypeScriptTranslator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+
+/**
+ * Measures the printing of attributed compilation units to TypeScript.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TranslatorBenchmark {
+
+	/**
+	 * The corpus directory, relative to
+	 * {@link BenchmarkCorpus#SOURCE_DIRECTORY_NAME}.
+	 */
+	@Param({ "blocksgame", "structural", "syntax", "generics", "overload", "typing", "init" })
+	public String corpus;
+
+	private BenchmarkCorpus sources;
+
+	@Setup
+	public void setup() throws Exception {
+		sources = new BenchmarkCorpus(corpus);
+		sources.scanOverloads();
+	}
+
+	@Benchmark
+	public int print() {
+		sources.clearPrintingState();
+		int length = 0;
+		for (JCCompilationUnit cu : sources.compilationUnits) {
+			Java2TypeScriptTranslator printer = new Java2TypeScriptTranslator(BenchmarkCorpus.SILENT_HANDLER, sources.context, cu, false);
+			printer.print(cu);
+			length += printer.getOutput().length();
+		}
+		return length;
+	}
+
+}
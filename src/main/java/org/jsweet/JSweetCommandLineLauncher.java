@@ -19,8 +19,13 @@ package org.jsweet;
 import static org.jsweet.transpiler.TranspilationHandler.OUTPUT_LOGGER;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -28,6 +33,7 @@ import org.jsweet.transpiler.JSweetProblem;
 import org.jsweet.transpiler.JSweetTranspiler;
 import org.jsweet.transpiler.ModuleKind;
 import org.jsweet.transpiler.SourceFile;
+import org.jsweet.transpiler.TranspilationHandler;
 import org.jsweet.transpiler.util.ConsoleTranspilationHandler;
 import org.jsweet.transpiler.util.ErrorCountTranspilationHandler;
 import org.jsweet.transpiler.util.Util;
@@ -73,37 +79,101 @@ public class JSweetCommandLineLauncher {
 				LogManager.getLogger("org.jsweet").setLevel(Level.ALL);
 			}
 
-			JSweetConfig.initClassPath(jsapArgs.getString("jdkHome"));
+			if (jsapArgs.getBoolean("stopDaemon")) {
+				if (!JSweetDaemon.stop()) {
+					OUTPUT_LOGGER.info("no running daemon");
+				}
+				System.exit(0);
+			}
+
+			if (jsapArgs.getBoolean("daemon")) {
+				JSweetConfig.initClassPath(jsapArgs.getString("jdkHome"));
+				new JSweetDaemon(jsapArgs.getString("jdkHome")).run();
+				System.exit(0);
+			}
+
+			if (jsapArgs.getString("input") == null) {
+				System.out.println("Error: Parameter 'input' is required.");
+				printUsage(jsapSpec);
+				System.exit(-1);
+			}
+
+			if (!jsapArgs.getBoolean("noDaemon")) {
+				Integer exitCode = JSweetDaemon.forward(args);
+				if (exitCode != null) {
+					System.exit(exitCode);
+				}
+			}
 
-			String classPath = jsapArgs.getString("classpath");
-			logger.info("classpath: " + classPath);
+			JSweetConfig.initClassPath(jsapArgs.getString("jdkHome"));
 
-			File tsOutputDir = jsapArgs.getFile("tsout");
-			tsOutputDir.mkdirs();
-			logger.info("ts output dir: " + tsOutputDir);
+			errorCount = transpile(jsapArgs, new File("").getAbsoluteFile(), new HashMap<>(), new ConsoleTranspilationHandler());
+		} catch (Throwable t) {
+			t.printStackTrace();
+			System.exit(1);
+		}
+		System.exit(errorCount > 0 ? 1 : 0);
+	}
 
-			File jsOutputDir = null;
-			if (jsapArgs.getFile("jsout") != null) {
-				jsOutputDir = jsapArgs.getFile("jsout");
-				jsOutputDir.mkdirs();
+	/**
+	 * Transpiles the input files with the given command line arguments.
+	 * 
+	 * @param jsapArgs
+	 *            the parsed command line arguments
+	 * @param currentDir
+	 *            the directory to resolve relative paths against
+	 * @param transpilers
+	 *            the transpilers that can be reused, by output directories and
+	 *            classpath (the created transpilers are added to this map)
+	 * @param handler
+	 *            the transpilation handler to report problems to
+	 * @return the error count
+	 */
+	static int transpile(JSAPResult jsapArgs, File currentDir, Map<String, JSweetTranspiler> transpilers, TranspilationHandler handler)
+			throws IOException {
+		String classPath = jsapArgs.getString("classpath");
+		if (classPath != null) {
+			String[] classPathEntries = classPath.split(File.pathSeparator);
+			for (int i = 0; i < classPathEntries.length; i++) {
+				classPathEntries[i] = resolve(currentDir, new File(classPathEntries[i])).getPath();
 			}
-			logger.info("js output dir: " + jsOutputDir);
+			classPath = StringUtils.join(classPathEntries, File.pathSeparator);
+		}
+		logger.info("classpath: " + classPath);
 
-			File inputDir = new File(jsapArgs.getString("input"));
-			logger.info("input dir: " + inputDir);
+		File tsOutputDir = resolve(currentDir, jsapArgs.getFile("tsout"));
+		tsOutputDir.mkdirs();
+		logger.info("ts output dir: " + tsOutputDir);
 
-			LinkedList<File> files = new LinkedList<File>();
-			Util.addFiles(".java", inputDir, files);
+		File jsOutputDir = null;
+		if (jsapArgs.getFile("jsout") != null) {
+			jsOutputDir = resolve(currentDir, jsapArgs.getFile("jsout"));
+			jsOutputDir.mkdirs();
+		}
+		logger.info("js output dir: " + jsOutputDir);
+
+		File inputDir = resolve(currentDir, new File(jsapArgs.getString("input")));
+		logger.info("input dir: " + inputDir);
 
-			ErrorCountTranspilationHandler transpilationHandler = new ErrorCountTranspilationHandler(new ConsoleTranspilationHandler());
-			try {
-				JSweetTranspiler transpiler = new JSweetTranspiler(tsOutputDir, jsOutputDir, classPath);
+		LinkedList<File> files = new LinkedList<File>();
+		Util.addFiles(".java", inputDir, files);
 
+		ErrorCountTranspilationHandler transpilationHandler = new ErrorCountTranspilationHandler(handler);
+		try {
+			File workingDir = new File(currentDir, JSweetTranspiler.TMP_WORKING_DIR_NAME);
+			File finalJsOutputDir = jsOutputDir;
+			String finalClassPath = classPath;
+			JSweetTranspiler transpiler = transpilers.computeIfAbsent(workingDir + File.pathSeparator + tsOutputDir + File.pathSeparator + jsOutputDir
+					+ File.pathSeparator + classPath, key -> new JSweetTranspiler(workingDir, tsOutputDir, finalJsOutputDir, finalClassPath));
+
+			// the options and the transpilation of a request must not interleave
+			// with the ones of another request sharing the same transpiler
+			synchronized (transpiler) {
 				transpiler.setBundle(jsapArgs.getBoolean("bundle"));
 				transpiler.setNoRootDirectories(jsapArgs.getBoolean("noRootDirectories"));
 				File bundlesDirectory = null;
 				if (jsapArgs.getFile("bundlesDirectory") != null) {
-					bundlesDirectory = jsapArgs.getFile("bundlesDirectory");
+					bundlesDirectory = resolve(currentDir, jsapArgs.getFile("bundlesDirectory"));
 					bundlesDirectory.getParentFile().mkdirs();
 				}
 				logger.info("bundles directory: " + bundlesDirectory);
@@ -112,30 +182,55 @@ public class JSweetCommandLineLauncher {
 				transpiler.setModuleKind(ModuleKind.valueOf(jsapArgs.getString("module")));
 				transpiler.setEncoding(jsapArgs.getString("encoding"));
 				transpiler.setIgnoreAssertions(jsapArgs.getBoolean("ignoreAssertions"));
+				transpiler.setTranspilationThreads(jsapArgs.getInt("jobs"));
+				transpiler.setIncremental(jsapArgs.getBoolean("incremental"));
+				transpiler.setUseTscService(jsapArgs.getBoolean("tscService"));
+				transpiler.setGenerateJsDirectly(jsapArgs.getBoolean("directJs"));
+				transpiler.setBoundedMemory(jsapArgs.getBoolean("boundedMemory"));
+				transpiler.setSharedCandiesCacheDirectory(
+						jsapArgs.getBoolean("sharedCandiesCache") ? JSweetTranspiler.DEFAULT_SHARED_CANDIES_CACHE_DIRECTORY : null);
+				File translationCacheDirectory = null;
+				if (jsapArgs.getFile("translationCache") != null) {
+					translationCacheDirectory = resolve(currentDir, jsapArgs.getFile("translationCache"));
+				}
+				transpiler.setTranslationCacheDirectory(translationCacheDirectory);
+				transpiler.setTranslationCacheSize(jsapArgs.getInt("translationCacheSize") * 1024L * 1024L);
 
 				transpiler.transpile(transpilationHandler, SourceFile.toSourceFiles(files));
-			} catch (NoClassDefFoundError error) {
-				transpilationHandler.report(JSweetProblem.JAVA_COMPILER_NOT_FOUND, null, JSweetProblem.JAVA_COMPILER_NOT_FOUND.getMessage());
+
+				if (jsapArgs.getString("metrics") != null) {
+					String report = transpiler.getLastMetrics().toJson();
+					if (jsapArgs.getFile("metricsFile") != null) {
+						File metricsFile = resolve(currentDir, jsapArgs.getFile("metricsFile"));
+						FileUtils.write(metricsFile, report);
+						logger.info("metrics written to " + metricsFile);
+					} else {
+						OUTPUT_LOGGER.info(report);
+					}
+				}
 			}
+		} catch (NoClassDefFoundError error) {
+			transpilationHandler.report(JSweetProblem.JAVA_COMPILER_NOT_FOUND, null, JSweetProblem.JAVA_COMPILER_NOT_FOUND.getMessage());
+		}
 
-			errorCount = transpilationHandler.getErrorCount();
-			if (errorCount > 0) {
-				OUTPUT_LOGGER.info("transpilation failed with " + errorCount + " error(s) and " + transpilationHandler.getWarningCount() + " warning(s)");
+		int errorCount = transpilationHandler.getErrorCount();
+		if (errorCount > 0) {
+			OUTPUT_LOGGER.info("transpilation failed with " + errorCount + " error(s) and " + transpilationHandler.getWarningCount() + " warning(s)");
+		} else {
+			if (transpilationHandler.getWarningCount() > 0) {
+				OUTPUT_LOGGER.info("transpilation completed with " + transpilationHandler.getWarningCount() + " warning(s)");
 			} else {
-				if (transpilationHandler.getWarningCount() > 0) {
-					OUTPUT_LOGGER.info("transpilation completed with " + transpilationHandler.getWarningCount() + " warning(s)");
-				} else {
-					OUTPUT_LOGGER.info("transpilation successfully completed with no errors and no warnings");
-				}
+				OUTPUT_LOGGER.info("transpilation successfully completed with no errors and no warnings");
 			}
-		} catch (Throwable t) {
-			t.printStackTrace();
-			System.exit(1);
 		}
-		System.exit(errorCount > 0 ? 1 : 0);
+		return errorCount;
+	}
+
+	private static File resolve(File currentDir, File file) {
+		return file.isAbsolute() ? file : new File(currentDir, file.getPath());
 	}
 
-	private static JSAP defineArgs() throws JSAPException {
+	static JSAP defineArgs() throws JSAPException {
 		// Verbose output
 		JSAP jsap = new JSAP();
 		Switch switchArg;
@@ -179,8 +274,8 @@ public class JSweetCommandLineLauncher {
 		optionArg.setShortFlag('i');
 		optionArg.setLongFlag("input");
 		optionArg.setStringParser(JSAP.STRING_PARSER);
-		optionArg.setRequired(true);
-		optionArg.setHelp("An input dir containing Java files to be transpiled.");
+		optionArg.setRequired(false);
+		optionArg.setHelp("An input dir containing Java files to be transpiled (required, except when starting or stopping the daemon).");
 		jsap.registerParameter(optionArg);
 
 		// Skip empty root dirs
@@ -260,7 +355,115 @@ public class JSweetCommandLineLauncher {
 				"Set the transpiler to ignore 'assert' statements, i.e. no code is generated for assertions.");
 		switchArg.setDefault("false");
 		jsap.registerParameter(switchArg);
-		
+
+		// Number of threads
+		optionArg = new FlaggedOption("jobs");
+		optionArg.setLongFlag("jobs");
+		optionArg.setShortFlag('j');
+		optionArg.setStringParser(JSAP.INTEGER_PARSER);
+		optionArg.setDefault("1");
+		optionArg.setRequired(false);
+		optionArg.setHelp(
+				"The number of threads used to generate the TypeScript code from the Java compilation units. The generated code does not depend on the number of threads.");
+		jsap.registerParameter(optionArg);
+
+		// Incremental transpilation
+		switchArg = new Switch("incremental");
+		switchArg.setLongFlag("incremental");
+		switchArg.setHelp(
+				"Only translate the Java files that have changed since the last transpilation, and the files that depend on them. The dependencies are stored in the working directory. Ignored when generating bundles.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// TypeScript compiler service
+		switchArg = new Switch("tscService");
+		switchArg.setLongFlag("tscService");
+		switchArg.setHelp(
+				"Compile the generated TypeScript files with a persistent TypeScript compiler service, which keeps the TypeScript program in memory and only emits the changed files. Mostly useful with --daemon, where the service is kept alive between the transpilations.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// Direct JavaScript generation
+		switchArg = new Switch("directJs");
+		switchArg.setLongFlag("directJs");
+		switchArg.setHelp(
+				"Generate ES5 JavaScript files directly from the Java sources, without generating TypeScript files (node and tsc are not required). Cannot be used with modules, and no source maps are generated.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// Bounded memory
+		switchArg = new Switch("boundedMemory");
+		switchArg.setLongFlag("boundedMemory");
+		switchArg.setHelp(
+				"Attribute and translate the Java files package by package, and release the method bodies of each package once written, so that the attribution and printing memory grows with the largest package rather than with the whole project (all the files are still parsed up front). Disables the parallel printing (see --jobs).");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// Shared candies cache
+		switchArg = new Switch("sharedCandiesCache");
+		switchArg.setLongFlag("sharedCandiesCache");
+		switchArg.setHelp(
+				"Process the candies in a cache shared by all the projects of the user (in ~/.jsweet/shared-candies), so that the builds depending on the same candies, including concurrent ones, process them only once.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// Translation cache
+		optionArg = new FlaggedOption("translationCache");
+		optionArg.setLongFlag("translationCache");
+		optionArg.setHelp(
+				"A directory where to cache the code generated for the Java files, so that the files already translated (by this project or by another one sharing the directory) are not translated again. Ignored when generating bundles.");
+		optionArg.setStringParser(FileStringParser.getParser());
+		optionArg.setRequired(false);
+		jsap.registerParameter(optionArg);
+
+		// Translation cache size
+		optionArg = new FlaggedOption("translationCacheSize");
+		optionArg.setLongFlag("translationCacheSize");
+		optionArg.setStringParser(JSAP.INTEGER_PARSER);
+		optionArg.setDefault("" + JSweetTranspiler.DEFAULT_TRANSLATION_CACHE_SIZE / (1024 * 1024));
+		optionArg.setRequired(false);
+		optionArg.setHelp("The maximum size of the translation cache in megabytes, over which the least recently used entries are removed (see --translationCache).");
+		jsap.registerParameter(optionArg);
+
+		// Metrics
+		optionArg = new FlaggedOption("metrics");
+		optionArg.setLongFlag("metrics");
+		optionArg.setHelp(
+				"Report the metrics of the transpilation (duration and heap usage of each phase, printing duration of each file, counters) in the given format. The report is printed on the output, unless --metricsFile is specified.");
+		optionArg.setStringParser(EnumeratedStringParser.getParser("json"));
+		optionArg.setRequired(false);
+		jsap.registerParameter(optionArg);
+
+		// Metrics file
+		optionArg = new FlaggedOption("metricsFile");
+		optionArg.setLongFlag("metricsFile");
+		optionArg.setHelp("The file where to write the metrics report (see --metrics).");
+		optionArg.setStringParser(FileStringParser.getParser());
+		optionArg.setRequired(false);
+		jsap.registerParameter(optionArg);
+
+		// Daemon
+		switchArg = new Switch("daemon");
+		switchArg.setLongFlag("daemon");
+		switchArg.setHelp(
+				"Start a transpiler daemon that keeps the transpilers loaded and listens to the local launchers. While the daemon is running, the launcher forwards the transpilation requests to the daemon (see --noDaemon). The daemon saves the JVM startup and keeps the class path jars opened, but the Java compiler and its symbol tables are rebuilt for each request.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// No daemon
+		switchArg = new Switch("noDaemon");
+		switchArg.setLongFlag("noDaemon");
+		switchArg.setHelp("Transpile within the launcher process, even if a transpiler daemon is running.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// Stop daemon
+		switchArg = new Switch("stopDaemon");
+		switchArg.setLongFlag("stopDaemon");
+		switchArg.setHelp("Stop the running transpiler daemon.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
 		return jsap;
 	}
 
@@ -0,0 +1,537 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet;
+
+import static org.jsweet.transpiler.TranspilationHandler.OUTPUT_LOGGER;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MDC;
+import org.apache.log4j.spi.LoggingEvent;
+import org.jsweet.transpiler.JSweetProblem;
+import org.jsweet.transpiler.JSweetTranspiler;
+import org.jsweet.transpiler.SourceFile;
+import org.jsweet.transpiler.TranspilationHandler;
+import org.jsweet.transpiler.util.ConsoleTranspilationHandler;
+
+import com.google.gson.Gson;
+import com.martiansoftware.jsap.JSAPResult;
+
+/**
+ * A transpiler daemon that keeps the transpilers (and the loaded classes)
+ * alive between the launcher invocations.
+ * 
+ * <p>
+ * The daemon listens on a loopback socket, which port is written in
+ * {@link #DAEMON_FILE} together with a secret that the clients must send. A
+ * request is a JSON line containing the client's command line arguments and
+ * current directory. The daemon answers with JSON lines: the problems reported
+ * during the transpilation, the transpiler output messages, and finally the
+ * exit code. A request that the daemon cannot honor (for instance because it
+ * asks for another JDK than the daemon's one) is rejected, and the launcher
+ * then transpiles by itself.
+ * 
+ * <p>
+ * The requests for the same output directories share the same transpiler and
+ * are executed one after the other. The daemon keeps at most
+ * {@link #MAX_TRANSPILERS} transpilers, the least recently used ones being
+ * released first.
+ * 
+ * @see JSweetCommandLineLauncher
+ */
+public class JSweetDaemon {
+
+	private static final Logger logger = Logger.getLogger(JSweetDaemon.class);
+
+	private static final Gson gson = new Gson();
+
+	/**
+	 * The file that holds the information to connect to the running daemon.
+	 */
+	public static final File DAEMON_FILE = new File(System.getProperty("user.home"),
+			JSweetTranspiler.TMP_WORKING_DIR_NAME + File.separator + "daemon.json");
+
+	/**
+	 * The maximum number of transpilers kept by the daemon.
+	 */
+	public static final int MAX_TRANSPILERS = 8;
+
+	/**
+	 * The logging context key that holds the id of the request being served
+	 * by the current thread.
+	 */
+	private static final String REQUEST_ID_KEY = "jsweet.daemon.request";
+
+	/**
+	 * The information to connect to a daemon.
+	 */
+	static class DaemonInfo {
+		int port;
+		String secret;
+	}
+
+	/**
+	 * A request sent to the daemon.
+	 */
+	static class Request {
+		String secret;
+		boolean stop;
+		String currentDir;
+		String[] args;
+	}
+
+	/**
+	 * A message sent back by the daemon.
+	 */
+	static class Message {
+		static final String PROBLEM = "problem";
+		static final String OUTPUT = "output";
+		static final String EXIT = "exit";
+		static final String REJECTED = "rejected";
+
+		String type;
+		String problem;
+		String level;
+		String message;
+		String file;
+		int startPosition;
+		int endPosition;
+		int startLine;
+		int startColumn;
+		int endLine;
+		int endColumn;
+		int exitCode;
+	}
+
+	@SuppressWarnings("serial")
+	private final Map<String, JSweetTranspiler> transpilers = Collections.synchronizedMap(new LinkedHashMap<String, JSweetTranspiler>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, JSweetTranspiler> eldest) {
+			if (size() > MAX_TRANSPILERS) {
+				release(eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	});
+	private final DaemonInfo info = new DaemonInfo();
+	private final File daemonFile;
+	private final File jdkHome;
+	private final AtomicLong requestCount = new AtomicLong();
+	private ServerSocket serverSocket;
+	private volatile boolean stopped = false;
+
+	/**
+	 * Creates a daemon that writes its connection information in
+	 * {@link #DAEMON_FILE}.
+	 * 
+	 * @param jdkHome
+	 *            the JDK home directory the daemon was started with (null if
+	 *            none was given)
+	 */
+	public JSweetDaemon(String jdkHome) {
+		this(jdkHome, DAEMON_FILE);
+	}
+
+	/**
+	 * Creates a daemon.
+	 * 
+	 * @param jdkHome
+	 *            the JDK home directory the daemon was started with (null if
+	 *            none was given)
+	 * @param daemonFile
+	 *            the file where to write the information to connect to the
+	 *            daemon
+	 */
+	public JSweetDaemon(String jdkHome, File daemonFile) {
+		this.jdkHome = jdkHome == null ? null : new File(jdkHome).getAbsoluteFile();
+		this.daemonFile = daemonFile;
+	}
+
+	/**
+	 * Releases the resources of an evicted transpiler, once its ongoing
+	 * transpilation (if any) is done.
+	 */
+	private static void release(JSweetTranspiler transpiler) {
+		logger.info("releasing transpiler " + transpiler.getTsOutputDir());
+		Thread releaser = new Thread(() -> {
+			synchronized (transpiler) {
+				transpiler.setUseTscService(false);
+			}
+		} , "jsweet-transpiler-release");
+		releaser.setDaemon(true);
+		releaser.start();
+	}
+
+	/**
+	 * Tells why the given request cannot be served by this daemon.
+	 * 
+	 * @return the reason, or null if the request can be served
+	 */
+	private String getRejectionReason(JSAPResult jsapArgs, File currentDir) throws IOException {
+		if (jsapArgs.getBoolean("verbose")) {
+			return "the daemon cannot transpile in verbose mode";
+		}
+		String requestedJdkHome = jsapArgs.getString("jdkHome");
+		if (requestedJdkHome != null) {
+			File requested = new File(requestedJdkHome);
+			if (!requested.isAbsolute()) {
+				requested = new File(currentDir, requestedJdkHome);
+			}
+			if (jdkHome == null || !jdkHome.getCanonicalFile().equals(requested.getCanonicalFile())) {
+				return "the daemon was not started with JDK home " + requested;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Runs the daemon until it is stopped.
+	 * 
+	 * @see #stop()
+	 */
+	public void run() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		info.port = serverSocket.getLocalPort();
+		info.secret = new BigInteger(130, new SecureRandom()).toString(32);
+		writeDaemonInfo(daemonFile, info);
+		OUTPUT_LOGGER.info("transpiler daemon listening on port " + info.port);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			while (!stopped) {
+				Socket socket;
+				try {
+					socket = serverSocket.accept();
+				} catch (SocketException e) {
+					if (stopped) {
+						break;
+					}
+					throw e;
+				}
+				executor.execute(() -> handle(socket));
+			}
+		} finally {
+			executor.shutdown();
+			DaemonInfo currentInfo = readDaemonInfo(daemonFile);
+			if (currentInfo != null && currentInfo.port == info.port) {
+				FileUtils.deleteQuietly(daemonFile);
+			}
+			OUTPUT_LOGGER.info("transpiler daemon stopped");
+		}
+	}
+
+	private void handle(Socket socket) {
+		try (Socket s = socket;
+				BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+				PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+			Request request = gson.fromJson(in.readLine(), Request.class);
+			if (request == null || !info.secret.equals(request.secret)) {
+				logger.warn("rejected request from " + s.getRemoteSocketAddress());
+				return;
+			}
+			if (request.stop) {
+				send(out, exitMessage(0));
+				stopped = true;
+				serverSocket.close();
+				return;
+			}
+			logger.info("request: " + String.join(" ", request.args));
+			JSAPResult jsapArgs = JSweetCommandLineLauncher.defineArgs().parse(request.args);
+			String rejectionReason = getRejectionReason(jsapArgs, new File(request.currentDir));
+			if (rejectionReason != null) {
+				logger.info("rejected request: " + rejectionReason);
+				Message message = new Message();
+				message.type = Message.REJECTED;
+				message.message = rejectionReason;
+				send(out, message);
+				return;
+			}
+			// the thread pools of a transpilation are created by the request
+			// thread, so that their threads inherit the request id
+			String requestId = String.valueOf(requestCount.incrementAndGet());
+			MDC.put(REQUEST_ID_KEY, requestId);
+			OutputForwarder outputForwarder = new OutputForwarder(requestId, out);
+			OUTPUT_LOGGER.addAppender(outputForwarder);
+			int errorCount;
+			try {
+				errorCount = JSweetCommandLineLauncher.transpile(jsapArgs, new File(request.currentDir), transpilers, new RemoteTranspilationHandler(out));
+			} catch (Exception e) {
+				logger.error(e.getMessage(), e);
+				Message message = new Message();
+				message.type = Message.OUTPUT;
+				message.level = Level.ERROR.toString();
+				message.message = "transpiler daemon failure: " + e;
+				send(out, message);
+				errorCount = 1;
+			} finally {
+				OUTPUT_LOGGER.removeAppender(outputForwarder);
+				MDC.remove(REQUEST_ID_KEY);
+			}
+			send(out, exitMessage(errorCount > 0 ? 1 : 0));
+		} catch (Exception e) {
+			logger.error(e.getMessage(), e);
+		}
+	}
+
+	private static Message exitMessage(int exitCode) {
+		Message message = new Message();
+		message.type = Message.EXIT;
+		message.exitCode = exitCode;
+		return message;
+	}
+
+	private static void send(PrintWriter out, Message message) {
+		synchronized (out) {
+			out.println(gson.toJson(message));
+			out.flush();
+		}
+	}
+
+	/**
+	 * Forwards the transpiler output messages of a request to the client. The
+	 * messages are recognized by the request id found in the logging context of
+	 * the thread that logs them.
+	 */
+	private static class OutputForwarder extends AppenderSkeleton {
+		private final String requestId;
+		private final PrintWriter out;
+
+		public OutputForwarder(String requestId, PrintWriter out) {
+			this.requestId = requestId;
+			this.out = out;
+		}
+
+		@Override
+		protected void append(LoggingEvent event) {
+			if (requestId.equals(event.getMDC(REQUEST_ID_KEY))) {
+				Message message = new Message();
+				message.type = Message.OUTPUT;
+				message.level = event.getLevel().toString();
+				message.message = event.getRenderedMessage();
+				send(out, message);
+			}
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public boolean requiresLayout() {
+			return false;
+		}
+	}
+
+	/**
+	 * Sends the reported problems to the client.
+	 */
+	private static class RemoteTranspilationHandler implements TranspilationHandler {
+		private final PrintWriter out;
+
+		public RemoteTranspilationHandler(PrintWriter out) {
+			this.out = out;
+		}
+
+		@Override
+		public void report(JSweetProblem problem, SourcePosition sourcePosition, String message) {
+			Message m = new Message();
+			m.type = Message.PROBLEM;
+			m.problem = problem.name();
+			m.message = message;
+			if (sourcePosition != null && sourcePosition.getFile() != null) {
+				m.file = sourcePosition.getFile().getPath();
+				m.startPosition = sourcePosition.getStartPosition();
+				m.endPosition = sourcePosition.getEndPosition();
+				m.startLine = sourcePosition.getStartLine();
+				m.startColumn = sourcePosition.getStartColumn();
+				m.endLine = sourcePosition.getEndLine();
+				m.endColumn = sourcePosition.getEndColumn();
+			}
+			send(out, m);
+		}
+
+		@Override
+		public void onCompleted(JSweetTranspiler transpiler, boolean fullPass, SourceFile[] files) {
+		}
+
+		@Override
+		public void reportSilentError() {
+		}
+	}
+
+	/**
+	 * Forwards the given command line arguments to the running daemon, if any,
+	 * and reports the daemon's answer to the console.
+	 * 
+	 * @return the exit code of the forwarded transpilation, or null if no
+	 *         daemon is running or if the daemon rejected the request
+	 */
+	public static Integer forward(String[] args) {
+		return forward(DAEMON_FILE, args, new ConsoleTranspilationHandler());
+	}
+
+	/**
+	 * Forwards the given command line arguments to the daemon described by the
+	 * given file, if running.
+	 * 
+	 * @param daemonFile
+	 *            the file holding the information to connect to the daemon
+	 * @param args
+	 *            the command line arguments
+	 * @param handler
+	 *            the handler the problems reported by the daemon are
+	 *            forwarded to
+	 * @return the exit code of the forwarded transpilation, or null if no
+	 *         daemon is running or if the daemon rejected the request
+	 */
+	public static Integer forward(File daemonFile, String[] args, TranspilationHandler handler) {
+		Request request = new Request();
+		request.currentDir = new File("").getAbsolutePath();
+		request.args = args;
+		boolean answered = false;
+		try (Socket socket = connect(daemonFile, request)) {
+			if (socket == null) {
+				return null;
+			}
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			String line;
+			while ((line = in.readLine()) != null) {
+				answered = true;
+				Message message = gson.fromJson(line, Message.class);
+				switch (message.type) {
+				case Message.PROBLEM:
+					TranspilationHandler.SourcePosition position = null;
+					if (message.file != null) {
+						position = new TranspilationHandler.SourcePosition(new File(message.file), null, message.startPosition, message.endPosition,
+								message.startLine, message.startColumn, message.endLine, message.endColumn);
+					}
+					handler.report(JSweetProblem.valueOf(message.problem), position, message.message);
+					break;
+				case Message.OUTPUT:
+					OUTPUT_LOGGER.log(Level.toLevel(message.level), message.message);
+					break;
+				case Message.EXIT:
+					return message.exitCode;
+				case Message.REJECTED:
+					OUTPUT_LOGGER.info(message.message + ": transpiling without the daemon");
+					return null;
+				}
+			}
+		} catch (IOException e) {
+			logger.debug("cannot forward to daemon", e);
+		}
+		if (answered) {
+			OUTPUT_LOGGER.error("connection to the transpiler daemon lost");
+			return 1;
+		}
+		return null;
+	}
+
+	/**
+	 * Stops the running daemon, if any.
+	 * 
+	 * @return true if a daemon was stopped
+	 */
+	public static boolean stop() {
+		return stop(DAEMON_FILE);
+	}
+
+	/**
+	 * Stops the daemon described by the given file, if running.
+	 * 
+	 * @return true if a daemon was stopped
+	 */
+	public static boolean stop(File daemonFile) {
+		Request request = new Request();
+		request.stop = true;
+		try (Socket socket = connect(daemonFile, request)) {
+			if (socket != null) {
+				socket.getInputStream().read();
+				return true;
+			}
+		} catch (IOException e) {
+			logger.debug("cannot stop daemon", e);
+		}
+		return false;
+	}
+
+	private static Socket connect(File daemonFile, Request request) throws IOException {
+		DaemonInfo info = readDaemonInfo(daemonFile);
+		if (info == null) {
+			return null;
+		}
+		Socket socket;
+		try {
+			socket = new Socket(InetAddress.getLoopbackAddress(), info.port);
+		} catch (IOException e) {
+			logger.debug("no daemon listening on port " + info.port);
+			return null;
+		}
+		request.secret = info.secret;
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+		out.println(gson.toJson(request));
+		out.flush();
+		return socket;
+	}
+
+	private static DaemonInfo readDaemonInfo(File daemonFile) {
+		if (!daemonFile.exists()) {
+			return null;
+		}
+		try {
+			return gson.fromJson(FileUtils.readFileToString(daemonFile), DaemonInfo.class);
+		} catch (Exception e) {
+			logger.warn("cannot read daemon file " + daemonFile, e);
+			return null;
+		}
+	}
+
+	private static void writeDaemonInfo(File daemonFile, DaemonInfo info) throws IOException {
+		daemonFile.getAbsoluteFile().getParentFile().mkdirs();
+		FileUtils.deleteQuietly(daemonFile);
+		daemonFile.createNewFile();
+		// the secret must only be readable by the daemon's owner
+		daemonFile.setReadable(false, false);
+		daemonFile.setReadable(true, true);
+		daemonFile.setWritable(false, false);
+		daemonFile.setWritable(true, true);
+		FileUtils.write(daemonFile, gson.toJson(info));
+	}
+
+}
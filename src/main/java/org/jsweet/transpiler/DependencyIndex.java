@@ -0,0 +1,262 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.transpiler;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.JavaFileObject;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.jsweet.transpiler.util.DirectedGraph;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+
+/**
+ * A class that is serialized in the working directory to store the
+ * dependencies between the transpiled Java source files, so that an
+ * incremental transpilation only translates the files that have changed and
+ * the files that depend on them.
+ * 
+ * @see JSweetTranspiler#setIncremental(boolean)
+ */
+class DependencyIndex {
+
+	private final static Logger logger = Logger.getLogger(DependencyIndex.class);
+
+	private final static Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+	/**
+	 * The information stored for a translated Java source file.
+	 */
+	static class Entry {
+		long lastModified;
+		long length;
+		String tsFile;
+		String topLevelPackageName;
+		boolean entryFile;
+		/**
+		 * The paths of the source files referenced by this file.
+		 */
+		Set<String> dependencies = new HashSet<>();
+	}
+
+	/**
+	 * The transpiler configuration this index was built with (the index is
+	 * discarded when it changes).
+	 */
+	String configuration;
+
+	/**
+	 * The entries, indexed by Java source file path.
+	 */
+	Map<String, Entry> entries = new HashMap<>();
+
+	/**
+	 * Reads the index from the given file, or creates an empty index if the
+	 * file does not exist or was created for another configuration.
+	 */
+	static DependencyIndex read(File indexFile, String configuration) {
+		DependencyIndex index = null;
+		if (indexFile.exists()) {
+			try {
+				index = gson.fromJson(FileUtils.readFileToString(indexFile), DependencyIndex.class);
+			} catch (Exception e) {
+				logger.error("cannot read dependency index", e);
+			}
+		}
+		if (index == null || !configuration.equals(index.configuration)) {
+			index = new DependencyIndex();
+			index.configuration = configuration;
+		}
+		return index;
+	}
+
+	/**
+	 * Writes this index to the given file.
+	 */
+	void write(File indexFile) {
+		try {
+			FileUtils.write(indexFile, gson.toJson(this));
+		} catch (Exception e) {
+			logger.error("cannot write dependency index", e);
+		}
+	}
+
+	/**
+	 * Gets the path used as a key for the given file.
+	 */
+	static String getPath(File file) {
+		return file.getAbsolutePath();
+	}
+
+	/**
+	 * Gets the entry of the given file, if up to date with the file and its
+	 * output.
+	 */
+	Entry getUpToDateEntry(File javaFile) {
+		Entry entry = entries.get(getPath(javaFile));
+		if (entry == null || entry.lastModified != javaFile.lastModified() || entry.length != javaFile.length() || !new File(entry.tsFile).exists()) {
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Gets the paths of the files that were added or removed since the last
+	 * transpilation.
+	 */
+	Set<String> getAddedOrRemovedFiles(Collection<File> javaFiles) {
+		Set<String> paths = new HashSet<>();
+		for (File javaFile : javaFiles) {
+			paths.add(getPath(javaFile));
+		}
+		Set<String> addedOrRemovedPaths = new HashSet<>(paths);
+		addedOrRemovedPaths.removeAll(entries.keySet());
+		for (String path : entries.keySet()) {
+			if (!paths.contains(path)) {
+				addedOrRemovedPaths.add(path);
+			}
+		}
+		return addedOrRemovedPaths;
+	}
+
+	/**
+	 * Gets the paths of the given files that need to be translated: the
+	 * changed (or new) files, and the files that reference a changed or a
+	 * removed file.
+	 */
+	Set<String> getFilesToTranslate(Collection<File> javaFiles) {
+		Set<String> currentPaths = new HashSet<>();
+		Set<String> changedPaths = new HashSet<>();
+		for (File javaFile : javaFiles) {
+			String path = getPath(javaFile);
+			currentPaths.add(path);
+			if (getUpToDateEntry(javaFile) == null) {
+				changedPaths.add(path);
+			}
+		}
+		for (String path : entries.keySet()) {
+			if (!currentPaths.contains(path)) {
+				changedPaths.add(path);
+			}
+		}
+
+		DirectedGraph<String> dependencyGraph = new DirectedGraph<>();
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			dependencyGraph.add(e.getKey());
+			for (String dependency : e.getValue().dependencies) {
+				dependencyGraph.add(dependency);
+				dependencyGraph.addEdge(e.getKey(), dependency);
+			}
+		}
+		Set<String> filesToTranslate = new HashSet<>(changedPaths);
+		Set<String> changedOutputs = new HashSet<>();
+		for (String changedPath : changedPaths) {
+			List<String> dependents = dependencyGraph.getSourceElements(changedPath);
+			if (dependents != null) {
+				filesToTranslate.addAll(dependents);
+			}
+			Entry entry = entries.get(changedPath);
+			if (entry != null) {
+				changedOutputs.add(entry.tsFile);
+			}
+		}
+		// files folded to the same output file (modules) are translated together
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			if (changedOutputs.contains(e.getValue().tsFile)) {
+				filesToTranslate.add(e.getKey());
+			}
+		}
+		filesToTranslate.retainAll(currentPaths);
+		logger.debug("changed files: " + changedPaths);
+		return filesToTranslate;
+	}
+
+	/**
+	 * Updates the entry of a translated file.
+	 */
+	void update(File javaFile, JCCompilationUnit compilationUnit, File tsFile, String topLevelPackageName, boolean entryFile) {
+		Entry entry = new Entry();
+		entry.lastModified = javaFile.lastModified();
+		entry.length = javaFile.length();
+		entry.tsFile = tsFile.getAbsolutePath();
+		entry.topLevelPackageName = topLevelPackageName;
+		entry.entryFile = entryFile;
+		String path = getPath(javaFile);
+		new TreeScanner() {
+			@Override
+			public void scan(JCTree tree) {
+				if (tree != null) {
+					addDependency(TreeInfo.symbolFor(tree));
+					if (tree.type != null) {
+						addDependency(tree.type.tsym);
+					}
+					super.scan(tree);
+				}
+			}
+
+			private void addDependency(Symbol symbol) {
+				ClassSymbol clazz = null;
+				for (Symbol s = symbol; s != null && !(s instanceof PackageSymbol); s = s.owner) {
+					if (s instanceof ClassSymbol) {
+						clazz = (ClassSymbol) s;
+					}
+				}
+				if (clazz != null) {
+					if (clazz.sourcefile != null && clazz.sourcefile.getKind() == JavaFileObject.Kind.SOURCE) {
+						String dependency = getPath(new File(clazz.sourcefile.getName()));
+						if (!dependency.equals(path)) {
+							entry.dependencies.add(dependency);
+						}
+					}
+				}
+			}
+		}.scan(compilationUnit);
+		entries.put(path, entry);
+	}
+
+	/**
+	 * Removes the entries of the files that are not part of the given files,
+	 * as well as the dependencies to such files.
+	 */
+	void retain(Collection<File> javaFiles) {
+		Set<String> currentPaths = new HashSet<>();
+		for (File javaFile : javaFiles) {
+			currentPaths.add(getPath(javaFile));
+		}
+		entries.keySet().retainAll(currentPaths);
+		for (Entry entry : entries.values()) {
+			entry.dependencies.retainAll(currentPaths);
+		}
+	}
+
+}
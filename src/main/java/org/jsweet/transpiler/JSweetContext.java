@@ -18,35 +18,55 @@ package org.jsweet.transpiler;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.lang.model.element.AnnotationMirror;
 
 import org.jsweet.transpiler.OverloadScanner.Overload;
 import org.jsweet.transpiler.util.DirectedGraph;
+import org.jsweet.transpiler.util.Util;
 
+import com.sun.tools.javac.code.Attribute.Compound;
+import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.code.Symbol.TypeSymbol;
 import com.sun.tools.javac.code.Symtab;
+import com.sun.tools.javac.code.Type.MethodType;
 import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.tree.JCTree.JCMethodInvocation;
+import com.sun.tools.javac.tree.TreeInfo;
 import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Name;
 import com.sun.tools.javac.util.Names;
 
 /**
  * The transpiler context, which is an extension of the Java compiler context.
  * 
+ * <p>
+ * The state that is filled by the printers is safe for concurrent use, so that
+ * several compilation units can be printed in parallel (see
+ * {@link JSweetTranspiler#setTranspilationThreads(int)}).
+ * 
  * @author Renaud Pawlak
  */
 public class JSweetContext extends Context {
 	/**
-	 * A cache of method overloads.
+	 * A cache of method overloads. This map is an unmodifiable snapshot that is
+	 * replaced each time the overload scanner processes new compilation units.
 	 * 
 	 * @see OverloadScanner
 	 * @see OverloadScanner.Overload
 	 */
-	public Map<ClassSymbol, Map<String, Overload>> overloads = new HashMap<>();
+	public volatile Map<ClassSymbol, Map<String, Overload>> overloads = Collections.emptyMap();
 
 	/**
 	 * An overload is a container of methods have the same name but different
@@ -82,6 +102,31 @@ public class JSweetContext extends Context {
 	 */
 	public Types types;
 
+	/**
+	 * Gets the lock that guards the Java compiler state shared by the printers
+	 * when printing in parallel: the name table, the completion of the
+	 * symbols, the type operations, the log and the source contents cached by
+	 * the file manager. The lock is the compiler types instance, so that the
+	 * utility methods that only get the types (see {@link Util}) lock on it
+	 * too.
+	 */
+	public Object getCompilerLock() {
+		return Types.instance(this);
+	}
+
+	/**
+	 * Gets the Java compiler name for the given string.
+	 * 
+	 * <p>
+	 * The compiler name table is not thread-safe, so this method holds the
+	 * compiler lock (see {@link #getCompilerLock()}).
+	 */
+	public Name getName(String name) {
+		synchronized (getCompilerLock()) {
+			return Names.instance(this).fromString(name);
+		}
+	}
+
 	/**
 	 * A flag to tell if the transpiler is in module mode or not.
 	 */
@@ -100,7 +145,7 @@ public class JSweetContext extends Context {
 	 * @param moduleName
 	 *            the module being used
 	 */
-	public void registerUsedModule(String moduleName) {
+	public synchronized void registerUsedModule(String moduleName) {
 		if (!usedModules.contains(moduleName)) {
 			usedModules.add(moduleName);
 		}
@@ -113,7 +158,7 @@ public class JSweetContext extends Context {
 		return usedModules;
 	}
 
-	private Map<PackageSymbol, Set<String>> importedNamesInPackages = new HashMap<>();
+	private Map<PackageSymbol, Set<String>> importedNamesInPackages = new ConcurrentHashMap<>();
 
 	/**
 	 * Register a name that is imported by the given package of the transpiled
@@ -125,14 +170,7 @@ public class JSweetContext extends Context {
 	 *            the name being imported
 	 */
 	public void registerImportedName(PackageSymbol packageSymbol, String name) {
-		Set<String> importedNames = importedNamesInPackages.get(packageSymbol);
-		if (importedNames == null) {
-			importedNames = new HashSet<>();
-			importedNamesInPackages.put(packageSymbol, importedNames);
-		}
-		if (!importedNames.contains(name)) {
-			importedNames.add(name);
-		}
+		getImportedNames(packageSymbol).add(name);
 	}
 
 	/**
@@ -140,12 +178,7 @@ public class JSweetContext extends Context {
 	 * program.
 	 */
 	public Set<String> getImportedNames(PackageSymbol packageSymbol) {
-		Set<String> importedNames = importedNamesInPackages.get(packageSymbol);
-		if (importedNames == null) {
-			importedNames = new HashSet<>();
-			importedNamesInPackages.put(packageSymbol, importedNames);
-		}
-		return importedNames;
+		return importedNamesInPackages.computeIfAbsent(packageSymbol, p -> new HashSet<>());
 	}
 
 	/**
@@ -159,7 +192,7 @@ public class JSweetContext extends Context {
 	/**
 	 * Source files containing a main method.
 	 */
-	public List<File> entryFiles = new ArrayList<>();
+	public List<File> entryFiles = Collections.synchronizedList(new ArrayList<>());
 
 	/**
 	 * A graph containing the module dependencies when using modules (empty
@@ -172,12 +205,12 @@ public class JSweetContext extends Context {
 	 * package or in a package annotated with the {@link jsweet.lang.Root}
 	 * annotation).
 	 */
-	public Set<String> topLevelPackageNames = new HashSet<>();
+	public Set<String> topLevelPackageNames = Collections.synchronizedSet(new HashSet<>());
 
 	/**
 	 * Globally imported name (in the global namespace).
 	 */
-	public Set<String> globalImports = new HashSet<>();
+	public Set<String> globalImports = Collections.synchronizedSet(new HashSet<>());
 
 	/**
 	 * A flag to tell if the transpiler should ignore the 'assert' statement or
@@ -191,4 +224,179 @@ public class JSweetContext extends Context {
 	 */
 	public boolean strictMode = false;
 
-}
\ No newline at end of file
+	private Map<Symbol, Map<String, Compound>> annotationIndex = new ConcurrentHashMap<>();
+
+	/**
+	 * Gets the annotations of the given symbol, indexed by annotation type
+	 * name. The index of a symbol is computed once and reused by the
+	 * subsequent lookups.
+	 */
+	private Map<String, Compound> getAnnotationIndex(Symbol symbol) {
+		return annotationIndex.computeIfAbsent(symbol, s -> {
+			List<Compound> annotations;
+			// may complete the symbol
+			synchronized (getCompilerLock()) {
+				annotations = s.getAnnotationMirrors();
+			}
+			if (annotations.isEmpty()) {
+				return Collections.emptyMap();
+			}
+			Map<String, Compound> index = new HashMap<>();
+			for (Compound annotation : annotations) {
+				index.putIfAbsent(annotation.type.toString(), annotation);
+			}
+			return index;
+		});
+	}
+
+	/**
+	 * Tells if the given symbol is annotated with one of the given annotation
+	 * type names.
+	 * 
+	 * @see Util#hasAnnotationType(Symbol, String...)
+	 */
+	public boolean hasAnnotationType(Symbol symbol, String... annotationTypes) {
+		Map<String, Compound> annotations = getAnnotationIndex(symbol);
+		if (annotations.isEmpty()) {
+			return false;
+		}
+		for (String annotationType : annotationTypes) {
+			if (annotations.containsKey(annotationType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the symbol's annotation that correspond to the given annotation type
+	 * name if exists.
+	 * 
+	 * @see Util#getAnnotation(Symbol, String)
+	 */
+	public AnnotationMirror getAnnotation(Symbol symbol, String annotationType) {
+		return getAnnotationIndex(symbol).get(annotationType);
+	}
+
+	/**
+	 * Gets the first value of the 'value' property for the given annotation
+	 * type if found on the given symbol.
+	 * 
+	 * @see Util#getAnnotationValue(Symbol, String, Object)
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getAnnotationValue(Symbol symbol, String annotationType, T defaultValue) {
+		AnnotationMirror annotation = getAnnotation(symbol, annotationType);
+		return annotation == null ? defaultValue : (T) Util.getFirstAnnotationValue(annotation, defaultValue);
+	}
+
+	private Map<TypeSymbol, Map<Name, List<MethodSymbol>>> methodTables = new ConcurrentHashMap<>();
+
+	private Map<MethodResolutionKey, Optional<MethodSymbol>> methodResolutions = new ConcurrentHashMap<>();
+
+	/**
+	 * The key of a method resolution: a type, a method name and an optional
+	 * method type, all compared by identity.
+	 */
+	private static final class MethodResolutionKey {
+		final TypeSymbol typeSymbol;
+		final Name methodName;
+		final MethodType methodType;
+
+		MethodResolutionKey(TypeSymbol typeSymbol, Name methodName, MethodType methodType) {
+			this.typeSymbol = typeSymbol;
+			this.methodName = methodName;
+			this.methodType = methodType;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof MethodResolutionKey)) {
+				return false;
+			}
+			MethodResolutionKey key = (MethodResolutionKey) object;
+			return typeSymbol == key.typeSymbol && methodName == key.methodName && methodType == key.methodType;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * System.identityHashCode(typeSymbol) + methodName.hashCode()) * 31 + System.identityHashCode(methodType);
+		}
+	}
+
+	/**
+	 * Gets the methods declared by the given type, indexed by name. The methods
+	 * of a given name are kept in declaration order.
+	 */
+	private Map<Name, List<MethodSymbol>> getMethodTable(TypeSymbol typeSymbol) {
+		return methodTables.computeIfAbsent(typeSymbol, t -> {
+			List<Symbol> members;
+			// may complete the symbol
+			synchronized (getCompilerLock()) {
+				members = t.getEnclosedElements();
+			}
+			if (members == null) {
+				return Collections.emptyMap();
+			}
+			Map<Name, List<MethodSymbol>> table = new HashMap<>();
+			for (Symbol member : members) {
+				if (member instanceof MethodSymbol) {
+					table.computeIfAbsent(member.name, n -> new ArrayList<>(1)).add((MethodSymbol) member);
+				}
+			}
+			return table;
+		});
+	}
+
+	/**
+	 * Finds the method in the given type (or in its superclasses) that matches
+	 * the given invocation. The resolutions are cached for the whole
+	 * transpilation.
+	 * 
+	 * @see Util#findMethodDeclarationInType(Types, TypeSymbol,
+	 *      JCMethodInvocation)
+	 */
+	public MethodSymbol findMethodDeclarationInType(TypeSymbol typeSymbol, JCMethodInvocation invocation) {
+		return findMethodDeclarationInType(typeSymbol, TreeInfo.name(invocation.meth), (MethodType) invocation.meth.type);
+	}
+
+	/**
+	 * Finds the method in the given type (or in its superclasses) that matches
+	 * the given name and signature (any signature if the method type is null).
+	 */
+	public MethodSymbol findMethodDeclarationInType(TypeSymbol typeSymbol, Name methodName, MethodType methodType) {
+		if (typeSymbol == null) {
+			return null;
+		}
+		MethodResolutionKey key = new MethodResolutionKey(typeSymbol, methodName, methodType);
+		// no computeIfAbsent here since the resolution is recursive
+		Optional<MethodSymbol> resolution = methodResolutions.get(key);
+		if (resolution == null) {
+			resolution = Optional.ofNullable(resolveMethodDeclarationInType(typeSymbol, methodName, methodType));
+			methodResolutions.putIfAbsent(key, resolution);
+		}
+		return resolution.orElse(null);
+	}
+
+	private MethodSymbol resolveMethodDeclarationInType(TypeSymbol typeSymbol, Name methodName, MethodType methodType) {
+		List<MethodSymbol> methods = getMethodTable(typeSymbol).get(methodName);
+		if (methods != null) {
+			if (methodType == null) {
+				return methods.get(0);
+			}
+			Types types = Types.instance(this);
+			for (MethodSymbol method : methods) {
+				synchronized (getCompilerLock()) {
+					if (types.isSubSignature(methodType, method.type)) {
+						return method;
+					}
+				}
+			}
+		}
+		if (typeSymbol instanceof ClassSymbol && ((ClassSymbol) typeSymbol).getSuperclass() != null) {
+			return findMethodDeclarationInType(((ClassSymbol) typeSymbol).getSuperclass().tsym, methodName, methodType);
+		}
+		return null;
+	}
+
+}
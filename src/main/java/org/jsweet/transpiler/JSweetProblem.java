@@ -254,7 +254,17 @@ public enum JSweetProblem {
 	/**
 	 * Raised when a class is declared in a parent of a @Root package.
 	 */
-	CLASS_OUT_OF_ROOT_PACKAGE_SCOPE(Severity.ERROR);
+	CLASS_OUT_OF_ROOT_PACKAGE_SCOPE(Severity.ERROR),
+	/**
+	 * Raised when the direct JavaScript generation is used together with
+	 * modules.
+	 */
+	DIRECT_JS_WITH_MODULES(Severity.ERROR),
+	/**
+	 * Raised when a construct is not supported by the direct JavaScript
+	 * generation.
+	 */
+	UNSUPPORTED_DIRECT_JS(Severity.ERROR);
 
 	private Severity severity;
 
@@ -382,6 +392,10 @@ public enum JSweetProblem {
 			return String.format("invalid package hierarchy: type %s is declared in a parent of @Root package %s", params);
 		case WRONG_USE_OF_AMBIENT:
 			return String.format("wrong use of @Ambient on %s: only types and globals can be declared as ambients", params);
+		case DIRECT_JS_WITH_MODULES:
+			return "direct JavaScript generation cannot be used with modules";
+		case UNSUPPORTED_DIRECT_JS:
+			return String.format("%s is not supported by the direct JavaScript generation (generate TypeScript instead)", params);
 		}
 		return null;
 	}
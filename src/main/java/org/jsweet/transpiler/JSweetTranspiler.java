@@ -32,11 +32,18 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,26 +57,39 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.jsweet.JSweetConfig;
 import org.jsweet.transpiler.TranspilationHandler.SourcePosition;
+import org.jsweet.transpiler.TranspilationMetrics.Phase;
 import org.jsweet.transpiler.candies.CandiesProcessor;
+import org.jsweet.transpiler.javascript.Java2JavaScriptTranslator;
 import org.jsweet.transpiler.typescript.Java2TypeScriptTranslator;
 import org.jsweet.transpiler.util.AbstractTreePrinter;
 import org.jsweet.transpiler.util.ErrorCountTranspilationHandler;
 import org.jsweet.transpiler.util.EvaluationResult;
+import org.jsweet.transpiler.util.OutputBuffer;
 import org.jsweet.transpiler.util.ProcessUtil;
 import org.jsweet.transpiler.util.Util;
 
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.CompletionFailure;
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Type.ClassType;
+import com.sun.tools.javac.comp.AttrContext;
+import com.sun.tools.javac.comp.Env;
 import com.sun.tools.javac.file.JavacFileManager;
 import com.sun.tools.javac.main.JavaCompiler;
 import com.sun.tools.javac.main.Option;
+import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.TreeInfo;
 import com.sun.tools.javac.tree.TreeScanner;
 import com.sun.tools.javac.util.BasicDiagnosticFormatter;
 import com.sun.tools.javac.util.JCDiagnostic;
 import com.sun.tools.javac.util.JavacMessages;
 import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.ListBuffer;
 import com.sun.tools.javac.util.Log;
 import com.sun.tools.javac.util.Log.WriterKind;
 import com.sun.tools.javac.util.Options;
@@ -117,11 +137,37 @@ public class JSweetTranspiler {
 	 */
 	public final static String TSCROOTFILE = ".tsc-rootfile.ts";
 
+	/**
+	 * The name of the file that stores the dependencies between the source
+	 * files in incremental mode.
+	 * 
+	 * @see #setIncremental(boolean)
+	 */
+	public static final String DEPENDENCY_INDEX_FILE_NAME = DependencyIndex.class.getSimpleName() + ".json";
+
+	private static final String OUTPUT_HASH_INDEX_FILE_NAME = OutputHashIndex.class.getSimpleName() + ".json";
+
+	/**
+	 * The default maximum size of the translation cache (100MB).
+	 * 
+	 * @see #setTranslationCacheSize(long)
+	 */
+	public static final long DEFAULT_TRANSLATION_CACHE_SIZE = 100 * 1024 * 1024;
+
+	/**
+	 * The default directory of the shared candies cache, in the user home.
+	 * 
+	 * @see #setSharedCandiesCacheDirectory(File)
+	 */
+	public static final File DEFAULT_SHARED_CANDIES_CACHE_DIRECTORY = new File(System.getProperty("user.home"),
+			TMP_WORKING_DIR_NAME + File.separator + "shared-candies");
+
 	private long transpilationStartTimestamp;
 	private ArrayList<File> auxiliaryTsModuleFiles = new ArrayList<>();
 	private JSweetContext context;
 	private Options options;
 	private JavaFileManager fileManager;
+	private String fileManagerClassPath;
 	private JavaCompiler compiler;
 	private Log log;
 	private boolean preserveSourceLineNumbers = false;
@@ -140,6 +186,17 @@ public class JSweetTranspiler {
 	private String encoding = null;
 	private boolean noRootDirectories = false;
 	private boolean ignoreAssertions = false;
+	private int transpilationThreads = 1;
+	private boolean incremental = false;
+	private boolean useTscService = false;
+	private TscService tscService;
+	private boolean generateJsDirectly = false;
+	private boolean boundedMemory = false;
+	private OutputHashIndex outputHashIndex;
+	private File translationCacheDirectory;
+	private long translationCacheSize = DEFAULT_TRANSLATION_CACHE_SIZE;
+	private TranspilationMetrics metrics;
+	private java.util.List<TranspilationMetricsListener> metricsListeners = new ArrayList<>();
 
 	/**
 	 * Creates a JSweet transpiler, with the default values.
@@ -281,8 +338,20 @@ public class JSweetTranspiler {
 		}
 		logger.debug("bootclasspath: " + options.get(Option.BOOTCLASSPATH));
 		options.put(Option.XLINT, "path");
-		JavacFileManager.preRegister(context);
-		fileManager = context.get(JavaFileManager.class);
+		// file manager reuse only: the file manager (which keeps the class
+		// path jars opened and indexed) is reused as long as the class path
+		// does not change, but the compiler and its symbol tables are not
+		String fileManagerClassPath = getClassPathFingerprint();
+		if (fileManager instanceof JavacFileManager && fileManagerClassPath.equals(this.fileManagerClassPath)) {
+			logger.debug("reusing file manager");
+			context.put(JavaFileManager.class, fileManager);
+			((JavacFileManager) fileManager).setContext(context);
+		} else {
+			closeFileManager();
+			JavacFileManager.preRegister(context);
+			fileManager = context.get(JavaFileManager.class);
+			this.fileManagerClassPath = fileManagerClassPath;
+		}
 
 		compiler = JavaCompiler.instance(context);
 		compiler.attrParseOnly = true;
@@ -323,6 +392,31 @@ public class JSweetTranspiler {
 		}
 	}
 
+	private String getClassPathFingerprint() {
+		StringBuilder fingerprint = new StringBuilder(String.valueOf(classPath));
+		if (classPath != null) {
+			for (String classPathEntry : classPath.split(File.pathSeparator)) {
+				File file = new File(classPathEntry);
+				if (file.isFile()) {
+					fingerprint.append(File.pathSeparator).append(file.lastModified()).append(":").append(file.length());
+				}
+			}
+		}
+		return fingerprint.toString();
+	}
+
+	private void closeFileManager() {
+		if (fileManager != null) {
+			try {
+				fileManager.close();
+			} catch (IOException e) {
+				logger.warn("cannot close file manager", e);
+			}
+			fileManager = null;
+			fileManagerClassPath = null;
+		}
+	}
+
 	private boolean areAllTranspiled(SourceFile... sourceFiles) {
 		for (SourceFile file : sourceFiles) {
 			if (file.getJsFile() == null) {
@@ -548,6 +642,12 @@ public class JSweetTranspiler {
 	 * mode ({@link #setTscWatchMode(boolean)}), the first invocation to this
 	 * method determines the files to be watched by the Tsc process.
 	 * 
+	 * <p>
+	 * Successive invocations on the same transpiler only reuse the Java file
+	 * manager (with its opened and indexed class path jars), as long as the
+	 * class path does not change. The Java compiler and its symbol tables are
+	 * rebuilt on each invocation.
+	 * 
 	 * @param transpilationHandler
 	 *            the log handler
 	 * @param files
@@ -556,35 +656,66 @@ public class JSweetTranspiler {
 	 */
 	synchronized public void transpile(TranspilationHandler transpilationHandler, SourceFile... files) throws IOException {
 		transpilationStartTimestamp = System.currentTimeMillis();
+		metrics = new TranspilationMetrics();
+		metrics.setFiles(files.length);
+		ErrorCountTranspilationHandler errorHandler = new ErrorCountTranspilationHandler(transpilationHandler);
 		try {
-			initNode(transpilationHandler);
-			initNodeCommands(transpilationHandler);
-		} catch (Exception e) {
-			logger.error(e.getMessage(), e);
-			return;
-		}
-		candiesProcessor.processCandies();
-		addTsDefDir(candiesProcessor.getCandiesTsdefsDir());
-		if (classPath != null && !ArrayUtils.contains(classPath.split(File.pathSeparator), candiesProcessor.getCandiesProcessedDir().getPath())) {
-			classPath = candiesProcessor.getCandiesProcessedDir() + File.pathSeparator + classPath;
-			logger.debug("updated classpath: " + classPath);
-		}
+			if (generateJsDirectly) {
+				if (isUsingModules()) {
+					errorHandler.report(JSweetProblem.DIRECT_JS_WITH_MODULES, null, JSweetProblem.DIRECT_JS_WITH_MODULES.getMessage());
+					return;
+				}
+			} else {
+				try {
+					initNode(transpilationHandler);
+					initNodeCommands(transpilationHandler);
+				} catch (Exception e) {
+					logger.error(e.getMessage(), e);
+					return;
+				}
+			}
+			metrics.startPhase(Phase.CANDIES);
+			candiesProcessor.processCandies();
+			metrics.endPhase(Phase.CANDIES);
+			addTsDefDir(candiesProcessor.getCandiesTsdefsDir());
+			if (classPath != null && !ArrayUtils.contains(classPath.split(File.pathSeparator), candiesProcessor.getCandiesProcessedDir().getPath())) {
+				classPath = candiesProcessor.getCandiesProcessedDir() + File.pathSeparator + classPath;
+				logger.debug("updated classpath: " + classPath);
+			}
 
-		ErrorCountTranspilationHandler errorHandler = new ErrorCountTranspilationHandler(transpilationHandler);
-		Collection<SourceFile> jsweetSources = asList(files).stream() //
-				.filter(source -> source.getJavaFile() != null).collect(toList());
-		java2ts(errorHandler, jsweetSources.toArray(new SourceFile[0]));
-		auxiliaryTsModuleFiles.clear();
-		createAuxiliaryModuleFiles(tsOutputDir);
+			Collection<SourceFile> jsweetSources = asList(files).stream() //
+					.filter(source -> source.getJavaFile() != null).collect(toList());
+			outputHashIndex = OutputHashIndex.read(new File(workingDir, OUTPUT_HASH_INDEX_FILE_NAME));
+			java2ts(errorHandler, jsweetSources.toArray(new SourceFile[0]));
+			auxiliaryTsModuleFiles.clear();
+			createAuxiliaryModuleFiles(tsOutputDir);
+			outputHashIndex.write(new File(workingDir, OUTPUT_HASH_INDEX_FILE_NAME));
+
+			if (errorHandler.getErrorCount() == 0 && generateJsDirectly) {
+				// the JavaScript files were generated by the translation
+				errorHandler.onCompleted(this, true, files);
+			} else if (errorHandler.getErrorCount() == 0 && generateJsFiles) {
+				Collection<SourceFile> tsSources = asList(files).stream() //
+						.filter(source -> source.getTsFile() != null).collect(toList());
+				metrics.startPhase(Phase.TSC);
+				ts2js(errorHandler, tsSources.toArray(new SourceFile[0]));
+				metrics.endPhase(Phase.TSC);
+			}
 
-		if (errorHandler.getErrorCount() == 0 && generateJsFiles) {
-			Collection<SourceFile> tsSources = asList(files).stream() //
-					.filter(source -> source.getTsFile() != null).collect(toList());
-			ts2js(errorHandler, tsSources.toArray(new SourceFile[0]));
+			if (bundle) {
+				metrics.startPhase(Phase.BUNDLE);
+				generateBundles(errorHandler, files);
+				metrics.endPhase(Phase.BUNDLE);
+			}
+			logger.info("transpilation process finished in " + (System.currentTimeMillis() - transpilationStartTimestamp) + " ms");
+		} finally {
+			// the metrics are also notified when the transpilation stops early
+			metrics.end(errorHandler.getErrorCount());
+			logger.debug(metrics);
+			for (TranspilationMetricsListener listener : metricsListeners) {
+				listener.onMetrics(this, metrics);
+			}
 		}
-
-		generateBundles(errorHandler, files);
-		logger.info("transpilation process finished in " + (System.currentTimeMillis() - transpilationStartTimestamp) + " ms");
 	}
 
 	private void generateBundles(ErrorCountTranspilationHandler errorHandler, SourceFile... files) {
@@ -696,20 +827,24 @@ public class JSweetTranspiler {
 				}
 			}
 
-			if (createModuleFile) {
-				FileUtils.deleteQuietly(moduleFile);
-				auxiliaryTsModuleFiles.add(moduleFile);
-			}
+			StringBuilder moduleContent = new StringBuilder();
 			for (File f : rootDir.listFiles()) {
 				if (f.isDirectory() && !f.getName().startsWith(".")) {
 					if (createModuleFile) {
-						logger.debug("create auxiliary module file: " + moduleFile);
-						FileUtils.write(moduleFile,
-								"export import " + f.getName() + " = require('./" + f.getName() + "/" + JSweetConfig.MODULE_FILE_NAME + "');\n", true);
+						moduleContent.append("export import " + f.getName() + " = require('./" + f.getName() + "/" + JSweetConfig.MODULE_FILE_NAME
+								+ "');\n");
 					}
 					createAuxiliaryModuleFiles(f);
 				}
 			}
+			if (createModuleFile) {
+				if (moduleContent.length() == 0) {
+					outputHashIndex.delete(moduleFile);
+				} else if (outputHashIndex.writeIfChanged(moduleFile, moduleContent.toString())) {
+					logger.debug("create auxiliary module file: " + moduleFile);
+				}
+				auxiliaryTsModuleFiles.add(moduleFile);
+			}
 		}
 	}
 
@@ -719,33 +854,214 @@ public class JSweetTranspiler {
 		List<JavaFileObject> fileObjects = toJavaFileObjects(fileManager, Arrays.asList(SourceFile.toFiles(files)));
 
 		logger.info("parsing: " + fileObjects);
-		List<JCCompilationUnit> compilationUnits = compiler.enterTrees(compiler.parseFiles(fileObjects));
+		metrics.startPhase(Phase.PARSE);
+		List<JCCompilationUnit> parsedUnits = compiler.parseFiles(fileObjects);
+		metrics.endPhase(Phase.PARSE);
+		metrics.startPhase(Phase.ENTER);
+		List<JCCompilationUnit> compilationUnits = compiler.enterTrees(parsedUnits);
+		metrics.endPhase(Phase.ENTER);
 		if (log.nerrors > 0) {
 			transpilationHandler.report(JSweetProblem.JAVA_ERRORS, null, JSweetProblem.JAVA_ERRORS.getMessage(log.nerrors));
 			return;
 		}
+		context.useModules = isUsingModules();
+		context.sourceFiles = files;
+
+		// the attribution environments are taken out of the javac todo queue,
+		// so that each batch only attributes the environments of its own
+		// units, and so that they are released once attributed
+		Map<JCCompilationUnit, Queue<Env<AttrContext>>> environments = new HashMap<>();
+		for (Env<AttrContext> env = compiler.todo.poll(); env != null; env = compiler.todo.poll()) {
+			environments.computeIfAbsent(env.toplevel, u -> new LinkedList<>()).add(env);
+		}
+
+		boolean[] translated = new boolean[files.length];
+		Arrays.fill(translated, true);
+		DependencyIndex dependencyIndex = null;
+		if (incremental) {
+			if (bundle) {
+				logger.info("incremental transpilation is not available when generating bundles: all files will be translated");
+			} else {
+				dependencyIndex = DependencyIndex.read(new File(workingDir, DEPENDENCY_INDEX_FILE_NAME), getIncrementalConfiguration());
+				selectFilesToTranslate(dependencyIndex, files, compilationUnits, translated);
+			}
+		}
+		int translatedCount = 0;
+		for (boolean t : translated) {
+			translatedCount += t ? 1 : 0;
+		}
+		metrics.setTranslatedFiles(translatedCount);
+		if (translatedCount < compilationUnits.size()) {
+			logger.info("incremental transpilation: translating " + translatedCount + "/" + compilationUnits.size() + " files");
+		}
+
+		// in bounded memory mode, the units are translated package by package
+		// (units of the same package share the imported names and the module
+		// file)
+		Collection<java.util.List<Integer>> batches;
+		if (boundedMemory) {
+			Map<PackageSymbol, java.util.List<Integer>> packageBatches = new LinkedHashMap<>();
+			for (int i = 0; i < compilationUnits.length(); i++) {
+				packageBatches.computeIfAbsent(compilationUnits.get(i).packge, p -> new ArrayList<>()).add(i);
+			}
+			logger.info("bounded memory mode: translating " + packageBatches.size() + " package batches");
+			batches = packageBatches.values();
+		} else {
+			java.util.List<Integer> allUnits = new ArrayList<>();
+			for (int i = 0; i < compilationUnits.length(); i++) {
+				allUnits.add(i);
+			}
+			batches = asList(allUnits);
+		}
+		TranslationCache translationCache = null;
+		if (translationCacheDirectory != null) {
+			if (bundle) {
+				logger.info("the translation cache is not available when generating bundles");
+			} else {
+				translationCache = new TranslationCache(translationCacheDirectory, translationCacheSize);
+			}
+		}
+		for (java.util.List<Integer> batch : batches) {
+			if (!java2ts(transpilationHandler, files, compilationUnits, translated, batch, environments, dependencyIndex, translationCache)) {
+				return;
+			}
+		}
+
+		metrics.startPhase(Phase.WRITE);
+		if (dependencyIndex != null) {
+			dependencyIndex.retain(Arrays.asList(SourceFile.toFiles(files)));
+			dependencyIndex.write(new File(workingDir, DEPENDENCY_INDEX_FILE_NAME));
+		}
+		log.flush();
+		if (!generateJsDirectly) {
+			getOrCreateTscRootFile();
+		}
+		metrics.endPhase(Phase.WRITE);
+	}
+
+	/**
+	 * Attributes, prints and writes a batch of compilation units.
+	 * 
+	 * @return false if Java errors were found (nothing is printed then)
+	 */
+	private boolean java2ts(TranspilationHandler transpilationHandler, SourceFile[] files, List<JCCompilationUnit> compilationUnits, boolean[] translated,
+			java.util.List<Integer> batch, Map<JCCompilationUnit, Queue<Env<AttrContext>>> environments, DependencyIndex dependencyIndex,
+			TranslationCache translationCache) throws IOException {
+		ListBuffer<JCCompilationUnit> translatedUnits = new ListBuffer<>();
+		Queue<Env<AttrContext>> envs = new LinkedList<>();
+		for (int i : batch) {
+			if (translated[i]) {
+				translatedUnits.append(compilationUnits.get(i));
+				Queue<Env<AttrContext>> unitEnvs = environments.remove(compilationUnits.get(i));
+				if (unitEnvs != null) {
+					envs.addAll(unitEnvs);
+				}
+			}
+		}
+
 		logger.info("attribution phase");
-		compiler.attribute(compiler.todo);
+		metrics.startPhase(Phase.ATTRIBUTE);
+		compiler.attribute(envs);
+		metrics.endPhase(Phase.ATTRIBUTE);
 
 		if (log.nerrors > 0) {
 			transpilationHandler.report(JSweetProblem.JAVA_ERRORS, null, JSweetProblem.JAVA_ERRORS.getMessage(log.nerrors));
-			return;
+			return false;
+		}
+
+		// the units found in the translation cache are not printed
+		String[] cachedOutputs = new String[compilationUnits.length()];
+		TranslationGroup[] translationGroups = new TranslationGroup[compilationUnits.length()];
+		ProblemRecorder problemRecorder = null;
+		if (translationCache != null) {
+			metrics.startPhase(Phase.TRANSLATION_CACHE);
+			for (java.util.List<Integer> group : getPrintingGroups(compilationUnits, batch, translated).values()) {
+				java.util.List<JCCompilationUnit> groupUnits = new ArrayList<>();
+				for (int i : group) {
+					groupUnits.add(compilationUnits.get(i));
+				}
+				boolean globalNamespace = Util.getTopLevelPackage(groupUnits.get(0).packge) == null;
+				String configuration = getTranslationConfiguration();
+				if (globalNamespace) {
+					// the units of the global namespace share the global imports
+					configuration += "," + new TreeSet<>(context.globalImports);
+				}
+				String key = translationCache.getKey(configuration, groupUnits);
+				TranslationCache.Entry entry = translationCache.get(key);
+				if (entry != null && entry.units.size() == group.size()) {
+					for (int j = 0; j < group.size(); j++) {
+						int i = group.get(j);
+						logger.info("translation cache hit: " + compilationUnits.get(i).sourcefile.getName());
+						reuseCachedTranslation(transpilationHandler, compilationUnits.get(i), entry.units.get(j));
+						cachedOutputs[i] = entry.units.get(j).output;
+					}
+					if (entry.globalImports != null) {
+						context.globalImports.addAll(entry.globalImports);
+					}
+				} else {
+					TranslationGroup translationGroup = new TranslationGroup(key, group.size(), globalNamespace);
+					for (int i : group) {
+						translationGroups[i] = translationGroup;
+					}
+				}
+			}
+			metrics.endPhase(Phase.TRANSLATION_CACHE);
+			problemRecorder = new ProblemRecorder(transpilationHandler);
+			transpilationHandler = problemRecorder;
+		}
+		ListBuffer<JCCompilationUnit> printedUnits = new ListBuffer<>();
+		for (int i : batch) {
+			if (translated[i] && cachedOutputs[i] == null) {
+				printedUnits.append(compilationUnits.get(i));
+			}
+		}
+
+		metrics.startPhase(Phase.OVERLOAD_SCAN);
+		logger.info("scanning overloads in " + printedUnits.size() + " compilation units...");
+		new OverloadScanner(context).process(printedUnits);
+		metrics.endPhase(Phase.OVERLOAD_SCAN);
+
+		AbstractTreePrinter[] printers = new AbstractTreePrinter[compilationUnits.length()];
+		if (!boundedMemory) {
+			metrics.startPhase(Phase.PRINT);
+			AbstractTreePrinter[] translatedPrinters = printCompilationUnits(transpilationHandler, printedUnits.toList());
+			metrics.endPhase(Phase.PRINT);
+			for (int i = 0, j = 0; i < printers.length; i++) {
+				if (translated[i] && cachedOutputs[i] == null) {
+					printers[i] = translatedPrinters[j++];
+				}
+			}
 		}
-		context.useModules = isUsingModules();
-		context.sourceFiles = files;
 
 		if (context.useModules) {
 			// when using modules, all classes of the same package are folded to
 			// one module file
 			Map<PackageSymbol, StringBuilder> modules = new HashMap<>();
 			Map<PackageSymbol, ArrayList<Integer>> fileIndexes = new HashMap<>();
-			for (int i = 0; i < compilationUnits.length(); i++) {
+			for (int i : batch) {
 				JCCompilationUnit cu = compilationUnits.get(i);
-				logger.info("scanning " + cu.sourcefile.getName() + "...");
-				OverloadScanner overloadChecker = new OverloadScanner(context);
-				overloadChecker.process(cu);
-				AbstractTreePrinter printer = new Java2TypeScriptTranslator(transpilationHandler, context, cu, preserveSourceLineNumbers);
-				printer.print(cu);
+				String output = cachedOutputs[i];
+				OutputBuffer outputBuffer = null;
+				if (output == null) {
+					AbstractTreePrinter printer = printers[i];
+					if (translated[i] && boundedMemory) {
+						metrics.startPhase(Phase.PRINT);
+						printer = printCompilationUnit(transpilationHandler, cu);
+						metrics.endPhase(Phase.PRINT);
+					}
+					if (printer == null) {
+						reuseTranslation(dependencyIndex, files[i]);
+						continue;
+					}
+					printers[i] = null;
+					if (translationGroups[i] != null) {
+						output = printer.getOutput();
+						cacheTranslation(translationCache, translationGroups[i], cu, output, problemRecorder);
+					} else {
+						// no need to build the output string
+						outputBuffer = printer.getOutputBuffer();
+					}
+				}
 				StringBuilder sb = modules.get(cu.packge);
 				if (sb == null) {
 					sb = new StringBuilder();
@@ -757,8 +1073,14 @@ public class JSweetTranspiler {
 					fileIndexes.put(cu.packge, indexes);
 				}
 				indexes.add(i);
-				sb.append(printer.getOutput());
+				if (outputBuffer != null) {
+					outputBuffer.appendTo(sb);
+					outputBuffer.release();
+				} else {
+					sb.append(output);
+				}
 			}
+			metrics.startPhase(Phase.WRITE);
 			for (Entry<PackageSymbol, StringBuilder> e : modules.entrySet()) {
 				String outputFileRelativePathNoExt = e.getKey().fullname.toString().replace(".", File.separator) + File.separator
 						+ JSweetConfig.MODULE_FILE_NAME;
@@ -767,11 +1089,8 @@ public class JSweetTranspiler {
 				File outputFile = new File(tsOutputDir, outputFileRelativePath);
 				outputFile.getParentFile().mkdirs();
 				String outputFilePath = outputFile.getPath();
-				PrintWriter out = new PrintWriter(outputFilePath);
-				try {
-					out.println(e.getValue().toString());
-				} finally {
-					out.close();
+				if (outputHashIndex.writeIfChanged(outputFile, e.getValue().toString() + System.lineSeparator())) {
+					metrics.addEmittedBytes(outputFile.length());
 				}
 				for (Integer i : fileIndexes.get(e.getKey())) {
 					files[i].tsFile = outputFile;
@@ -779,40 +1098,464 @@ public class JSweetTranspiler {
 				}
 				logger.info("created " + outputFilePath);
 			}
+			metrics.endPhase(Phase.WRITE);
 
 		} else {
 			// regular file-to-file generation
-			for (int i = 0; i < compilationUnits.length(); i++) {
+			for (int i : batch) {
 				JCCompilationUnit cu = compilationUnits.get(i);
-				logger.info("scanning " + cu.sourcefile.getName() + "...");
-				OverloadScanner overloadChecker = new OverloadScanner(context);
-				overloadChecker.process(cu);
-				AbstractTreePrinter printer = new Java2TypeScriptTranslator(transpilationHandler, context, cu, preserveSourceLineNumbers);
-				printer.print(cu);
+				String output = cachedOutputs[i];
+				OutputBuffer outputBuffer = null;
+				if (output == null) {
+					AbstractTreePrinter printer = printers[i];
+					if (translated[i] && boundedMemory) {
+						metrics.startPhase(Phase.PRINT);
+						printer = printCompilationUnit(transpilationHandler, cu);
+						metrics.endPhase(Phase.PRINT);
+					}
+					if (printer == null) {
+						reuseTranslation(dependencyIndex, files[i]);
+						continue;
+					}
+					printers[i] = null;
+					if (translationGroups[i] != null) {
+						output = printer.getOutput();
+						cacheTranslation(translationCache, translationGroups[i], cu, output, problemRecorder);
+					} else {
+						// no need to build the output string
+						outputBuffer = printer.getOutputBuffer();
+					}
+				}
+				metrics.startPhase(Phase.WRITE);
 				String[] s = cu.getSourceFile().getName().split(File.separator.equals("\\") ? "\\\\" : File.separator);
 				String cuName = s[s.length - 1];
 				s = cuName.split("\\.");
 				cuName = s[0];
 				String packageName = isNoRootDirectories() ? Util.getRootRelativeJavaName(cu.packge) : cu.packge.getQualifiedName().toString();
 				String outputFileRelativePathNoExt = packageName.replace(".", File.separator) + File.separator + cuName;
-				String outputFileRelativePath = outputFileRelativePathNoExt + printer.getTargetFilesExtension();
+				String outputFileRelativePath = outputFileRelativePathNoExt + (generateJsDirectly ? ".js" : ".ts");
 				logger.info("output file: " + outputFileRelativePath);
-				File outputFile = new File(tsOutputDir, outputFileRelativePath);
+				File outputFile = new File(generateJsDirectly && jsOutputDir != null ? jsOutputDir : tsOutputDir, outputFileRelativePath);
 				outputFile.getParentFile().mkdirs();
 				String outputFilePath = outputFile.getPath();
-				PrintWriter out = new PrintWriter(outputFilePath);
-				try {
-					out.println(printer.getResult());
-				} finally {
-					out.close();
+				boolean written;
+				if (outputBuffer != null) {
+					outputBuffer.append(System.lineSeparator());
+					written = outputHashIndex.writeIfChanged(outputFile, outputBuffer);
+					outputBuffer.release();
+				} else {
+					written = outputHashIndex.writeIfChanged(outputFile, output + System.lineSeparator());
+				}
+				if (written) {
+					metrics.addEmittedBytes(outputFile.length());
+				}
+				if (generateJsDirectly) {
+					files[i].jsFile = outputFile;
+					files[i].jsFileLastTranspiled = outputFile.lastModified();
+				} else {
+					files[i].tsFile = outputFile;
 				}
-				files[i].tsFile = outputFile;
 				files[i].javaFileLastTranspiled = files[i].getJavaFile().lastModified();
 				logger.info("created " + outputFilePath);
+				metrics.endPhase(Phase.WRITE);
 			}
 		}
-		log.flush();
-		getOrCreateTscRootFile();
+
+		for (int i : batch) {
+			if (translated[i]) {
+				JCCompilationUnit cu = compilationUnits.get(i);
+				if (dependencyIndex != null) {
+					PackageSymbol topLevelPackage = Util.getTopLevelPackage(cu.packge);
+					dependencyIndex.update(files[i].getJavaFile(), cu, generateJsDirectly ? files[i].jsFile : files[i].tsFile,
+							topLevelPackage == null ? null : topLevelPackage.getQualifiedName().toString(),
+							context.entryFiles.contains(new File(cu.sourcefile.getName())));
+				}
+				if (boundedMemory) {
+					new TreeReleaser(cu).scan(cu);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Releases the method bodies of a translated compilation unit, which are
+	 * not needed to attribute the other units (unlike the class and member
+	 * declarations, and the field initializers that may hold constants).
+	 */
+	private static class TreeReleaser extends TreeScanner {
+		private final JCCompilationUnit compilationUnit;
+		private final TreeScanner endPositionsReleaser = new TreeScanner() {
+			@Override
+			public void scan(JCTree tree) {
+				if (tree != null) {
+					// the end position table references all the trees
+					compilationUnit.endPositions.replaceTree(tree, null);
+					super.scan(tree);
+				}
+			}
+		};
+
+		public TreeReleaser(JCCompilationUnit compilationUnit) {
+			this.compilationUnit = compilationUnit;
+		}
+
+		@Override
+		public void visitMethodDef(JCMethodDecl methodDecl) {
+			if (methodDecl.body != null) {
+				if (compilationUnit.endPositions != null) {
+					endPositionsReleaser.scan(methodDecl.body);
+				}
+				methodDecl.body = null;
+			}
+		}
+	}
+
+	private String getIncrementalConfiguration() {
+		return JSweetConfig.getVersionNumber() + "," + moduleKind + "," + noRootDirectories + "," + preserveSourceLineNumbers + "," + ignoreAssertions + ","
+				+ generateJsDirectly + "," + tsOutputDir.getAbsolutePath() + "," + classPath + "," + candiesProcessor.getCandiesProcessedDir().lastModified();
+	}
+
+	private void selectFilesToTranslate(DependencyIndex dependencyIndex, SourceFile[] files, List<JCCompilationUnit> compilationUnits,
+			boolean[] translated) {
+		Set<String> filesToTranslate = dependencyIndex.getFilesToTranslate(Arrays.asList(SourceFile.toFiles(files)));
+		// modules export the sub-directories that contain source files
+		Set<File> directoriesToTranslate = new HashSet<>();
+		if (context.useModules) {
+			for (String path : dependencyIndex.getAddedOrRemovedFiles(Arrays.asList(SourceFile.toFiles(files)))) {
+				directoriesToTranslate.add(new File(path).getParentFile().getParentFile());
+			}
+		}
+		// units of the same package are folded to the same module, and units
+		// of the global namespace share the global imports
+		Set<Symbol> packagesToTranslate = new HashSet<>();
+		boolean globalNamespaceToTranslate = false;
+		for (int i = 0; i < files.length; i++) {
+			File javaFile = files[i].getJavaFile().getAbsoluteFile();
+			translated[i] = filesToTranslate.contains(DependencyIndex.getPath(javaFile)) || directoriesToTranslate.contains(javaFile.getParentFile());
+			if (translated[i]) {
+				JCCompilationUnit cu = compilationUnits.get(i);
+				if (context.useModules) {
+					packagesToTranslate.add(cu.packge);
+				} else if (Util.getTopLevelPackage(cu.packge) == null) {
+					globalNamespaceToTranslate = true;
+				}
+			}
+		}
+		for (int i = 0; i < files.length; i++) {
+			if (!translated[i]) {
+				JCCompilationUnit cu = compilationUnits.get(i);
+				if (context.useModules) {
+					translated[i] = packagesToTranslate.contains(cu.packge);
+				} else {
+					translated[i] = globalNamespaceToTranslate && Util.getTopLevelPackage(cu.packge) == null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Groups the translated units of a batch like the printing does (see
+	 * {@link #printCompilationUnits(TranspilationHandler, List)}), so that the
+	 * units which translation depends on each other are cached together.
+	 */
+	private Map<PackageSymbol, java.util.List<Integer>> getPrintingGroups(List<JCCompilationUnit> compilationUnits, java.util.List<Integer> batch,
+			boolean[] translated) {
+		Map<PackageSymbol, java.util.List<Integer>> groups = new LinkedHashMap<>();
+		for (int i : batch) {
+			if (translated[i]) {
+				JCCompilationUnit cu = compilationUnits.get(i);
+				PackageSymbol group = Util.getTopLevelPackage(cu.packge) == null ? null : cu.packge;
+				groups.computeIfAbsent(group, g -> new ArrayList<>()).add(i);
+			}
+		}
+		return groups;
+	}
+
+	/**
+	 * The options that change the code generated for a unit. The adapter is
+	 * not part of it: the transpiler always prints with the built-in adapter
+	 * of the target language, which is covered by the version number.
+	 */
+	private String getTranslationConfiguration() {
+		return JSweetConfig.getVersionNumber() + "," + moduleKind + "," + ecmaTargetVersion + "," + noRootDirectories + "," + preserveSourceLineNumbers + ","
+				+ ignoreAssertions + "," + generateJsDirectly + "," + candiesProcessor.getCandiesFingerprint();
+	}
+
+	/**
+	 * A group of units printed together, which translation is put in the
+	 * translation cache once all the units are printed.
+	 */
+	private static class TranslationGroup {
+		private final String key;
+		private final int size;
+		private final boolean globalNamespace;
+		private final TranslationCache.Entry entry = new TranslationCache.Entry();
+
+		public TranslationGroup(String key, int size, boolean globalNamespace) {
+			this.key = key;
+			this.size = size;
+			this.globalNamespace = globalNamespace;
+		}
+	}
+
+	private void cacheTranslation(TranslationCache translationCache, TranslationGroup group, JCCompilationUnit cu, String output,
+			ProblemRecorder problemRecorder) {
+		if (group == null) {
+			return;
+		}
+		metrics.startPhase(Phase.TRANSLATION_CACHE);
+		File sourceFile = new File(cu.sourcefile.getName());
+		TranslationCache.Unit unit = new TranslationCache.Unit();
+		unit.output = output;
+		PackageSymbol topLevelPackage = Util.getTopLevelPackage(cu.packge);
+		unit.topLevelPackageName = topLevelPackage == null ? null : topLevelPackage.getQualifiedName().toString();
+		unit.entryFile = context.entryFiles.contains(sourceFile);
+		unit.problems = problemRecorder.getProblems(sourceFile);
+		group.entry.units.add(unit);
+		if (group.entry.units.size() == group.size && !problemRecorder.hasUnlocatedProblems()) {
+			if (group.globalNamespace) {
+				group.entry.globalImports = new ArrayList<>(context.globalImports);
+			}
+			translationCache.put(group.key, group.entry);
+		}
+		metrics.endPhase(Phase.TRANSLATION_CACHE);
+	}
+
+	private void reuseCachedTranslation(TranspilationHandler transpilationHandler, JCCompilationUnit cu, TranslationCache.Unit unit) {
+		File sourceFile = new File(cu.sourcefile.getName());
+		if (unit.topLevelPackageName != null) {
+			context.topLevelPackageNames.add(unit.topLevelPackageName);
+		}
+		if (unit.entryFile) {
+			context.entryFiles.add(sourceFile);
+		}
+		for (TranslationCache.Problem problem : unit.problems) {
+			transpilationHandler.report(JSweetProblem.valueOf(problem.problem), new SourcePosition(sourceFile, null, problem.startPosition,
+					problem.endPosition, problem.startLine, problem.startColumn, problem.endLine, problem.endColumn), problem.message);
+		}
+	}
+
+	private void reuseTranslation(DependencyIndex dependencyIndex, SourceFile file) {
+		DependencyIndex.Entry entry = dependencyIndex.getUpToDateEntry(file.getJavaFile());
+		logger.info("up to date: " + file.getJavaFile());
+		if (generateJsDirectly) {
+			file.jsFile = new File(entry.tsFile);
+		} else {
+			file.tsFile = new File(entry.tsFile);
+		}
+		file.javaFileLastTranspiled = file.getJavaFile().lastModified();
+		if (entry.topLevelPackageName != null) {
+			context.topLevelPackageNames.add(entry.topLevelPackageName);
+		}
+		if (entry.entryFile) {
+			context.entryFiles.add(file.getJavaFile());
+		}
+	}
+
+	private AbstractTreePrinter printCompilationUnit(TranspilationHandler transpilationHandler, JCCompilationUnit cu) {
+		logger.info("printing " + cu.sourcefile.getName() + "...");
+		long startTimestamp = System.currentTimeMillis();
+		AbstractTreePrinter printer;
+		if (generateJsDirectly) {
+			printer = new Java2JavaScriptTranslator(transpilationHandler, context, cu, preserveSourceLineNumbers);
+		} else {
+			printer = new Java2TypeScriptTranslator(transpilationHandler, context, cu, preserveSourceLineNumbers);
+		}
+		printer.print(cu);
+		metrics.addUnit(cu.sourcefile.getName(), System.currentTimeMillis() - startTimestamp, printer.getVisitedNodeCount(), printer.getOutputBuffer().length());
+		return printer;
+	}
+
+	private AbstractTreePrinter[] printCompilationUnits(TranspilationHandler transpilationHandler, List<JCCompilationUnit> compilationUnits) {
+		AbstractTreePrinter[] printers = new AbstractTreePrinter[compilationUnits.length()];
+		// compilation units of the same package share the imported names (and
+		// units in the global namespace share the global imports), so they are
+		// printed in order by the same thread
+		Map<PackageSymbol, java.util.List<Integer>> groups = new LinkedHashMap<>();
+		for (int i = 0; i < compilationUnits.length(); i++) {
+			JCCompilationUnit cu = compilationUnits.get(i);
+			PackageSymbol group = Util.getTopLevelPackage(cu.packge) == null ? null : cu.packge;
+			groups.computeIfAbsent(group, g -> new ArrayList<>()).add(i);
+		}
+		int threads = Math.min(transpilationThreads, groups.size());
+		if (threads <= 1) {
+			for (int i = 0; i < compilationUnits.length(); i++) {
+				printers[i] = printCompilationUnit(transpilationHandler, compilationUnits.get(i));
+			}
+			return printers;
+		}
+
+		logger.info("printing " + printers.length + " compilation units with " + threads + " threads");
+		SymbolCompleter symbolCompleter = new SymbolCompleter();
+		for (JCCompilationUnit cu : compilationUnits) {
+			symbolCompleter.scan(cu);
+		}
+		DeferredTranspilationHandler[] handlers = new DeferredTranspilationHandler[printers.length];
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			java.util.List<Future<?>> futures = new ArrayList<>();
+			for (java.util.List<Integer> group : groups.values()) {
+				futures.add(executor.submit(() -> {
+					for (int i : group) {
+						handlers[i] = new DeferredTranspilationHandler(transpilationHandler);
+						printers[i] = printCompilationUnit(handlers[i], compilationUnits.get(i));
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+			// report the problems in the same order as a serial printing
+			for (DeferredTranspilationHandler handler : handlers) {
+				if (handler != null) {
+					handler.flush();
+				}
+			}
+		}
+		return printers;
+	}
+
+	/**
+	 * Completes the symbols referenced by the scanned trees, so that the
+	 * printers running in parallel do not trigger the lazy (and non
+	 * thread-safe) completion of the javac symbols.
+	 */
+	private static class SymbolCompleter extends TreeScanner {
+		private Set<Symbol> completed = new HashSet<>();
+
+		@Override
+		public void scan(JCTree tree) {
+			if (tree != null) {
+				complete(TreeInfo.symbolFor(tree));
+				if (tree.type instanceof ClassType) {
+					complete(tree.type.tsym);
+				}
+				super.scan(tree);
+			}
+		}
+
+		private void complete(Symbol symbol) {
+			while (symbol != null && completed.add(symbol)) {
+				try {
+					symbol.complete();
+					symbol.getAnnotationMirrors();
+					if (symbol instanceof ClassSymbol && ((ClassSymbol) symbol).members_field != null) {
+						for (Symbol member : symbol.getEnclosedElements()) {
+							member.getAnnotationMirrors();
+						}
+						ClassSymbol clazz = (ClassSymbol) symbol;
+						if (clazz.getSuperclass() != null) {
+							complete(clazz.getSuperclass().tsym);
+						}
+						for (Type superInterface : clazz.getInterfaces()) {
+							complete(superInterface.tsym);
+						}
+					} else if (symbol instanceof PackageSymbol) {
+						symbol.getEnclosedElements();
+					}
+				} catch (CompletionFailure e) {
+					// reported by javac when relevant
+				}
+				symbol = symbol.owner;
+			}
+		}
+	}
+
+	/**
+	 * A transpilation handler that holds the reported problems until they are
+	 * flushed to the decorated handler.
+	 */
+	private static class DeferredTranspilationHandler implements TranspilationHandler {
+		private TranspilationHandler delegate;
+		private java.util.List<Runnable> reports = new ArrayList<>();
+
+		public DeferredTranspilationHandler(TranspilationHandler delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void report(JSweetProblem problem, SourcePosition sourcePosition, String message) {
+			reports.add(() -> delegate.report(problem, sourcePosition, message));
+		}
+
+		@Override
+		public void onCompleted(JSweetTranspiler transpiler, boolean fullPass, SourceFile[] files) {
+			reports.add(() -> delegate.onCompleted(transpiler, fullPass, files));
+		}
+
+		@Override
+		public void reportSilentError() {
+			reports.add(() -> delegate.reportSilentError());
+		}
+
+		public void flush() {
+			for (Runnable report : reports) {
+				report.run();
+			}
+			reports.clear();
+		}
+	}
+
+	/**
+	 * A transpilation handler that records the problems reported for each
+	 * file, so that they can be reported again when the translation is taken
+	 * from the translation cache.
+	 */
+	private static class ProblemRecorder implements TranspilationHandler {
+		private TranspilationHandler delegate;
+		private Map<File, java.util.List<TranslationCache.Problem>> problems = new HashMap<>();
+		private boolean unlocatedProblems = false;
+
+		public ProblemRecorder(TranspilationHandler delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public synchronized void report(JSweetProblem problem, SourcePosition sourcePosition, String message) {
+			if (sourcePosition == null || sourcePosition.getFile() == null) {
+				unlocatedProblems = true;
+			} else {
+				TranslationCache.Problem recordedProblem = new TranslationCache.Problem();
+				recordedProblem.problem = problem.name();
+				recordedProblem.startPosition = sourcePosition.getStartPosition();
+				recordedProblem.endPosition = sourcePosition.getEndPosition();
+				recordedProblem.startLine = sourcePosition.getStartLine();
+				recordedProblem.startColumn = sourcePosition.getStartColumn();
+				recordedProblem.endLine = sourcePosition.getEndLine();
+				recordedProblem.endColumn = sourcePosition.getEndColumn();
+				recordedProblem.message = message;
+				problems.computeIfAbsent(sourcePosition.getFile().getAbsoluteFile(), f -> new ArrayList<>()).add(recordedProblem);
+			}
+			delegate.report(problem, sourcePosition, message);
+		}
+
+		@Override
+		public void onCompleted(JSweetTranspiler transpiler, boolean fullPass, SourceFile[] files) {
+			delegate.onCompleted(transpiler, fullPass, files);
+		}
+
+		@Override
+		public void reportSilentError() {
+			unlocatedProblems = true;
+			delegate.reportSilentError();
+		}
+
+		public synchronized java.util.List<TranslationCache.Problem> getProblems(File file) {
+			java.util.List<TranslationCache.Problem> fileProblems = problems.remove(file.getAbsoluteFile());
+			return fileProblems == null ? new ArrayList<>() : fileProblems;
+		}
+
+		public boolean hasUnlocatedProblems() {
+			return unlocatedProblems;
+		}
 	}
 
 	private File getOrCreateTscRootFile() throws IOException {
@@ -897,11 +1640,18 @@ public class JSweetTranspiler {
 		if (tsCompilationProcess != null && isTscWatchMode()) {
 			return;
 		}
+		boolean fullServicePass = true;
 		if (isTscWatchMode()) {
-			watchedFiles = files;
+			if (useTscService && watchedFiles != null) {
+				// the service recompiles the watched files on each call
+				fullServicePass = false;
+			} else {
+				watchedFiles = files;
+			}
 		}
+		SourceFile[] compiledFiles = isTscWatchMode() ? watchedFiles : files;
 
-		logger.debug("ts2js: " + Arrays.asList(files));
+		logger.debug("ts2js: " + Arrays.asList(compiledFiles));
 		LinkedList<String> args = new LinkedList<>();
 		if (System.getProperty("os.name").startsWith("Windows")) {
 			args.addAll(asList("--target", ecmaTargetVersion.name()));
@@ -918,7 +1668,7 @@ public class JSweetTranspiler {
 			}
 		}
 
-		if (isTscWatchMode()) {
+		if (isTscWatchMode() && !useTscService) {
 			args.add("--watch");
 		}
 		if (isPreserveSourceLineNumbers()) {
@@ -935,7 +1685,7 @@ public class JSweetTranspiler {
 		if (tscRootFile.exists()) {
 			args.add(relativizeTsFile(tscRootFile).toString());
 		}
-		for (SourceFile sourceFile : files) {
+		for (SourceFile sourceFile : compiledFiles) {
 			String filePath = relativizeTsFile(sourceFile.getTsFile()).toString();
 			if (!args.contains(filePath)) {
 				args.add(filePath);
@@ -959,6 +1709,11 @@ public class JSweetTranspiler {
 			}
 		}
 
+		if (useTscService) {
+			ts2jsWithTscService(transpilationHandler, compiledFiles, args, fullServicePass);
+			return;
+		}
+
 		try {
 			logger.info("launching tsc with args: " + args);
 
@@ -1003,6 +1758,27 @@ public class JSweetTranspiler {
 
 	}
 
+	private void ts2jsWithTscService(ErrorCountTranspilationHandler transpilationHandler, SourceFile[] files, LinkedList<String> args, boolean fullPass) {
+		logger.info("compiling with tsc service: " + args);
+		if (tscService == null) {
+			tscService = new TscService(workingDir);
+		}
+		try {
+			TscService.Response response = tscService.compile(getTsOutputDir(), args);
+			for (TscService.Diagnostic diagnostic : response.diagnostics) {
+				SourcePosition position = null;
+				if (diagnostic.file != null) {
+					position = new SourcePosition(new File(diagnostic.file), null, -1, -1, diagnostic.line, diagnostic.column, -1, -1);
+				}
+				transpilationHandler.report(JSweetProblem.INTERNAL_TSC_ERROR, position, diagnostic.message);
+			}
+		} catch (IOException e) {
+			logger.error(e.getMessage(), e);
+			transpilationHandler.report(JSweetProblem.TSC_CANNOT_START, null, JSweetProblem.TSC_CANNOT_START.getMessage());
+		}
+		onTsTranspilationCompleted(fullPass, transpilationHandler, files);
+	}
+
 	private void onTsTranspilationCompleted(boolean fullPass, ErrorCountTranspilationHandler handler, SourceFile[] files) {
 		try {
 			if (handler.getErrorCount() == 0) {
@@ -1151,8 +1927,8 @@ public class JSweetTranspiler {
 					e.printStackTrace();
 				}
 				tsCompilationProcess = null;
-				watchedFiles = null;
 			}
+			watchedFiles = null;
 		}
 	}
 
@@ -1286,4 +2062,198 @@ public class JSweetTranspiler {
 		this.ignoreAssertions = ignoreAssertions;
 	}
 
+	/**
+	 * Gets the number of threads used to generate the TypeScript code of the
+	 * compilation units.
+	 */
+	public int getTranspilationThreads() {
+		return transpilationThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to generate the TypeScript code of the
+	 * compilation units (default is 1). Parsing and attribution remain
+	 * sequential, and the generated code is the same whatever the number of
+	 * threads.
+	 */
+	public void setTranspilationThreads(int transpilationThreads) {
+		this.transpilationThreads = Math.max(1, transpilationThreads);
+	}
+
+	/**
+	 * Tells if the transpiler only translates the files that have changed
+	 * since the last transpilation, and the files that depend on them.
+	 */
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * Sets the transpiler to only translate the files that have changed since
+	 * the last transpilation, and the files that depend on them (the
+	 * dependencies are stored in the working directory). Incremental
+	 * transpilation is not available when generating bundles.
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * Tells if the JavaScript files are generated by a persistent TypeScript
+	 * compiler service rather than by a new <code>tsc</code> process.
+	 */
+	public boolean isUseTscService() {
+		return useTscService;
+	}
+
+	/**
+	 * Sets the transpiler to generate the JavaScript files with a persistent
+	 * TypeScript compiler service (a <code>node</code> process that keeps the
+	 * TypeScript program in memory), rather than by launching a new
+	 * <code>tsc</code> process for each transpilation. The service only emits
+	 * the files that have changed. In watch mode, the service is used instead
+	 * of <code>tsc --watch</code> and the watched files are compiled on each
+	 * invocation of {@link #transpile(TranspilationHandler, SourceFile...)}.
+	 */
+	synchronized public void setUseTscService(boolean useTscService) {
+		this.useTscService = useTscService;
+		if (!useTscService && tscService != null) {
+			tscService.stop();
+			tscService = null;
+		}
+	}
+
+	/**
+	 * Tells if the JavaScript files are generated directly from the Java
+	 * sources, without generating TypeScript files.
+	 */
+	public boolean isGenerateJsDirectly() {
+		return generateJsDirectly;
+	}
+
+	/**
+	 * Sets the transpiler to generate the JavaScript (ES5) files directly from
+	 * the Java sources, without going through TypeScript, so that neither
+	 * <code>node</code> nor <code>tsc</code> are required. This mode does not
+	 * support modules, and does not generate source maps. The JavaScript files
+	 * are generated in the JavaScript output directory (or in the TypeScript
+	 * output directory when not set).
+	 */
+	public void setGenerateJsDirectly(boolean generateJsDirectly) {
+		this.generateJsDirectly = generateJsDirectly;
+	}
+
+	/**
+	 * Tells if the transpiler runs in bounded memory mode.
+	 */
+	public boolean isBoundedMemory() {
+		return boundedMemory;
+	}
+
+	/**
+	 * Sets the transpiler to run in bounded memory mode, where the compilation
+	 * units are attributed, printed and written package by package, and where
+	 * the method bodies, the attribution environments and the printed outputs
+	 * of a package are released as soon as it is written. Note that the whole
+	 * project is still parsed and entered up front, so that the syntax trees of
+	 * the declarations and the symbols of all the packages remain in memory:
+	 * only the attribution and printing memory grows with the largest package
+	 * rather than with the whole project. In this mode, the printing does not
+	 * run in parallel (see {@link #setTranspilationThreads(int)}), and the files
+	 * of the packages translated before a Java error is found are written.
+	 */
+	public void setBoundedMemory(boolean boundedMemory) {
+		this.boundedMemory = boundedMemory;
+	}
+
+	/**
+	 * Gets the directory of the translation cache (null when the cache is
+	 * disabled).
+	 */
+	public File getTranslationCacheDirectory() {
+		return translationCacheDirectory;
+	}
+
+	/**
+	 * Sets the directory of a local translation cache, which holds the code
+	 * generated for the compilation units, indexed by a hash of their sources,
+	 * of the signatures of the types they reference, of the candies, and of
+	 * the transpiler options. The units found in the cache are still
+	 * attributed by javac, but they are not printed again. The cache can be
+	 * shared by several projects or checkouts, and is not used when generating
+	 * bundles. Null (default) disables the cache.
+	 * 
+	 * <p>
+	 * The cache assumes the code is generated by the built-in adapters
+	 * ({@link org.jsweet.transpiler.typescript.Java2TypeScriptAdapter} and
+	 * {@link org.jsweet.transpiler.javascript.Java2JavaScriptAdapter}). It
+	 * must be disabled when printing with a custom adapter or with
+	 * substitutions registered on the built-in ones, since neither is part of
+	 * the cache keys.
+	 */
+	public void setTranslationCacheDirectory(File translationCacheDirectory) {
+		this.translationCacheDirectory = translationCacheDirectory;
+	}
+
+	/**
+	 * Gets the maximum size of the translation cache, in bytes.
+	 */
+	public long getTranslationCacheSize() {
+		return translationCacheSize;
+	}
+
+	/**
+	 * Sets the maximum size of the translation cache, in bytes, over which the
+	 * least recently used entries are removed (defaults to
+	 * {@link #DEFAULT_TRANSLATION_CACHE_SIZE}).
+	 * 
+	 * @see #setTranslationCacheDirectory(File)
+	 */
+	public void setTranslationCacheSize(long translationCacheSize) {
+		this.translationCacheSize = translationCacheSize;
+	}
+
+	/**
+	 * Gets the directory of the shared candies cache (null when the cache is
+	 * disabled).
+	 */
+	public File getSharedCandiesCacheDirectory() {
+		return candiesProcessor.getSharedCacheDirectory();
+	}
+
+	/**
+	 * Sets the directory of a machine-wide cache of processed candies (for
+	 * instance {@link #DEFAULT_SHARED_CANDIES_CACHE_DIRECTORY}), so that the
+	 * projects and the concurrent builds depending on the same candies
+	 * process them only once. Null (default) disables the cache.
+	 * 
+	 * @see CandiesProcessor#setSharedCacheDirectory(File)
+	 */
+	public void setSharedCandiesCacheDirectory(File sharedCandiesCacheDirectory) {
+		candiesProcessor.setSharedCacheDirectory(sharedCandiesCacheDirectory);
+	}
+
+	/**
+	 * Adds a listener to be notified of the metrics of each transpilation run.
+	 */
+	public void addMetricsListener(TranspilationMetricsListener metricsListener) {
+		metricsListeners.add(metricsListener);
+	}
+
+	/**
+	 * Removes a listener added with
+	 * {@link #addMetricsListener(TranspilationMetricsListener)}.
+	 */
+	public void removeMetricsListener(TranspilationMetricsListener metricsListener) {
+		metricsListeners.remove(metricsListener);
+	}
+
+	/**
+	 * Gets the metrics of the last transpilation run (null if the transpiler
+	 * has not run yet).
+	 */
+	public TranspilationMetrics getLastMetrics() {
+		return metrics;
+	}
+
 }
@@ -0,0 +1,155 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.transpiler;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.jsweet.transpiler.util.OutputBuffer;
+import org.jsweet.transpiler.util.Util;
+
+import com.google.gson.Gson;
+
+/**
+ * A class that is serialized in the working directory to store the hashes of
+ * the files generated by the transpiler, so that a generated file is only
+ * written when its content changes (rewriting an unchanged file would update
+ * its modification time and trigger useless recompilations in the tools
+ * watching the output directories).
+ */
+class OutputHashIndex {
+
+	private final static Logger logger = Logger.getLogger(OutputHashIndex.class);
+
+	private final static Gson gson = new Gson();
+
+	/**
+	 * The information stored for a generated file.
+	 */
+	static class Entry {
+		String hash;
+		long length;
+		long lastModified;
+	}
+
+	/**
+	 * The entries, indexed by generated file path.
+	 */
+	Map<String, Entry> entries = new HashMap<>();
+
+	private transient boolean modified = false;
+
+	/**
+	 * Reads the index from the given file, or creates an empty index if the
+	 * file does not exist.
+	 */
+	static OutputHashIndex read(File indexFile) {
+		OutputHashIndex index = null;
+		if (indexFile.exists()) {
+			try {
+				index = gson.fromJson(FileUtils.readFileToString(indexFile), OutputHashIndex.class);
+			} catch (Exception e) {
+				logger.error("cannot read output hash index", e);
+			}
+		}
+		if (index == null) {
+			index = new OutputHashIndex();
+		}
+		return index;
+	}
+
+	/**
+	 * Writes this index to the given file, if it was modified since it was
+	 * read.
+	 */
+	void write(File indexFile) {
+		if (!modified) {
+			return;
+		}
+		try {
+			FileUtils.write(indexFile, gson.toJson(this));
+			modified = false;
+		} catch (Exception e) {
+			logger.error("cannot write output hash index", e);
+		}
+	}
+
+	/**
+	 * Writes the given content to the given file, unless the file already
+	 * holds this content (as written by the previous call).
+	 * 
+	 * @return true if the file was written
+	 */
+	boolean writeIfChanged(File file, String content) throws IOException {
+		return writeIfChanged(file, Util.getHash(content), writer -> writer.write(content));
+	}
+
+	/**
+	 * Writes the given buffer's content to the given file, unless the file
+	 * already holds this content (as written by the previous call). The
+	 * content is streamed to the file without building a string.
+	 * 
+	 * @return true if the file was written
+	 */
+	boolean writeIfChanged(File file, OutputBuffer content) throws IOException {
+		return writeIfChanged(file, Util.getHash(content), content::writeTo);
+	}
+
+	private interface ContentWriter {
+		void write(Writer writer) throws IOException;
+	}
+
+	private boolean writeIfChanged(File file, String hash, ContentWriter contentWriter) throws IOException {
+		String path = file.getAbsolutePath();
+		Entry entry = entries.get(path);
+		// the length and modification time tell if the file was changed by
+		// someone else
+		if (entry != null && entry.hash.equals(hash) && entry.length == file.length() && entry.lastModified == file.lastModified()) {
+			logger.debug("unchanged: " + file);
+			return false;
+		}
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(FileUtils.openOutputStream(file), Charset.defaultCharset()))) {
+			contentWriter.write(writer);
+		}
+		entry = new Entry();
+		entry.hash = hash;
+		entry.length = file.length();
+		entry.lastModified = file.lastModified();
+		entries.put(path, entry);
+		modified = true;
+		return true;
+	}
+
+	/**
+	 * Deletes the given file (if exists) and forgets its hash.
+	 */
+	void delete(File file) {
+		FileUtils.deleteQuietly(file);
+		if (entries.remove(file.getAbsolutePath()) != null) {
+			modified = true;
+		}
+	}
+
+}
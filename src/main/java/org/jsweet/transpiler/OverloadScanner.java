@@ -17,6 +17,7 @@
 package org.jsweet.transpiler;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,7 +25,6 @@ import java.util.Map;
 import javax.lang.model.element.Element;
 
 import org.jsweet.JSweetConfig;
-import org.jsweet.transpiler.util.Util;
 
 import com.sun.tools.javac.code.Symbol.TypeSymbol;
 import com.sun.tools.javac.code.Types;
@@ -46,6 +46,11 @@ import com.sun.tools.javac.tree.TreeScanner;
  * This AST scanner detects method overloads and gather them into
  * {@link Overload} objects.
  * 
+ * <p>
+ * The analysis is done once for all the compilation units to be printed (see
+ * {@link #process(Iterable)}) and the result is published in the context as an
+ * unmodifiable snapshot, which can be read concurrently by the printers.
+ * 
  * @author Renaud Pawlak
  */
 public class OverloadScanner extends TreeScanner {
@@ -53,6 +58,8 @@ public class OverloadScanner extends TreeScanner {
 	JSweetContext context;
 	Types types;
 	int pass = 1;
+	Map<ClassSymbol, Map<String, Overload>> overloads;
+	List<Overload> addedOverloads;
 
 	/**
 	 * Gathers methods overloading each other.
@@ -116,10 +123,10 @@ public class OverloadScanner extends TreeScanner {
 	 * Gets an overload instance for the given class and method.
 	 */
 	public Overload getOverload(ClassSymbol clazz, MethodSymbol method) {
-		Map<String, Overload> m = context.overloads.get(clazz);
+		Map<String, Overload> m = overloads.get(clazz);
 		if (m == null) {
 			m = new HashMap<>();
-			context.overloads.put(clazz, m);
+			overloads.put(clazz, m);
 		}
 		String name = method.getSimpleName().toString();
 		Overload overload = m.get(name);
@@ -127,13 +134,14 @@ public class OverloadScanner extends TreeScanner {
 			overload = new Overload();
 			overload.methodName = name;
 			m.put(name, overload);
+			addedOverloads.add(overload);
 		}
 		return overload;
 	}
 
 	@Override
 	public void visitClassDef(JCClassDecl classdecl) {
-		if (classdecl.sym.isInterface() || Util.hasAnnotationType(classdecl.sym, JSweetConfig.ANNOTATION_INTERFACE)) {
+		if (classdecl.sym.isInterface() || context.hasAnnotationType(classdecl.sym, JSweetConfig.ANNOTATION_INTERFACE)) {
 			return;
 		}
 		if (pass == 1) {
@@ -160,7 +168,8 @@ public class OverloadScanner extends TreeScanner {
 		if (!(e instanceof ClassSymbol)) {
 			return;
 		}
-		Overload overload = context.getOverload(((ClassSymbol) e), methodDecl.name.toString());
+		Map<String, Overload> m = overloads.get((ClassSymbol) e);
+		Overload overload = m == null ? null : m.get(methodDecl.name.toString());
 		if (overload != null && overload.methods.size() > 1 && overload.isValid) {
 			if (!methodDecl.sym.equals(overload.coreMethod)) {
 				if (methodDecl.body != null && methodDecl.body.stats.size() == 1) {
@@ -178,7 +187,7 @@ public class OverloadScanner extends TreeScanner {
 					if (invocation == null) {
 						overload.isValid = false;
 					} else {
-						MethodSymbol method = Util.findMethodDeclarationInType(types, (TypeSymbol) e, invocation);
+						MethodSymbol method = context.findMethodDeclarationInType((TypeSymbol) e, invocation);
 						if (method != null && method.getSimpleName().toString().equals(overload.methodName)) {
 							if (invocation.getArguments() != null) {
 								for (int i = 0; i < invocation.getArguments().size(); i++) {
@@ -201,16 +210,49 @@ public class OverloadScanner extends TreeScanner {
 
 	/**
 	 * Processes all the overload of a given compilation unit.
+	 * 
+	 * @see #process(Iterable)
 	 */
 	public void process(JCCompilationUnit cu) {
-		scan(cu);
-		for (Map<String, Overload> overloads : context.overloads.values()) {
-			for (Overload overload : overloads.values()) {
-				overload.calculate();
-			}
+		process(Collections.singletonList(cu));
+	}
+
+	/**
+	 * Processes all the overloads of the given compilation units in one pass
+	 * and publishes them in the context.
+	 * 
+	 * <p>
+	 * The overloads already found in the context (for instance for the
+	 * previous batches of a bounded-memory transpilation) are kept as is and
+	 * only the overloads of the given units are calculated. The context is
+	 * then given a new unmodifiable snapshot of all the overloads.
+	 */
+	public void process(Iterable<JCCompilationUnit> compilationUnits) {
+		overloads = new HashMap<>(context.overloads);
+		for (Map.Entry<ClassSymbol, Map<String, Overload>> entry : overloads.entrySet()) {
+			entry.setValue(new HashMap<>(entry.getValue()));
+		}
+		addedOverloads = new ArrayList<>();
+		pass = 1;
+		for (JCCompilationUnit cu : compilationUnits) {
+			scan(cu);
+		}
+		for (Overload overload : addedOverloads) {
+			overload.calculate();
 		}
 		pass++;
-		scan(cu);
+		for (JCCompilationUnit cu : compilationUnits) {
+			scan(cu);
+		}
+		for (Overload overload : addedOverloads) {
+			overload.methods = Collections.unmodifiableList(overload.methods);
+		}
+		for (Map.Entry<ClassSymbol, Map<String, Overload>> entry : overloads.entrySet()) {
+			entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+		}
+		context.overloads = Collections.unmodifiableMap(overloads);
+		overloads = null;
+		addedOverloads = null;
 	}
 
 }
@@ -0,0 +1,302 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.transpiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.jsweet.transpiler.util.Util;
+
+import com.google.gson.Gson;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.CompletionFailure;
+import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.code.Symbol.VarSymbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+
+/**
+ * A local on-disk cache of the code generated for the Java compilation units,
+ * so that the units that were already translated (possibly in another
+ * checkout or by another project) are not printed again.
+ * 
+ * <p>
+ * An entry holds the code generated for a group of compilation units printed
+ * together, as well as the problems reported while printing them. It is
+ * stored in a file named after its key, which is a hash of the sources of the
+ * units, of the signatures of the types they reference, and of the transpiler
+ * configuration (options and candies). When the cache grows over its maximum
+ * size, the least recently used entries are removed.
+ * 
+ * @see JSweetTranspiler#setTranslationCacheDirectory(File)
+ */
+class TranslationCache {
+
+	private final static Logger logger = Logger.getLogger(TranslationCache.class);
+
+	private final static Gson gson = new Gson();
+
+	private final static String ENTRY_FILE_EXTENSION = ".json";
+
+	/**
+	 * A problem reported while printing a compilation unit.
+	 */
+	static class Problem {
+		String problem;
+		int startPosition;
+		int endPosition;
+		int startLine;
+		int startColumn;
+		int endLine;
+		int endColumn;
+		String message;
+	}
+
+	/**
+	 * The translation of a compilation unit.
+	 */
+	static class Unit {
+		String output;
+		String topLevelPackageName;
+		boolean entryFile;
+		List<Problem> problems = new ArrayList<>();
+	}
+
+	/**
+	 * The translation of a group of compilation units.
+	 */
+	static class Entry {
+		List<Unit> units = new ArrayList<>();
+		/**
+		 * The global imports after the translation of the units (only for the
+		 * units of the global namespace).
+		 */
+		List<String> globalImports;
+	}
+
+	private final File directory;
+	private final long maxSize;
+	private long size = -1;
+	private final Map<ClassSymbol, String> signatures = new HashMap<>();
+
+	/**
+	 * Creates a cache.
+	 * 
+	 * @param directory
+	 *            the directory where the entries are stored (created if it
+	 *            does not exist)
+	 * @param maxSize
+	 *            the size (in bytes) over which the least recently used
+	 *            entries are removed
+	 */
+	TranslationCache(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	private File getEntryFile(String key) {
+		return new File(directory, key + ENTRY_FILE_EXTENSION);
+	}
+
+	/**
+	 * Gets the entry of the given key, or null if not in the cache.
+	 */
+	Entry get(String key) {
+		File entryFile = getEntryFile(key);
+		if (!entryFile.exists()) {
+			return null;
+		}
+		try {
+			Entry entry = gson.fromJson(FileUtils.readFileToString(entryFile), Entry.class);
+			// the modification time tells the least recently used entries
+			entryFile.setLastModified(System.currentTimeMillis());
+			return entry;
+		} catch (Exception e) {
+			logger.warn("cannot read translation cache entry " + entryFile, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Puts an entry in the cache, and removes the least recently used entries
+	 * if the cache is full.
+	 */
+	void put(String key, Entry entry) {
+		File entryFile = getEntryFile(key);
+		try {
+			directory.mkdirs();
+			// other transpilers may use the same cache: the entry is written to a
+			// temporary file first so that they never read a partial entry
+			File tmpFile = File.createTempFile(key, ".tmp", directory);
+			FileUtils.write(tmpFile, gson.toJson(entry));
+			long previousLength = entryFile.length();
+			Files.move(tmpFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			if (size >= 0) {
+				size += entryFile.length() - previousLength;
+			}
+		} catch (IOException e) {
+			logger.warn("cannot write translation cache entry " + entryFile, e);
+			return;
+		}
+		evict();
+	}
+
+	private void evict() {
+		if (size >= 0 && size <= maxSize) {
+			return;
+		}
+		File[] entryFiles = directory.listFiles((dir, name) -> name.endsWith(ENTRY_FILE_EXTENSION));
+		if (entryFiles == null) {
+			return;
+		}
+		size = 0;
+		for (File entryFile : entryFiles) {
+			size += entryFile.length();
+		}
+		if (size <= maxSize) {
+			return;
+		}
+		// removes down to 3/4 of the maximum size, so that the directory is
+		// not listed again on the next put
+		Arrays.sort(entryFiles, Comparator.comparingLong(File::lastModified));
+		for (File entryFile : entryFiles) {
+			if (size <= maxSize * 3 / 4) {
+				break;
+			}
+			long length = entryFile.length();
+			if (entryFile.delete()) {
+				size -= length;
+			}
+		}
+		logger.debug("translation cache size after eviction: " + size);
+	}
+
+	/**
+	 * Gets the key of the translation of the given compilation units (which
+	 * must be attributed).
+	 * 
+	 * @param configuration
+	 *            the transpiler configuration (options, candies) the
+	 *            translation depends on
+	 * @param compilationUnits
+	 *            the compilation units, in printing order
+	 */
+	String getKey(String configuration, List<JCCompilationUnit> compilationUnits) throws IOException {
+		StringBuilder sb = new StringBuilder(configuration).append('\n');
+		for (JCCompilationUnit compilationUnit : compilationUnits) {
+			sb.append(new File(compilationUnit.sourcefile.getName()).getName()).append(' ')
+					.append(Util.getHash(compilationUnit.sourcefile.getCharContent(true).toString())).append('\n');
+			for (Map.Entry<String, String> signature : getReferencedTypeSignatures(compilationUnit).entrySet()) {
+				sb.append(signature.getKey()).append(' ').append(signature.getValue()).append('\n');
+			}
+		}
+		return Util.getHash(sb.toString());
+	}
+
+	/**
+	 * Gets the signatures of the types referenced by the given compilation
+	 * unit (and of their super types), indexed by type name.
+	 */
+	private Map<String, String> getReferencedTypeSignatures(JCCompilationUnit compilationUnit) {
+		Map<String, String> referencedTypeSignatures = new TreeMap<>();
+		Set<ClassSymbol> visited = new HashSet<>();
+		new TreeScanner() {
+			@Override
+			public void scan(JCTree tree) {
+				if (tree != null) {
+					addReferencedType(TreeInfo.symbolFor(tree));
+					if (tree.type != null) {
+						addReferencedType(tree.type.tsym);
+					}
+					super.scan(tree);
+				}
+			}
+
+			private void addReferencedType(Symbol symbol) {
+				ClassSymbol clazz = null;
+				for (Symbol s = symbol; s != null && !(s instanceof PackageSymbol); s = s.owner) {
+					if (s instanceof ClassSymbol) {
+						clazz = (ClassSymbol) s;
+					}
+				}
+				if (clazz != null && visited.add(clazz)) {
+					try {
+						referencedTypeSignatures.put(clazz.flatname.toString(), getSignature(clazz));
+						if (clazz.getSuperclass() != null) {
+							addReferencedType(clazz.getSuperclass().tsym);
+						}
+						for (Type superInterface : clazz.getInterfaces()) {
+							addReferencedType(superInterface.tsym);
+						}
+					} catch (CompletionFailure e) {
+						// reported by javac when relevant
+					}
+				}
+			}
+		}.scan(compilationUnit);
+		return referencedTypeSignatures;
+	}
+
+	private String getSignature(ClassSymbol clazz) {
+		String signature = signatures.get(clazz);
+		if (signature == null) {
+			StringBuilder sb = new StringBuilder();
+			appendSignature(sb, clazz);
+			signature = Util.getHash(sb.toString());
+			signatures.put(clazz, signature);
+		}
+		return signature;
+	}
+
+	private static void appendSignature(StringBuilder sb, ClassSymbol clazz) {
+		sb.append(clazz.getAnnotationMirrors()).append(clazz.getModifiers()).append(' ').append(clazz.getKind()).append(' ').append(clazz.flatname)
+				.append(" extends ").append(clazz.getSuperclass()).append(" implements ").append(clazz.getInterfaces()).append('\n');
+		if (clazz.members_field == null) {
+			// synthetic classes (such as the array class)
+			return;
+		}
+		for (Symbol member : clazz.getEnclosedElements()) {
+			if (member instanceof ClassSymbol) {
+				appendSignature(sb, (ClassSymbol) member);
+			} else {
+				sb.append(member.getAnnotationMirrors()).append(member.getModifiers()).append(' ').append(member.name).append(' ').append(member.type);
+				if (member instanceof VarSymbol) {
+					sb.append(" = ").append(((VarSymbol) member).getConstValue());
+				}
+				sb.append('\n');
+			}
+		}
+	}
+
+}
@@ -0,0 +1,328 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.transpiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.GsonBuilder;
+
+/**
+ * The metrics of a transpilation run: the duration and the heap usage of each
+ * phase, the printing duration of each compilation unit, and a few counters.
+ * 
+ * <p>
+ * The heap usage is sampled without forcing any garbage collection, so it
+ * only gives a trend, which is mostly useful to compare runs on the same
+ * project.
+ * 
+ * @see JSweetTranspiler#addMetricsListener(TranspilationMetricsListener)
+ */
+public class TranspilationMetrics {
+
+	/**
+	 * The phases of a transpilation run, in execution order.
+	 */
+	public enum Phase {
+		/**
+		 * Extraction of the candies found in the classpath.
+		 */
+		CANDIES,
+		/**
+		 * Parsing of the Java source files.
+		 */
+		PARSE,
+		/**
+		 * Creation of the symbols of the Java compilation units.
+		 */
+		ENTER,
+		/**
+		 * Attribution (type checking) of the Java compilation units.
+		 */
+		ATTRIBUTE,
+		/**
+		 * Look up and storage of the translations in the translation cache.
+		 */
+		TRANSLATION_CACHE,
+		/**
+		 * Collection of the overloaded methods.
+		 */
+		OVERLOAD_SCAN,
+		/**
+		 * Printing of the compilation units to TypeScript (or JavaScript).
+		 */
+		PRINT,
+		/**
+		 * Writing of the generated files.
+		 */
+		WRITE,
+		/**
+		 * Compilation of the generated TypeScript files.
+		 */
+		TSC,
+		/**
+		 * Generation of the bundles.
+		 */
+		BUNDLE
+	}
+
+	/**
+	 * The metrics of a phase.
+	 */
+	public static class PhaseMetrics {
+		private final Phase phase;
+		private long duration;
+		private long heapUsedBefore;
+		private long heapUsedAfter;
+
+		private transient long startTimestamp;
+
+		private PhaseMetrics(Phase phase) {
+			this.phase = phase;
+		}
+
+		/**
+		 * The measured phase.
+		 */
+		public Phase getPhase() {
+			return phase;
+		}
+
+		/**
+		 * The phase duration in milliseconds (cumulated if the phase ran
+		 * several times).
+		 */
+		public long getDuration() {
+			return duration;
+		}
+
+		/**
+		 * The used heap size in bytes when the phase started.
+		 */
+		public long getHeapUsedBefore() {
+			return heapUsedBefore;
+		}
+
+		/**
+		 * The used heap size in bytes when the phase ended.
+		 */
+		public long getHeapUsedAfter() {
+			return heapUsedAfter;
+		}
+	}
+
+	/**
+	 * The metrics of the printing of a compilation unit.
+	 */
+	public static class UnitMetrics {
+		private final String file;
+		private final long duration;
+		private final int visitedNodes;
+		private final int printedChars;
+
+		private UnitMetrics(String file, long duration, int visitedNodes, int printedChars) {
+			this.file = file;
+			this.duration = duration;
+			this.visitedNodes = visitedNodes;
+			this.printedChars = printedChars;
+		}
+
+		/**
+		 * The Java source file of the compilation unit.
+		 */
+		public String getFile() {
+			return file;
+		}
+
+		/**
+		 * The printing duration in milliseconds.
+		 */
+		public long getDuration() {
+			return duration;
+		}
+
+		/**
+		 * The number of AST nodes visited by the printer.
+		 */
+		public int getVisitedNodes() {
+			return visitedNodes;
+		}
+
+		/**
+		 * The number of printed characters.
+		 */
+		public int getPrintedChars() {
+			return printedChars;
+		}
+	}
+
+	private final long startTimestamp = System.currentTimeMillis();
+	private long duration;
+	private final Map<Phase, PhaseMetrics> phases = new EnumMap<>(Phase.class);
+	private final List<UnitMetrics> units = new ArrayList<>();
+	private int files;
+	private int translatedFiles;
+	private long visitedNodes;
+	private long emittedBytes;
+	private int errors;
+
+	private static long getHeapUsed() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Starts measuring the given phase.
+	 */
+	void startPhase(Phase phase) {
+		PhaseMetrics metrics = phases.get(phase);
+		if (metrics == null) {
+			metrics = new PhaseMetrics(phase);
+			metrics.heapUsedBefore = getHeapUsed();
+			phases.put(phase, metrics);
+		}
+		metrics.startTimestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * Ends measuring the given phase, which must have been started with
+	 * {@link #startPhase(Phase)}.
+	 */
+	void endPhase(Phase phase) {
+		PhaseMetrics metrics = phases.get(phase);
+		metrics.duration += System.currentTimeMillis() - metrics.startTimestamp;
+		metrics.heapUsedAfter = getHeapUsed();
+	}
+
+	/**
+	 * Adds the printing metrics of a compilation unit (may be called
+	 * concurrently by the printing threads).
+	 */
+	synchronized void addUnit(String file, long duration, int visitedNodes, int printedChars) {
+		units.add(new UnitMetrics(file, duration, visitedNodes, printedChars));
+		this.visitedNodes += visitedNodes;
+	}
+
+	void setFiles(int files) {
+		this.files = files;
+	}
+
+	void setTranslatedFiles(int translatedFiles) {
+		this.translatedFiles = translatedFiles;
+	}
+
+	void addEmittedBytes(long bytes) {
+		emittedBytes += bytes;
+	}
+
+	void end(int errors) {
+		this.errors = errors;
+		duration = System.currentTimeMillis() - startTimestamp;
+	}
+
+	/**
+	 * The time when the transpilation started.
+	 */
+	public long getStartTimestamp() {
+		return startTimestamp;
+	}
+
+	/**
+	 * The total duration of the transpilation in milliseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * The metrics of the phases that ran, in execution order.
+	 */
+	public List<PhaseMetrics> getPhases() {
+		return Collections.unmodifiableList(new ArrayList<>(phases.values()));
+	}
+
+	/**
+	 * The metrics of the given phase (null if the phase did not run).
+	 */
+	public PhaseMetrics getPhase(Phase phase) {
+		return phases.get(phase);
+	}
+
+	/**
+	 * The printing metrics of the translated compilation units.
+	 */
+	public synchronized List<UnitMetrics> getUnits() {
+		return Collections.unmodifiableList(new ArrayList<>(units));
+	}
+
+	/**
+	 * The number of Java source files given to the transpiler.
+	 */
+	public int getFiles() {
+		return files;
+	}
+
+	/**
+	 * The number of Java source files that were actually translated (see
+	 * incremental transpilation).
+	 */
+	public int getTranslatedFiles() {
+		return translatedFiles;
+	}
+
+	/**
+	 * The number of AST nodes visited by the printers.
+	 */
+	public long getVisitedNodes() {
+		return visitedNodes;
+	}
+
+	/**
+	 * The number of bytes written to the generated files.
+	 */
+	public long getEmittedBytes() {
+		return emittedBytes;
+	}
+
+	/**
+	 * The number of errors reported during the transpilation.
+	 */
+	public int getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Returns a JSON representation of these metrics.
+	 */
+	public String toJson() {
+		return new GsonBuilder().setPrettyPrinting().create().toJson(this);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("transpilation metrics: " + duration + " ms");
+		for (PhaseMetrics phase : phases.values()) {
+			sb.append(", " + phase.phase.name().toLowerCase() + "=" + phase.duration + " ms");
+		}
+		sb.append(", files=" + translatedFiles + "/" + files + ", nodes=" + visitedNodes + ", bytes=" + emittedBytes);
+		return sb.toString();
+	}
+
+}
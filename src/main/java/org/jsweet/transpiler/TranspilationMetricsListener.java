@@ -0,0 +1,37 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.transpiler;
+
+/**
+ * Objects implementing this interface are notified of the metrics of each
+ * transpilation run.
+ * 
+ * @see JSweetTranspiler#addMetricsListener(TranspilationMetricsListener)
+ */
+public interface TranspilationMetricsListener {
+
+	/**
+	 * Called at the end of each transpilation run.
+	 * 
+	 * @param transpiler
+	 *            the transpiler that ran
+	 * @param metrics
+	 *            the metrics of the run
+	 */
+	void onMetrics(JSweetTranspiler transpiler, TranspilationMetrics metrics);
+
+}
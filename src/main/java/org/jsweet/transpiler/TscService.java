@@ -0,0 +1,196 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.transpiler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.jsweet.transpiler.util.ProcessUtil;
+
+import com.google.gson.Gson;
+
+/**
+ * A persistent TypeScript compiler, running as a <code>node</code> process
+ * that keeps the TypeScript program in memory between compilations, and
+ * only emits the JavaScript files that have changed.
+ * 
+ * <p>
+ * The service is driven through the process standard input and output, with
+ * one JSON request/response per line (see <code>tsc-service.js</code>).
+ * 
+ * @see JSweetTranspiler#setUseTscService(boolean)
+ */
+class TscService {
+
+	private final static Logger logger = Logger.getLogger(TscService.class);
+
+	private final static Gson gson = new Gson();
+
+	private final static String SCRIPT_NAME = "tsc-service.js";
+
+	private final static String END_OF_OUTPUT = "";
+
+	/**
+	 * A request sent to the service.
+	 */
+	static class Request {
+		int id;
+		String cwd;
+		List<String> args;
+	}
+
+	/**
+	 * A diagnostic reported by the TypeScript compiler.
+	 */
+	static class Diagnostic {
+		String file;
+		int line;
+		int column;
+		String message;
+	}
+
+	/**
+	 * The response of the service to a request.
+	 */
+	static class Response {
+		int id;
+		String error;
+		List<Diagnostic> diagnostics = new ArrayList<>();
+		List<String> emittedFiles = new ArrayList<>();
+	}
+
+	private final File workingDir;
+	private Process process;
+	private PrintWriter input;
+	private BlockingQueue<String> output;
+	private int requestId = 0;
+
+	/**
+	 * Creates a service, which process will be started on the first
+	 * compilation.
+	 * 
+	 * @param workingDir
+	 *            the directory where the service script is extracted
+	 */
+	TscService(File workingDir) {
+		this.workingDir = workingDir;
+	}
+
+	private void start() throws IOException {
+		File scriptFile = new File(workingDir, SCRIPT_NAME);
+		try (InputStream script = TscService.class.getResourceAsStream(SCRIPT_NAME)) {
+			FileUtils.copyInputStreamToFile(script, scriptFile);
+		}
+		File typescriptDir = ProcessUtil.getGlobalNodeModuleDir("typescript");
+		logger.info("starting tsc service with " + typescriptDir);
+		ProcessBuilder processBuilder = new ProcessBuilder("node", scriptFile.getAbsolutePath(), typescriptDir.getAbsolutePath());
+		processBuilder.redirectErrorStream(true);
+		processBuilder.directory(workingDir);
+		Process process = processBuilder.start();
+		BlockingQueue<String> output = new LinkedBlockingQueue<>();
+		// unlike the ProcessUtil threads, the reader must not keep the JVM alive
+		// (the service only terminates when its input is closed)
+		Thread reader = new Thread(() -> {
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.startsWith("{")) {
+						output.add(line);
+					} else {
+						logger.info("tsc service - " + line);
+					}
+				}
+			} catch (IOException e) {
+				logger.debug("tsc service output closed", e);
+			} finally {
+				output.add(END_OF_OUTPUT);
+			}
+		} , "tsc-service");
+		reader.setDaemon(true);
+		reader.start();
+		this.process = process;
+		this.output = output;
+		input = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Compiles the given files with the TypeScript compiler.
+	 * 
+	 * @param currentDir
+	 *            the directory the relative paths are resolved against
+	 * @param args
+	 *            the <code>tsc</code> command line arguments (options and
+	 *            files)
+	 * @return the response of the service, holding the compilation errors
+	 * @throws IOException
+	 *             if the service process cannot be started or terminates
+	 *             unexpectedly
+	 */
+	synchronized Response compile(File currentDir, List<String> args) throws IOException {
+		if (process == null || !process.isAlive()) {
+			start();
+		}
+		Request request = new Request();
+		request.id = ++requestId;
+		request.cwd = currentDir.getAbsolutePath();
+		request.args = args;
+		input.println(gson.toJson(request));
+		input.flush();
+		String line;
+		try {
+			line = output.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for tsc service", e);
+		}
+		if (END_OF_OUTPUT.equals(line)) {
+			stop();
+			throw new IOException("tsc service terminated unexpectedly");
+		}
+		Response response = gson.fromJson(line, Response.class);
+		if (response.error != null) {
+			throw new IOException("tsc service failure: " + response.error);
+		}
+		logger.debug("tsc service emitted: " + response.emittedFiles);
+		return response;
+	}
+
+	/**
+	 * Stops the service process (it will be restarted on the next
+	 * compilation).
+	 */
+	synchronized void stop() {
+		if (process != null) {
+			input.close();
+			process.destroy();
+			process = null;
+		}
+	}
+
+}
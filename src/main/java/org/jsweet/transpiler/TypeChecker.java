@@ -32,6 +32,7 @@ import com.sun.tools.javac.tree.JCTree.JCArrayTypeTree;
 import com.sun.tools.javac.tree.JCTree.JCAssign;
 import com.sun.tools.javac.tree.JCTree.JCExpression;
 import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
+import com.sun.tools.javac.tree.JCTree.JCIdent;
 import com.sun.tools.javac.tree.JCTree.JCMethodInvocation;
 import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
 import com.sun.tools.javac.util.Name;
@@ -129,12 +130,13 @@ public class TypeChecker {
 	 * Checks that the given invocation conforms to JSweet contraints.
 	 */
 	public boolean checkApply(JCMethodInvocation invocation, MethodSymbol methSym) {
-		if (Util.hasAnnotationType(methSym, JSweetConfig.ANNOTATION_ERASED)) {
+		if (translator.getContext().hasAnnotationType(methSym, JSweetConfig.ANNOTATION_ERASED)) {
 			translator.report(invocation, JSweetProblem.ERASED_METHOD, methSym);
 		}
 		if (!JSweetConfig.isJDKReplacementMode()) {
 			if (methSym.owner.toString().startsWith("java.")) {
-				if (invocation.meth instanceof JCFieldAccess && "super".equals(((JCFieldAccess) invocation.meth).selected.toString())) {
+				if (invocation.meth instanceof JCFieldAccess && ((JCFieldAccess) invocation.meth).selected instanceof JCIdent
+						&& ((JCIdent) ((JCFieldAccess) invocation.meth).selected).name == translator.getContext().names._super) {
 					translator.report(invocation, JSweetProblem.JDK_METHOD, methSym);
 					return false;
 				}
@@ -22,19 +22,26 @@ import static org.jsweet.JSweetConfig.ANNOTATION_ROOT;
 import static org.jsweet.JSweetConfig.STRING_TYPES_INTERFACE_NAME;
 import static org.jsweet.JSweetConfig.UTIL_PACKAGE;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.File;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.AnnotatedElement;
-import java.net.URL;
-import java.net.URLClassLoader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.NameFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.log4j.Logger;
 import org.jsweet.JSweetConfig;
 
@@ -46,13 +53,23 @@ import javassist.CtMethod;
 import javassist.CtNewConstructor;
 import javassist.CtNewMethod;
 import javassist.NotFoundException;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
 import javassist.bytecode.DuplicateMemberException;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.ArrayMemberValue;
+import javassist.bytecode.annotation.ClassMemberValue;
+import javassist.bytecode.annotation.MemberValue;
 
 /**
  * This class implements a JSweet bytecode-level candy merger. When mixin
  * classes are applied to target classes, the merger generates new classes that
  * contain all the target and mixin classes members.
  * 
+ * <p>
+ * The <code>@Root</code> and <code>@Mixin</code> annotations are read from the
+ * class files attributes, so that no candy class is ever loaded.
+ * 
  * @author Renaud Pawlak
  */
 public class CandiesMerger {
@@ -62,37 +79,9 @@ public class CandiesMerger {
 	private static final List<String> BUILTIN_MIXINS = asList(UTIL_PACKAGE + "." + STRING_TYPES_INTERFACE_NAME);
 
 	private File targetDir;
-	private URLClassLoader candyClassLoader;
+	private List<File> candyClassPathEntries;
 	private ClassPool classPool;
 
-	private Map<File, ClassPool> candyClassPools;
-
-	/**
-	 * Overrides the default behavior so that it never uses any other class
-	 * loaders to look up classes.
-	 */
-	private static class CandyClassLoader extends URLClassLoader {
-
-		public CandyClassLoader(URL[] urls) {
-			super(urls);
-		}
-
-		@Override
-		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-			Class<?> c = findLoadedClass(name);
-			if (c == null) {
-				try {
-					c = findClass(name);
-					resolveClass(c);
-				} catch (ClassNotFoundException e) {
-					return super.loadClass(name, resolve);
-				}
-			}
-			return c;
-		}
-
-	}
-
 	/**
 	 * Creates a new candies merger that will merge the candies found in the
 	 * classpath and output the result to the given target directory.
@@ -102,140 +91,152 @@ public class CandiesMerger {
 		logger.debug("targetDir: " + targetDir.getAbsolutePath());
 		logger.debug("candies classpath entries: " + candyClassPathEntries);
 		this.targetDir = targetDir;
-		this.candyClassLoader = new CandyClassLoader(candyClassPathEntries.stream().map(entry -> {
-			try {
-				return entry.toURI().toURL();
-			} catch (Exception e) {
-				logger.error("wrong class path entry " + entry, e);
-				return null;
-			}
-		}).toArray(size -> new URL[size]));
-		logger.debug("classloader URLs: " + Arrays.asList(candyClassLoader.getURLs()));
-
-		this.candyClassPools = new HashMap<>();
+		this.candyClassPathEntries = candyClassPathEntries;
 		this.classPool = new ClassPool(ClassPool.getDefault());
 		for (File entry : candyClassPathEntries) {
 			try {
 				this.classPool.appendClassPath(entry.getAbsolutePath());
-
-				ClassPool candyClassPool = new ClassPool();
-				candyClassPool.appendClassPath(entry.getAbsolutePath());
-				candyClassPools.put(entry, candyClassPool);
 			} catch (Exception e) {
 				logger.error("wrong class path entry " + entry, e);
 			}
 		}
-
-		logger.debug("candies class pools: " + candyClassPools);
 	}
 
-	private Annotation getAnnotation(AnnotatedElement element, String annotationName) {
-		try {
-			@SuppressWarnings("unchecked")
-			Class<? extends Annotation> annotationClass = (Class<? extends Annotation>) candyClassLoader.loadClass(annotationName);
-			return element.getAnnotation(annotationClass);
-		} catch (Exception e) {
-			logger.error("error retreiving annotation " + annotationName, e);
+	private static ClassFile readClassFile(File file) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			return new ClassFile(in);
+		} catch (IOException e) {
+			logger.error("cannot read class file " + file, e);
 			return null;
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private <T> T getProperty(Annotation annotation, String property) {
-		try {
-			return (T) annotation.annotationType().getDeclaredMethod(property).invoke(annotation);
-		} catch (Exception e) {
-			logger.error("error retreiving annotation property " + property, e);
-			return null;
+	private static Annotation getAnnotation(ClassFile classFile, String annotationName) {
+		for (String tag : asList(AnnotationsAttribute.visibleTag, AnnotationsAttribute.invisibleTag)) {
+			AnnotationsAttribute annotations = (AnnotationsAttribute) classFile.getAttribute(tag);
+			Annotation annotation = annotations == null ? null : annotations.getAnnotation(annotationName);
+			if (annotation != null) {
+				return annotation;
+			}
 		}
+		return null;
 	}
 
-	public Map<Class<?>, List<Class<?>>> merge() {
-		File defDir = new File(targetDir, JSweetConfig.LIBS_PACKAGE);
-		List<Class<?>> libPackages = new ArrayList<Class<?>>();
-		findLibPackages(defDir, libPackages);
-		logger.debug("lib packages: " + libPackages);
-		Map<Class<?>, List<Class<?>>> toBeMerged = new HashMap<>();
-		for (Class<?> libPackage : libPackages) {
-			// adds mixins from @Root annotation infos
-			Class<?>[] libMixins = getProperty(getAnnotation(libPackage, ANNOTATION_ROOT), "mixins");
-			for (Class<?> mixin : libMixins) {
-				Class<?> target = getProperty(getAnnotation(mixin, ANNOTATION_MIXIN), "target");
-				List<Class<?>> mixins = toBeMerged.get(target);
-				if (mixins == null) {
-					mixins = new ArrayList<>();
-					toBeMerged.put(target, mixins);
-				}
-				mixins.add(mixin);
+	private static String getClassProperty(Annotation annotation, String property) {
+		MemberValue value = annotation.getMemberValue(property);
+		return value instanceof ClassMemberValue ? ((ClassMemberValue) value).getValue() : null;
+	}
+
+	private static List<String> getClassArrayProperty(Annotation annotation, String property) {
+		MemberValue value = annotation.getMemberValue(property);
+		if (!(value instanceof ArrayMemberValue)) {
+			return Collections.emptyList();
+		}
+		List<String> classNames = new ArrayList<>();
+		for (MemberValue element : ((ArrayMemberValue) value).getValue()) {
+			if (element instanceof ClassMemberValue) {
+				classNames.add(((ClassMemberValue) element).getValue());
 			}
 		}
+		return classNames;
+	}
+
+	/**
+	 * Merges the mixins declared by the candies into their targets and writes
+	 * the resulting classes to the target directory.
+	 * 
+	 * @return the names of the merged mixin classes, indexed by the names of
+	 *         their target classes
+	 */
+	public Map<String, List<String>> merge() {
+		Map<String, List<String>> toBeMerged = indexMixins();
 		logger.debug("mixins to be merged: " + toBeMerged);
-		for (Entry<Class<?>, List<Class<?>>> e : toBeMerged.entrySet()) {
+		// the targets are merged one after the other because the classes of a
+		// class pool cannot be modified concurrently
+		for (Entry<String, List<String>> e : toBeMerged.entrySet()) {
 			mergeMixins(e.getValue(), e.getKey());
 		}
 
 		for (String builtinMixinClassName : BUILTIN_MIXINS) {
-			try {
-				List<CtClass> mixinClasses = new LinkedList<>();
-				for (ClassPool classPool : candyClassPools.values()) {
-					try {
-						CtClass mixinCtClass = classPool.get(builtinMixinClassName);
-						if (mixinCtClass != null) {
-							mixinClasses.add(mixinCtClass);
-						}
-					} catch (NotFoundException e) {
-						// mixin class not found, not a problem
-					}
-				}
-				logger.info(mixinClasses.size() + " classes found for " + builtinMixinClassName);
-				if (mixinClasses.size() > 1) {
-					CtClass ctTarget = mixinClasses.get(0);
-					for (CtClass ctMixin : mixinClasses.subList(1, mixinClasses.size())) {
-						mergeMixin(ctTarget, ctMixin);
-					}
-					ctTarget.writeFile(targetDir.getPath());
-				}
-			} catch (Exception e) {
-				logger.warn("error merging mixin " + builtinMixinClassName, e);
-			}
+			mergeBuiltinMixin(builtinMixinClassName);
 		}
 
 		return toBeMerged;
 	}
 
-	private void findLibPackages(File dir, List<Class<?>> libPackages) {
-		logger.debug("findLibPackages: " + dir + " - " + dir.getAbsolutePath());
-		String packageName = dir.getPath().substring(targetDir.getPath().length() + 1).replace(File.separatorChar, '.');
-		Class<?> packageInfo = null;
-		try {
-			// trick to force the package to load (we are only interested in the
-			// packages with the Root annotation, so the package-info class must
-			// exist
-			packageInfo = candyClassLoader.loadClass(packageName + ".package-info");
-		} catch (ClassNotFoundException e) {
-			// swallow
+	/**
+	 * Indexes the mixins declared in the <code>@Root</code> annotations of the
+	 * lib packages, by target class name.
+	 */
+	private Map<String, List<String>> indexMixins() {
+		Map<String, List<String>> mixinsByTarget = new HashMap<>();
+		File defDir = new File(targetDir, JSweetConfig.LIBS_PACKAGE);
+		if (!defDir.isDirectory()) {
+			return mixinsByTarget;
 		}
-		if (packageInfo != null) {
-			if (getAnnotation(packageInfo, ANNOTATION_ROOT) != null) {
-				libPackages.add(packageInfo);
+		// only the packages with the Root annotation are of interest, so the
+		// package-info class must exist
+		Collection<File> packageInfoFiles = FileUtils.listFiles(defDir, new NameFileFilter("package-info.class"), TrueFileFilter.INSTANCE);
+		for (File packageInfoFile : packageInfoFiles) {
+			ClassFile packageInfo = readClassFile(packageInfoFile);
+			Annotation root = packageInfo == null ? null : getAnnotation(packageInfo, ANNOTATION_ROOT);
+			if (root == null) {
+				continue;
+			}
+			logger.debug("lib package: " + packageInfo.getName());
+			// adds mixins from @Root annotation infos
+			for (String mixinClassName : getClassArrayProperty(root, "mixins")) {
+				try {
+					Annotation mixin = getAnnotation(classPool.get(mixinClassName).getClassFile2(), ANNOTATION_MIXIN);
+					String target = mixin == null ? null : getClassProperty(mixin, "target");
+					if (target == null) {
+						logger.warn("no mixin target found for " + mixinClassName);
+						continue;
+					}
+					mixinsByTarget.computeIfAbsent(target, t -> new ArrayList<>()).add(mixinClassName);
+				} catch (NotFoundException e) {
+					logger.warn("mixin class not found: " + mixinClassName, e);
+				}
 			}
 		}
-		File[] children = dir.listFiles();
-		if (children != null) {
-			for (File f : children) {
-				if (f.isDirectory()) {
-					findLibPackages(f, libPackages);
+		return mixinsByTarget;
+	}
+
+	private void mergeBuiltinMixin(String builtinMixinClassName) {
+		String classEntryName = builtinMixinClassName.replace('.', '/') + ".class";
+		try {
+			List<CtClass> mixinClasses = new LinkedList<>();
+			for (File candyClassPathEntry : candyClassPathEntries) {
+				try (JarFile jarFile = new JarFile(candyClassPathEntry)) {
+					ZipEntry classEntry = jarFile.getEntry(classEntryName);
+					if (classEntry != null) {
+						// each candy holds its own version of the mixin class,
+						// so each version is read in a child of the candies pool
+						try (InputStream in = jarFile.getInputStream(classEntry)) {
+							mixinClasses.add(new ClassPool(classPool).makeClass(in));
+						}
+					}
 				}
 			}
+			logger.info(mixinClasses.size() + " classes found for " + builtinMixinClassName);
+			if (mixinClasses.size() > 1) {
+				CtClass ctTarget = mixinClasses.get(0);
+				for (CtClass ctMixin : mixinClasses.subList(1, mixinClasses.size())) {
+					mergeMixin(ctTarget, ctMixin);
+				}
+				ctTarget.writeFile(targetDir.getPath());
+			}
+		} catch (Exception e) {
+			logger.warn("error merging mixin " + builtinMixinClassName, e);
 		}
 	}
 
-	private void mergeMixins(List<Class<?>> mixins, Class<?> target) {
+	private void mergeMixins(List<String> mixins, String target) {
 		try {
 			logger.debug("merging: " + mixins + " -> " + target);
-			CtClass ctTarget = classPool.get(target.getName());
-			for (Class<?> mixin : mixins) {
-				CtClass ctMixin = classPool.get(mixin.getName());
+			CtClass ctTarget = classPool.get(target);
+			for (String mixin : mixins) {
+				CtClass ctMixin = classPool.get(mixin);
 				mergeMixin(ctTarget, ctMixin);
 			}
 			ctTarget.writeFile(targetDir.getPath());
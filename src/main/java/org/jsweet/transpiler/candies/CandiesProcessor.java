@@ -16,24 +16,41 @@
  */
 package org.jsweet.transpiler.candies;
 
+import static java.util.Arrays.asList;
+
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.jsweet.JSweetConfig;
+import org.jsweet.transpiler.util.Util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -70,6 +87,11 @@ public class CandiesProcessor {
 	 * The name of the file that stores processed candies info.
 	 */
 	public static final String CANDIES_STORE_FILE_NAME = CANDIES_DIR_NAME + File.separator + CandiesStore.class.getSimpleName() + ".json";
+	/**
+	 * The name of the file that stores the candy descriptors of the classpath
+	 * jars.
+	 */
+	public static final String CANDY_JAR_INDEX_FILE_NAME = CANDIES_DIR_NAME + File.separator + CandyJarIndex.class.getSimpleName() + ".json";
 	/**
 	 * The name of the directory that contains the TypeScript source files.
 	 */
@@ -78,7 +100,9 @@ public class CandiesProcessor {
 	private File candiesSourceDir;
 	private File candiesProcessedDir;
 	private File candiesStoreFile;
+	private File candyJarIndexFile;
 	private File candiesTsdefsDir;
+	private File sharedCacheDirectory;
 
 	/**
 	 * Create a candies processor.
@@ -105,6 +129,7 @@ public class CandiesProcessor {
 		candiesSourceDir = new File(workingDir, CANDIES_SOURCES_DIR_NAME);
 		candiesProcessedDir = new File(workingDir, CANDIES_PROCESSED_DIR_NAME);
 		candiesStoreFile = new File(workingDir, CANDIES_STORE_FILE_NAME);
+		candyJarIndexFile = new File(workingDir, CANDY_JAR_INDEX_FILE_NAME);
 		candiesTsdefsDir = new File(workingDir, CANDIES_TSDEFS_DIR_NAME);
 		logger.debug("processed classes dir: " + getCandiesProcessedDir() + " - " + getCandiesProcessedDir().getAbsolutePath());
 	}
@@ -124,6 +149,24 @@ public class CandiesProcessor {
 		return candiesTsdefsDir;
 	}
 
+	/**
+	 * Gets the directory of the shared candies cache (null when disabled).
+	 */
+	public File getSharedCacheDirectory() {
+		return sharedCacheDirectory;
+	}
+
+	/**
+	 * Sets the directory of a machine-wide cache of processed candies, which
+	 * can be shared by several projects and by concurrent transpiler
+	 * processes. When set, the candies are processed only once for a given
+	 * set of candies and copied from the cache to the working directory. Null
+	 * (default) disables the cache.
+	 */
+	public void setSharedCacheDirectory(File sharedCacheDirectory) {
+		this.sharedCacheDirectory = sharedCacheDirectory;
+	}
+
 	/**
 	 * Do the processing for the candies jars found in the classpath.
 	 */
@@ -141,11 +184,25 @@ public class CandiesProcessor {
 		logger.info("candies changed, processing candies: " + this.candiesStore);
 
 		try {
-			extractCandies(newCandiesDescriptors);
+			if (sharedCacheDirectory != null) {
+				// the processed candies only depend on the candies and on the
+				// JSweet version
+				String key = Util.getHash(JSweetConfig.getVersionNumber() + "\n" + newStore.getFingerprint());
+				new SharedCandiesCache(sharedCacheDirectory).restoreOrProduce(key, candiesStoreFile.getParentFile(),
+						asList(candiesSourceDir, candiesProcessedDir, candiesTsdefsDir, candiesStoreFile), () -> {
+							extractCandies(candiesStore, newStore, newCandiesDescriptors);
+							mergeCandies(newCandiesDescriptors);
+							writeCandiesStore();
+						});
+				// the store is read again from the restored file
+				this.candiesStore = null;
+			} else {
+				extractCandies(candiesStore, newStore, newCandiesDescriptors);
 
-			mergeCandies(newCandiesDescriptors);
+				mergeCandies(newCandiesDescriptors);
 
-			writeCandiesStore();
+				writeCandiesStore();
+			}
 
 		} catch (Throwable t) {
 			logger.error("cannot generate candies bundle", t);
@@ -156,29 +213,40 @@ public class CandiesProcessor {
 	private void mergeCandies(Map<File, CandyDescriptor> candies) {
 		logger.info("merging candies");
 		CandiesMerger merger = new CandiesMerger(candiesProcessedDir, new ArrayList<>(candies.keySet()));
-		Map<Class<?>, List<Class<?>>> mergedMixins = merger.merge();
+		Map<String, List<String>> mergedMixins = merger.merge();
 		extractSourcesForClasses(candies, mergedMixins.keySet());
 	}
 
 	private LinkedHashMap<File, CandyDescriptor> getCandiesDescriptorsFromClassPath() throws IOException {
 		LinkedHashMap<File, CandyDescriptor> jarFilesCollector = new LinkedHashMap<>();
+		CandyJarIndex jarIndex = getCandyJarIndex();
+		Set<String> jarFilePaths = new HashSet<>();
 		for (String classPathEntry : classPath.split("[" + System.getProperty("path.separator") + "]")) {
 			if (classPathEntry.endsWith(".jar")) {
-				logger.info("builds candy descriptor for: " + classPathEntry);
 				File jarFile = new File(classPathEntry);
-				try (JarFile jarFileHandle = new JarFile(jarFile)) {
-					JarEntry candySpecificEntry = jarFileHandle.getJarEntry("META-INF/maven/" + JSweetConfig.MAVEN_CANDIES_GROUP);
-					boolean isCandy = candySpecificEntry != null;
-					if (isCandy) {
-						CandyDescriptor descriptor = CandyDescriptor.fromCandyJar(jarFileHandle);
-
-						checkCandyVersion(descriptor);
-						jarFilesCollector.put(jarFile, descriptor);
+				jarFilePaths.add(jarFile.getAbsolutePath());
+				// unchanged jars are not opened again
+				CandyJarIndex.Entry indexEntry = jarIndex.getUpToDateEntry(jarFile);
+				if (indexEntry == null) {
+					logger.info("builds candy descriptor for: " + classPathEntry);
+					CandyDescriptor descriptor = null;
+					try (JarFile jarFileHandle = new JarFile(jarFile)) {
+						JarEntry candySpecificEntry = jarFileHandle.getJarEntry("META-INF/maven/" + JSweetConfig.MAVEN_CANDIES_GROUP);
+						boolean isCandy = candySpecificEntry != null;
+						if (isCandy) {
+							descriptor = CandyDescriptor.fromCandyJar(jarFileHandle);
+						}
 					}
+					indexEntry = jarIndex.update(jarFile, descriptor);
+				}
+				if (indexEntry.descriptor != null) {
+					checkCandyVersion(indexEntry.descriptor);
+					jarFilesCollector.put(jarFile, indexEntry.descriptor);
 				}
-
 			}
 		}
+		jarIndex.retain(jarFilePaths);
+		jarIndex.write(candyJarIndexFile);
 
 		return jarFilesCollector;
 	}
@@ -189,79 +257,171 @@ public class CandiesProcessor {
 		// versions changes
 	}
 
-	private void extractCandies(Map<File, CandyDescriptor> candies) throws IOException {
-		File extractedSourcesDir = candiesSourceDir;
-		File extractedTsDefsDir = candiesTsdefsDir;
-		File extractedClassesDir = candiesProcessedDir;
-		FileUtils.deleteQuietly(extractedSourcesDir);
-		FileUtils.deleteQuietly(extractedTsDefsDir);
-		FileUtils.deleteQuietly(extractedClassesDir);
-		extractedSourcesDir.mkdirs();
-		extractedTsDefsDir.mkdirs();
-		extractedClassesDir.mkdirs();
+	/**
+	 * Extracts the added and changed candies, and removes the files of the
+	 * removed and changed candies (the files of the unchanged candies are
+	 * kept, unless they are shared with a removed or changed candy). When
+	 * several candies hold the same file, the last candy of the classpath
+	 * wins.
+	 */
+	private void extractCandies(CandiesStore previousStore, CandiesStore newStore, Map<File, CandyDescriptor> candies) throws IOException {
+		File candiesDir = candiesProcessedDir.getParentFile();
+		boolean tracked = !previousStore.candies.isEmpty();
+		Set<String> changedFiles = new HashSet<>();
+		for (CandyDescriptor previousCandy : previousStore.candies) {
+			tracked &= previousStore.extractedFiles.containsKey(previousCandy.name);
+			if (tracked && !candies.containsValue(previousCandy)) {
+				changedFiles.addAll(previousStore.extractedFiles.get(previousCandy.name));
+			}
+		}
+		Set<String> keptFiles = new HashSet<>();
+		// the classpath index of the candy that provides each kept file
+		Map<String, Integer> fileOwners = new HashMap<>();
+		List<Map.Entry<File, CandyDescriptor>> candiesToExtract = new ArrayList<>();
+		List<Integer> candyIndices = new ArrayList<>();
+		int index = 0;
 		for (Map.Entry<File, CandyDescriptor> candy : candies.entrySet()) {
+			List<String> extractedFiles = tracked && previousStore.candies.contains(candy.getValue())
+					? previousStore.extractedFiles.get(candy.getValue().name) : null;
+			if (extractedFiles != null && Collections.disjoint(extractedFiles, changedFiles)) {
+				newStore.extractedFiles.put(candy.getValue().name, extractedFiles);
+				keptFiles.addAll(extractedFiles);
+				for (String extractedFile : extractedFiles) {
+					fileOwners.put(extractedFile, index);
+				}
+			} else {
+				candiesToExtract.add(candy);
+				candyIndices.add(index);
+			}
+			index++;
+		}
 
-			CandyDescriptor candyDescriptor = candy.getValue();
-			File jarFile = candy.getKey();
-
-			String candyName = candyDescriptor.name;
-			boolean isCore = "jsweet-core".equals(candyName);
-			try (JarFile jarFileHandle = new JarFile(jarFile)) {
-				extractCandy( //
-						jarFileHandle, //
-						new File(extractedSourcesDir, FilenameUtils.getBaseName(jarFile.getName())), //
-						extractedTsDefsDir, //
-						isCore ? tsDefName -> false : null, extractedClassesDir);
+		if (tracked) {
+			for (List<String> extractedFiles : previousStore.extractedFiles.values()) {
+				for (String extractedFile : extractedFiles) {
+					if (!keptFiles.contains(extractedFile)) {
+						FileUtils.deleteQuietly(new File(candiesDir, extractedFile));
+					}
+				}
+			}
+			// the merged classes are generated again
+			for (File classFile : FileUtils.listFiles(candiesProcessedDir, null, true)) {
+				if (!keptFiles.contains(candiesDir.toPath().relativize(classFile.toPath()).toString())) {
+					FileUtils.deleteQuietly(classFile);
+				}
 			}
+		} else {
+			// unknown extracted files (first extraction or former store)
+			FileUtils.deleteQuietly(candiesTsdefsDir);
+			FileUtils.deleteQuietly(candiesProcessedDir);
 		}
-	}
+		// the sources of the mixins are extracted again after merging
+		FileUtils.deleteQuietly(candiesSourceDir);
+		candiesSourceDir.mkdirs();
+		candiesTsdefsDir.mkdirs();
+		candiesProcessedDir.mkdirs();
 
-	private void extractCandy(JarFile jarFile, File javaOutputDirectory, File tsDefOutputDirectory, Predicate<String> isTsDefToBeExtracted,
-			File classesOutputDirectory) {
-		logger.info("extract candy: " + jarFile.getName() + " javaOutputDirectory=" + javaOutputDirectory + " tsDefOutputDirectory=" + tsDefOutputDirectory
-				+ " classesOutputDirectory=" + classesOutputDirectory);
+		if (candiesToExtract.isEmpty()) {
+			return;
+		}
+		// the candies are extracted in parallel, each in its own staging
+		// directory, and their files are then moved in classpath order
+		Path stagingDir = Files.createTempDirectory(candiesDir.toPath(), "extraction");
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(candiesToExtract.size(), Runtime.getRuntime().availableProcessors()));
+		try {
+			List<Future<List<String>>> futures = new ArrayList<>();
+			for (int i = 0; i < candiesToExtract.size(); i++) {
+				Map.Entry<File, CandyDescriptor> candy = candiesToExtract.get(i);
+				boolean isCore = "jsweet-core".equals(candy.getValue().name);
+				Path candyStagingDir = stagingDir.resolve(Integer.toString(i));
+				futures.add(executor.submit(() -> extractCandy(candy.getKey(), candyStagingDir, isCore ? tsDefName -> false : null)));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				List<String> extractedFiles = futures.get(i).get();
+				for (String extractedFile : extractedFiles) {
+					Integer owner = fileOwners.get(extractedFile);
+					// a file of a kept candy is replaced only by the candies
+					// that come after it in the classpath
+					if (owner == null || owner < candyIndices.get(i)) {
+						File out = new File(candiesDir, extractedFile);
+						out.getParentFile().mkdirs();
+						Files.move(stagingDir.resolve(Integer.toString(i)).resolve(extractedFile), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+						fileOwners.put(extractedFile, candyIndices.get(i));
+					}
+				}
+				newStore.extractedFiles.put(candiesToExtract.get(i).getValue().name, extractedFiles);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+			FileUtils.deleteQuietly(stagingDir.toFile());
+		}
+	}
 
-		jarFile.stream()
-				.filter(entry -> entry.getName().endsWith(".d.ts") && entry.getName().startsWith("src/") || entry.getName().endsWith("package-info.class")) //
-				.forEach(entry -> {
+	/**
+	 * Extracts the TypeScript definitions and the package annotations of a
+	 * candy in the given staging directory (with the layout of the candies
+	 * directory).
+	 * 
+	 * @return the extracted files, relative to the candies directory
+	 */
+	private List<String> extractCandy(File jarFile, Path stagingDir, Predicate<String> isTsDefToBeExtracted) throws IOException {
+		logger.info("extract candy: " + jarFile + " tsDefOutputDirectory=" + candiesTsdefsDir + " classesOutputDirectory=" + candiesProcessedDir);
+
+		Path candiesDir = candiesProcessedDir.getParentFile().toPath();
+		List<String> extractedFiles = new ArrayList<>();
+		try (FileSystem jarFileSystem = FileSystems.newFileSystem(jarFile.toPath(), (ClassLoader) null)) {
+			Path root = jarFileSystem.getPath("/");
+			try (Stream<Path> entries = Files.walk(root)) {
+				for (Path entry : (Iterable<Path>) entries::iterator) {
+					String entryName = root.relativize(entry).toString();
 					File out;
-					if (entry.getName().endsWith(".java")) {
-						out = new File(javaOutputDirectory + "/" + entry.getName().substring(4));
-					} else if (entry.getName().endsWith(".d.ts")) {
-						if (isTsDefToBeExtracted != null && !isTsDefToBeExtracted.test(entry.getName())) {
-							return;
+					if (entryName.endsWith(".d.ts") && entryName.startsWith("src/")) {
+						if (isTsDefToBeExtracted != null && !isTsDefToBeExtracted.test(entryName)) {
+							continue;
 						}
-
-						out = new File(tsDefOutputDirectory + "/" + entry.getName());
+						out = new File(candiesTsdefsDir, entryName);
+					} else if (entryName.endsWith("package-info.class")) {
+						out = new File(candiesProcessedDir, entryName);
 					} else {
-						out = new File(classesOutputDirectory + "/" + entry.getName());
-					}
-					out.getParentFile().mkdirs();
-					try {
-						FileUtils.copyInputStreamToFile(jarFile.getInputStream(entry), out);
-					} catch (Exception e) {
-						throw new RuntimeException(e);
+						continue;
 					}
-				});
+					String extractedFile = candiesDir.relativize(out.toPath()).toString();
+					Path stagedFile = stagingDir.resolve(extractedFile);
+					Files.createDirectories(stagedFile.getParent());
+					Files.copy(entry, stagedFile, StandardCopyOption.REPLACE_EXISTING);
+					extractedFiles.add(extractedFile);
+				}
+			}
+		}
+		return extractedFiles;
 	}
 
-	private void extractSourcesForClasses(Map<File, CandyDescriptor> candies, Collection<Class<?>> classes) {
-		logger.info("extract sources for: " + classes);
+	private void extractSourcesForClasses(Map<File, CandyDescriptor> candies, Collection<String> classNames) {
+		logger.info("extract sources for: " + classNames);
+		if (classNames.isEmpty()) {
+			return;
+		}
 
-		List<String> files = classes.stream().map(c -> "src/" + c.getName().replace('.', '/') + ".java").collect(Collectors.toList());
+		Set<String> sourceEntryNames = classNames.stream().map(c -> "src/" + c.replace('.', '/') + ".java").collect(Collectors.toSet());
 		for (File candyClassPathEntry : candies.keySet()) {
+			// the entries are looked up in the jar central directory, so that
+			// the jar entries are not read
 			try (JarFile jarFile = new JarFile(candyClassPathEntry)) {
-				jarFile.stream().filter(entry -> files.contains(entry.getName())) //
-						.forEach(entry -> {
-							File out = new File(candiesSourceDir + "/" + entry.getName().substring(4));
-							out.getParentFile().mkdirs();
-							try {
-								logger.debug("extracting source: " + out);
-								FileUtils.copyInputStreamToFile(jarFile.getInputStream(entry), out);
-							} catch (Exception e) {
-								throw new RuntimeException(e);
-							}
-						});
+				for (String sourceEntryName : sourceEntryNames) {
+					JarEntry entry = jarFile.getJarEntry(sourceEntryName);
+					if (entry != null) {
+						File out = new File(candiesSourceDir, sourceEntryName.substring(4));
+						logger.debug("extracting source: " + out);
+						try (InputStream in = jarFile.getInputStream(entry)) {
+							FileUtils.copyInputStreamToFile(in, out);
+						}
+					}
+				}
 			} catch (Exception e) {
 				logger.error("error extracting sources for " + candyClassPathEntry, e);
 			}
@@ -270,11 +430,30 @@ public class CandiesProcessor {
 
 	private CandiesStore candiesStore;
 
+	private CandyJarIndex candyJarIndex;
+
 	/**
-	 * Cleans the candies store so that it will be read from file next time.
+	 * Cleans the candies store (and the candy jar index) so that it will be
+	 * read from file next time.
 	 */
 	public void touch() {
 		candiesStore = null;
+		candyJarIndex = null;
+	}
+
+	private CandyJarIndex getCandyJarIndex() {
+		if (candyJarIndex == null) {
+			candyJarIndex = CandyJarIndex.read(candyJarIndexFile);
+		}
+		return candyJarIndex;
+	}
+
+	/**
+	 * Gets a fingerprint of the processed candies, which changes when a candy
+	 * is added, removed or updated.
+	 */
+	public String getCandiesFingerprint() {
+		return getCandiesStore().getFingerprint();
 	}
 
 	private CandiesStore getCandiesStore() {
@@ -16,14 +16,23 @@
  */
 package org.jsweet.transpiler.candies;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+
+import org.jsweet.transpiler.util.Util;
 
 /**
  * A class that is serialized to store information on the processed candies.
  */
 class CandiesStore {
 	List<CandyDescriptor> candies = new LinkedList<>();
+	/**
+	 * The files extracted from each candy (relative to the candies directory),
+	 * indexed by candy name.
+	 */
+	Map<String, List<String>> extractedFiles = new HashMap<>();
 
 	public CandiesStore() {
 		this(new LinkedList<CandyDescriptor>());
@@ -48,6 +57,19 @@ class CandiesStore {
 		return candies.size() == other.candies.size() && candies.containsAll(other.candies);
 	}
 
+	/**
+	 * Gets a fingerprint of the stored candies, which changes when a candy is
+	 * added, removed or updated.
+	 */
+	public String getFingerprint() {
+		StringBuilder sb = new StringBuilder();
+		for (CandyDescriptor candy : candies) {
+			sb.append(candy.name).append(':').append(candy.version).append(':').append(candy.lastUpdateTimestamp).append(':')
+					.append(candy.modelVersion).append('\n');
+		}
+		return Util.getHash(sb.toString());
+	}
+
 	@Override
 	public String toString() {
 		return getClass().getSimpleName() + "=" + candies;
@@ -0,0 +1,131 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.transpiler.candies;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import com.google.gson.Gson;
+
+/**
+ * A class that is serialized to store the candy descriptors of the jars found
+ * in the classpath, so that the jars that did not change since the last
+ * transpilation are not opened again.
+ */
+class CandyJarIndex {
+
+	private final static Logger logger = Logger.getLogger(CandyJarIndex.class);
+
+	private final static Gson gson = new Gson();
+
+	/**
+	 * The information stored for a jar file.
+	 */
+	static class Entry {
+		long length;
+		long lastModified;
+		/**
+		 * The candy descriptor (null if the jar is not a candy).
+		 */
+		CandyDescriptor descriptor;
+	}
+
+	/**
+	 * The entries, indexed by jar file path.
+	 */
+	Map<String, Entry> entries = new HashMap<>();
+
+	private transient boolean modified = false;
+
+	/**
+	 * Reads the index from the given file, or creates an empty index if the
+	 * file does not exist.
+	 */
+	static CandyJarIndex read(File indexFile) {
+		CandyJarIndex index = null;
+		if (indexFile.exists()) {
+			try {
+				index = gson.fromJson(FileUtils.readFileToString(indexFile), CandyJarIndex.class);
+			} catch (Exception e) {
+				logger.error("cannot read candy jar index", e);
+			}
+		}
+		if (index == null) {
+			index = new CandyJarIndex();
+		}
+		return index;
+	}
+
+	/**
+	 * Writes this index to the given file, if it was modified since it was
+	 * read.
+	 */
+	void write(File indexFile) {
+		if (!modified) {
+			return;
+		}
+		try {
+			FileUtils.write(indexFile, gson.toJson(this));
+			modified = false;
+		} catch (Exception e) {
+			logger.error("cannot write candy jar index", e);
+		}
+	}
+
+	/**
+	 * Gets the entry of the given jar, if the jar did not change since the
+	 * entry was stored.
+	 */
+	Entry getUpToDateEntry(File jarFile) {
+		Entry entry = entries.get(jarFile.getAbsolutePath());
+		if (entry == null || entry.length != jarFile.length() || entry.lastModified != jarFile.lastModified()) {
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Stores the descriptor of the given jar.
+	 * 
+	 * @param descriptor
+	 *            the candy descriptor (null if the jar is not a candy)
+	 */
+	Entry update(File jarFile, CandyDescriptor descriptor) {
+		Entry entry = new Entry();
+		entry.length = jarFile.length();
+		entry.lastModified = jarFile.lastModified();
+		entry.descriptor = descriptor;
+		entries.put(jarFile.getAbsolutePath(), entry);
+		modified = true;
+		return entry;
+	}
+
+	/**
+	 * Removes the entries of the jars that are not part of the given ones.
+	 */
+	void retain(Set<String> jarFilePaths) {
+		if (entries.keySet().retainAll(jarFilePaths)) {
+			modified = true;
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.transpiler.candies;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * A machine-wide cache of processed candies, which can be populated and read
+ * by several transpiler processes at the same time.
+ * 
+ * <p>
+ * Each entry is a directory named after a key that identifies the processed
+ * candies. An entry is written to a temporary directory and then atomically
+ * renamed, so that it is never seen half-written, and the processes that
+ * create the same entry wait for each other through a lock file, so that it
+ * is created only once.
+ */
+class SharedCandiesCache {
+
+	private static final Logger logger = Logger.getLogger(SharedCandiesCache.class);
+
+	/**
+	 * Processes the candies, when they are not found in the cache.
+	 */
+	interface CandiesProducer {
+		void produce() throws IOException;
+	}
+
+	private final File cacheDir;
+
+	/**
+	 * Creates a shared candies cache.
+	 * 
+	 * @param cacheDir
+	 *            the directory that holds the cache entries
+	 */
+	SharedCandiesCache(File cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+
+	/**
+	 * Fills the candies directory with the entry of the given key, which is
+	 * created with the given producer when not found.
+	 * 
+	 * @param key
+	 *            the key of the processed candies
+	 * @param candiesDir
+	 *            the local candies directory
+	 * @param files
+	 *            the files and directories of the local candies directory that
+	 *            are stored in the cache entries
+	 * @param producer
+	 *            processes the candies into the local candies directory
+	 */
+	void restoreOrProduce(String key, File candiesDir, List<File> files, CandiesProducer producer) throws IOException {
+		File entryDir = new File(cacheDir, key);
+		if (!entryDir.isDirectory()) {
+			cacheDir.mkdirs();
+			// file locks are held by the JVM, so the threads of this JVM are
+			// synchronized first
+			synchronized (SharedCandiesCache.class) {
+				try (FileChannel lockChannel = FileChannel.open(new File(cacheDir, key + ".lock").toPath(), StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE)) {
+					FileLock lock = lockChannel.lock();
+					try {
+						if (!entryDir.isDirectory()) {
+							logger.info("processing candies for shared cache entry " + entryDir);
+							producer.produce();
+							publish(entryDir, candiesDir, files);
+							return;
+						}
+					} finally {
+						lock.release();
+					}
+				}
+			}
+		}
+		logger.info("restoring candies from shared cache entry " + entryDir);
+		for (File file : files) {
+			FileUtils.deleteQuietly(file);
+			File cachedFile = new File(entryDir, getRelativePath(candiesDir, file));
+			if (cachedFile.isDirectory()) {
+				FileUtils.copyDirectory(cachedFile, file);
+			} else if (cachedFile.exists()) {
+				FileUtils.copyFile(cachedFile, file);
+			}
+		}
+	}
+
+	private void publish(File entryDir, File candiesDir, List<File> files) throws IOException {
+		File tmpDir = new File(cacheDir, entryDir.getName() + "." + UUID.randomUUID() + ".tmp");
+		try {
+			for (File file : files) {
+				File cachedFile = new File(tmpDir, getRelativePath(candiesDir, file));
+				if (file.isDirectory()) {
+					FileUtils.copyDirectory(file, cachedFile);
+				} else if (file.exists()) {
+					FileUtils.copyFile(file, cachedFile);
+				}
+			}
+			Files.move(tmpDir.toPath(), entryDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			FileUtils.deleteQuietly(tmpDir);
+		}
+	}
+
+	private static String getRelativePath(File dir, File file) {
+		return dir.toPath().relativize(file.toPath()).toString();
+	}
+
+}
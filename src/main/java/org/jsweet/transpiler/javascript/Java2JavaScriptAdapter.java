@@ -0,0 +1,91 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.transpiler.javascript;
+
+import static org.jsweet.JSweetConfig.GLOBALS_CLASS_NAME;
+
+import org.jsweet.transpiler.typescript.Java2TypeScriptAdapter;
+import org.jsweet.transpiler.util.Util;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
+import com.sun.tools.javac.tree.JCTree.JCIdent;
+import com.sun.tools.javac.tree.JCTree.JCMethodInvocation;
+import com.sun.tools.javac.tree.TreeInfo;
+
+/**
+ * The adapter of the JavaScript translator, which adapts the TypeScript
+ * substitutions that cannot be expressed in ES5.
+ */
+public class Java2JavaScriptAdapter extends Java2TypeScriptAdapter {
+
+	@Override
+	public boolean substituteMethodInvocation(JCMethodInvocation invocation) {
+		if (matchesQualifiedName(invocation.meth, "$super")) {
+			getPrinter().print("_super.call(this");
+			if (!invocation.args.isEmpty()) {
+				getPrinter().print(", ").printArgList(invocation.args);
+			}
+			getPrinter().print(")");
+			return true;
+		}
+		Symbol method = TreeInfo.symbol(invocation.meth);
+		if (method != null && isGlobalsMember(method)) {
+			String qualifier = getPrinter().getGlobalsQualifier(method);
+			// unqualified invocations of local functions are printed as usual
+			if (invocation.meth instanceof JCFieldAccess || !qualifier.isEmpty()) {
+				getPrinter().print(qualifier).printIdentifier(Util.getActualName(method)).print("(").printArgList(invocation.args).print(")");
+				return true;
+			}
+		}
+		return super.substituteMethodInvocation(invocation);
+	}
+
+	@Override
+	public boolean substituteFieldAccess(JCFieldAccess fieldAccess) {
+		if (fieldAccess.sym != null && isGlobalsMember(fieldAccess.sym)) {
+			getPrinter().print(getPrinter().getGlobalsQualifier(fieldAccess.sym)).printIdentifier(fieldAccess.name.toString());
+			return true;
+		}
+		return super.substituteFieldAccess(fieldAccess);
+	}
+
+	@Override
+	public boolean substituteIdentifier(JCIdent identifier) {
+		if (identifier.sym != null && isGlobalsMember(identifier.sym)) {
+			getPrinter().print(getPrinter().getGlobalsQualifier(identifier.sym)).printIdentifier(identifier.toString());
+			return true;
+		}
+		return super.substituteIdentifier(identifier);
+	}
+
+	/**
+	 * Tells if the given symbol is a member of a <code>Globals</code> class
+	 * of the transpiled sources.
+	 */
+	private boolean isGlobalsMember(Symbol symbol) {
+		return symbol.owner instanceof ClassSymbol && GLOBALS_CLASS_NAME.equals(symbol.owner.getSimpleName().toString())
+				&& Util.isSourceType((ClassSymbol) symbol.owner);
+	}
+
+	@Override
+	public Java2JavaScriptTranslator getPrinter() {
+		return (Java2JavaScriptTranslator) super.getPrinter();
+	}
+
+}
@@ -0,0 +1,695 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.transpiler.javascript;
+
+import static org.jsweet.transpiler.util.Util.getRootRelativeName;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.lang.model.element.Modifier;
+
+import org.jsweet.JSweetConfig;
+import org.jsweet.transpiler.JSweetContext;
+import org.jsweet.transpiler.JSweetProblem;
+import org.jsweet.transpiler.OverloadScanner.Overload;
+import org.jsweet.transpiler.TranspilationHandler;
+import org.jsweet.transpiler.typescript.Java2TypeScriptTranslator;
+import org.jsweet.transpiler.util.Util;
+import org.jsweet.transpiler.util.VariableKind;
+
+import com.sun.source.tree.Tree.Kind;
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
+import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.code.Symbol.VarSymbol;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCBlock;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.JCTree.JCExpression;
+import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
+import com.sun.tools.javac.tree.JCTree.JCIdent;
+import com.sun.tools.javac.tree.JCTree.JCImport;
+import com.sun.tools.javac.tree.JCTree.JCLambda;
+import com.sun.tools.javac.tree.JCTree.JCMemberReference;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.JCTree.JCMethodInvocation;
+import com.sun.tools.javac.tree.JCTree.JCNewClass;
+import com.sun.tools.javac.tree.JCTree.JCStatement;
+import com.sun.tools.javac.tree.JCTree.JCTypeApply;
+import com.sun.tools.javac.tree.JCTree.JCTypeCast;
+import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.tree.TreeInfo;
+
+/**
+ * This is a JavaScript printer for translating the Java AST directly to an
+ * ES5 JavaScript program, without going through TypeScript (and thus without
+ * requiring the TypeScript compiler).
+ * 
+ * <p>
+ * It extends the TypeScript translator and overrides the declarations (which
+ * are printed as ES5 constructor functions and prototypes, within namespace
+ * closures), as well as the expressions that carry type information. Modules
+ * are not supported.
+ */
+public class Java2JavaScriptTranslator extends Java2TypeScriptTranslator {
+
+	private static final String SUPER_VAR_NAME = "_super";
+
+	private String namespaceName;
+
+	private boolean skipImportAlias = false;
+
+	/**
+	 * Creates a new JavaScript translator.
+	 * 
+	 * @param logHandler
+	 *            the handler for logging and error reporting
+	 * @param context
+	 *            the AST scanning context
+	 * @param compilationUnit
+	 *            the compilation unit to be translated
+	 * @param preserveSourceLineNumbers
+	 *            if true, the printer tries to preserve the line numbers of the
+	 *            original Java code, for debugging purpose
+	 */
+	public Java2JavaScriptTranslator(TranspilationHandler logHandler, JSweetContext context, JCCompilationUnit compilationUnit,
+			boolean preserveSourceLineNumbers) {
+		super(logHandler, context, compilationUnit, new Java2JavaScriptAdapter(), preserveSourceLineNumbers);
+	}
+
+	/**
+	 * '.js' for JavaScript output.
+	 */
+	@Override
+	public String getTargetFilesExtension() {
+		return ".js";
+	}
+
+	@Override
+	public void visitTopLevel(JCCompilationUnit topLevel) {
+		namespaceName = null;
+		super.visitTopLevel(topLevel);
+	}
+
+	@Override
+	protected void printNamespaceBegin(String namespaceName) {
+		this.namespaceName = namespaceName;
+		for (String segment : namespaceName.split("\\.")) {
+			printIndent().print("var " + segment + ";").println();
+			printIndent().print("(function (" + segment + ") {").startIndent().println();
+		}
+	}
+
+	@Override
+	protected void printNamespaceEnd(String namespaceName) {
+		removeLastChar();
+		String[] segments = namespaceName.split("\\.");
+		for (int i = segments.length - 1; i >= 0; i--) {
+			String qualifiedSegment = i == 0 ? segments[i] : segments[i - 1] + "." + segments[i];
+			endIndent().printIndent().print("})(");
+			if (i > 0) {
+				print(segments[i] + " = ");
+			}
+			print(qualifiedSegment + " || (" + qualifiedSegment + " = {}));");
+			if (i > 0) {
+				println();
+			}
+		}
+	}
+
+	/**
+	 * Prints the statement that exports a declaration of the current
+	 * compilation unit to its namespace (if any).
+	 */
+	private void printExport(String name) {
+		if (namespaceName != null) {
+			println().printIndent().print(namespaceName.substring(namespaceName.lastIndexOf('.') + 1) + "." + name + " = " + name + ";");
+		}
+	}
+
+	private boolean isGlobalNamespace(PackageSymbol packge) {
+		String packageName = packge.toString();
+		return JSweetConfig.GLOBALS_PACKAGE_NAME.equals(packageName) || packageName.endsWith("." + JSweetConfig.GLOBALS_PACKAGE_NAME)
+				|| getRootRelativeName(packge).length() == 0;
+	}
+
+	private boolean isDeclaredInOtherCompilationUnit(ClassSymbol clazz) {
+		return clazz.sourcefile == null || !clazz.sourcefile.equals(compilationUnit.sourcefile);
+	}
+
+	/**
+	 * Gets the qualifier to be printed before an access to a member of a
+	 * <code>Globals</code> class declared in the transpiled sources (functions
+	 * declared in the current compilation unit and globals in the global
+	 * namespace do not need to be qualified).
+	 * 
+	 * @param member
+	 *            the accessed function or variable
+	 * @return the qualifier, ending with a dot, or an empty string
+	 */
+	public String getGlobalsQualifier(Symbol member) {
+		ClassSymbol globalsClass = member.enclClass();
+		if (globalsClass == null || !Util.isSourceType(globalsClass)) {
+			return "";
+		}
+		PackageSymbol packge = globalsClass.packge();
+		if (isGlobalNamespace(packge)) {
+			return "";
+		}
+		if (member instanceof MethodSymbol && !isDeclaredInOtherCompilationUnit(globalsClass)) {
+			return "";
+		}
+		return getRootRelativeName(packge) + ".";
+	}
+
+	/**
+	 * Types declared in other compilation units are fully qualified, since
+	 * their namespace closure does not enclose the current compilation unit.
+	 */
+	@Override
+	protected String getTypeReferenceName(Symbol type) {
+		if (type instanceof ClassSymbol) {
+			ClassSymbol clazz = (ClassSymbol) type;
+			if (Util.isSourceType(clazz) && isDeclaredInOtherCompilationUnit(clazz) && !isGlobalNamespace(clazz.packge())) {
+				return getRootRelativeName(clazz);
+			}
+		}
+		return super.getTypeReferenceName(type);
+	}
+
+	@Override
+	public void visitIdent(JCIdent ident) {
+		if (ident.sym instanceof ClassSymbol) {
+			String name = getTypeReferenceName(ident.sym);
+			if (!name.equals(ident.sym.getSimpleName().toString())) {
+				print(name);
+				return;
+			}
+		}
+		super.visitIdent(ident);
+	}
+
+	@Override
+	public void visitImport(JCImport importDecl) {
+		JCTree importedElement = importDecl.qualid;
+		if (importDecl.isStatic() && importDecl.qualid instanceof JCFieldAccess) {
+			importedElement = ((JCFieldAccess) importDecl.qualid).selected;
+		}
+		Symbol importedSymbol = TreeInfo.symbol(importedElement);
+		// source types are accessed with their qualified names
+		skipImportAlias = importedSymbol instanceof ClassSymbol && Util.isSourceType((ClassSymbol) importedSymbol);
+		super.visitImport(importDecl);
+		skipImportAlias = false;
+	}
+
+	@Override
+	protected void printImportAlias(String name, String qualifiedName) {
+		if (!skipImportAlias) {
+			print("var ").print(name).print(" = ").print(qualifiedName).print(";");
+		}
+	}
+
+	@Override
+	public void visitClassDef(JCClassDecl classdecl) {
+		if (getParent() instanceof JCClassDecl) {
+			report(classdecl, JSweetProblem.INNER_CLASS, classdecl.name);
+			return;
+		}
+		if (JSweetConfig.GLOBALS_CLASS_NAME.equals(classdecl.name.toString())) {
+			printGlobals(classdecl);
+		} else if (Util.isInterface(classdecl.sym) || context.hasAnnotationType(classdecl.sym, JSweetConfig.ANNOTATION_AMBIENT)) {
+			// no JavaScript code for interfaces and ambient classes
+			return;
+		} else if (classdecl.getKind() == Kind.ENUM) {
+			printEnum(classdecl);
+		} else {
+			printClass(classdecl);
+		}
+		for (JCTree def : classdecl.defs) {
+			if (def instanceof JCMethodDecl && isMainMethod((JCMethodDecl) def)) {
+				addMainMethodCall(classdecl, (JCMethodDecl) def);
+			}
+		}
+	}
+
+	private boolean isMainMethod(JCMethodDecl methodDecl) {
+		return JSweetConfig.MAIN_FUNCTION_NAME.equals(methodDecl.name.toString()) && methodDecl.mods.getFlags().contains(Modifier.STATIC)
+				&& !context.hasAnnotationType(methodDecl.sym, JSweetConfig.ANNOTATION_DISABLED) && methodDecl.getParameters().size() < 2;
+	}
+
+	private boolean isConstructor(JCMethodDecl methodDecl) {
+		return methodDecl.name.toString().equals("<init>");
+	}
+
+	/**
+	 * Prints the members of a <code>Globals</code> class as functions and
+	 * variables of the namespace.
+	 */
+	private void printGlobals(JCClassDecl classdecl) {
+		// the members are indented by themselves
+		removeLastIndent();
+		int start = getCurrentPosition();
+		for (JCTree def : classdecl.defs) {
+			if (def instanceof JCBlock) {
+				printBlockStatements(((JCBlock) def).stats);
+				continue;
+			}
+			if (context.hasAnnotationType(TreeInfo.symbolFor(def), JSweetConfig.ANNOTATION_AMBIENT)) {
+				continue;
+			}
+			if (def instanceof JCMethodDecl && isConstructor((JCMethodDecl) def)) {
+				if (((JCMethodDecl) def).pos != classdecl.pos) {
+					report(def, ((JCMethodDecl) def).name, JSweetProblem.GLOBAL_CONSTRUCTOR_DEF);
+				}
+				continue;
+			}
+			if (def instanceof JCVariableDecl && (!getAdapter().needsVariableDecl((JCVariableDecl) def, VariableKind.FIELD)
+					|| (namespaceName != null && ((JCVariableDecl) def).init == null))) {
+				continue;
+			}
+			printIndent();
+			int pos = getCurrentPosition();
+			if (def instanceof JCVariableDecl) {
+				JCVariableDecl varDecl = (JCVariableDecl) def;
+				if (namespaceName != null) {
+					print(getGlobalsQualifier(varDecl.sym)).printIdentifier(varDecl.name.toString()).print(" = ").print(varDecl.init);
+				} else {
+					print(def);
+				}
+				print(";");
+			} else {
+				print(def);
+				if (getCurrentPosition() != pos && def instanceof JCMethodDecl) {
+					printExport(Util.getActualName(((JCMethodDecl) def).sym));
+				}
+			}
+			if (getCurrentPosition() == pos) {
+				removeLastIndent();
+				continue;
+			}
+			println();
+		}
+		if (getCurrentPosition() > start) {
+			removeLastChar();
+		}
+	}
+
+	/**
+	 * Prints an enum as an object mapping the names to the ordinals (and
+	 * conversely), as TypeScript does.
+	 */
+	private void printEnum(JCClassDecl classdecl) {
+		String name = classdecl.name.toString();
+		print("var " + name + ";").println();
+		printIndent().print("(function (" + name + ") {").startIndent().println();
+		int ordinal = 0;
+		for (JCTree def : classdecl.defs) {
+			if (def instanceof JCVariableDecl) {
+				JCVariableDecl varDecl = (JCVariableDecl) def;
+				if (varDecl.type.tsym != classdecl.type.tsym) {
+					report(def, varDecl.name, JSweetProblem.INVALID_FIELD_IN_ENUM);
+					continue;
+				}
+				String constant = varDecl.name.toString();
+				printIndent().print(name + "[" + name + "[\"" + constant + "\"] = " + (ordinal++) + "] = \"" + constant + "\";").println();
+			} else if (def instanceof JCMethodDecl) {
+				JCMethodDecl methodDecl = (JCMethodDecl) def;
+				if (!isConstructor(methodDecl)) {
+					report(methodDecl, methodDecl.name, JSweetProblem.INVALID_METHOD_IN_ENUM);
+				} else if (methodDecl.pos != classdecl.pos) {
+					report(methodDecl, methodDecl.name, JSweetProblem.INVALID_CONSTRUCTOR_IN_ENUM);
+				}
+			}
+		}
+		endIndent().printIndent().print("})(" + name + " || (" + name + " = {}));");
+		printExport(name);
+	}
+
+	/**
+	 * Gets the superclass expression of the given class, if it has a
+	 * JavaScript superclass (interfaces and the <code>Object</code> class are
+	 * erased).
+	 */
+	private JCExpression getJavaScriptSuperclass(JCClassDecl classdecl) {
+		if (classdecl.extending == null || JSweetConfig.isJDKReplacementMode() || Util.isInterface(classdecl.extending.type.tsym)) {
+			return null;
+		}
+		String superclassName = classdecl.extending.type.tsym.toString();
+		if (JSweetConfig.OBJECT_CLASSNAME.equals(superclassName) || Object.class.getName().equals(superclassName)) {
+			return null;
+		}
+		return classdecl.extending;
+	}
+
+	/**
+	 * Prints a class as an ES5 constructor function within a closure.
+	 */
+	private void printClass(JCClassDecl classdecl) {
+		String name = classdecl.name.toString();
+		JCExpression superclass = getJavaScriptSuperclass(classdecl);
+		print("var " + name + " = (function (" + (superclass == null ? "" : SUPER_VAR_NAME) + ") {").startIndent().println();
+		if (superclass != null) {
+			printIndent().print("for (var p in " + SUPER_VAR_NAME + ") if (" + SUPER_VAR_NAME + ".hasOwnProperty(p)) " + name + "[p] = " + SUPER_VAR_NAME + "[p];")
+					.println();
+			printIndent().print(name + ".prototype = Object.create(" + SUPER_VAR_NAME + ".prototype);").println();
+			printIndent().print(name + ".prototype.constructor = " + name + ";").println();
+		}
+
+		// constructor function (only the core constructor is printed)
+		printIndent();
+		int pos = getCurrentPosition();
+		for (JCTree def : classdecl.defs) {
+			if (def instanceof JCMethodDecl && isConstructor((JCMethodDecl) def)) {
+				print(def);
+			}
+		}
+		if (getCurrentPosition() == pos) {
+			print("function " + name + "() {").println().startIndent();
+			printFieldInitializers(classdecl);
+			endIndent().printIndent().print("}");
+		}
+		println();
+
+		// methods
+		for (JCTree def : classdecl.defs) {
+			if (def instanceof JCMethodDecl && !isConstructor((JCMethodDecl) def)) {
+				Position mark = mark();
+				printIndent();
+				pos = getCurrentPosition();
+				print(def);
+				if (getCurrentPosition() == pos) {
+					resetTo(mark);
+					continue;
+				}
+				println();
+			}
+		}
+
+		// static initialization, in declaration order
+		for (JCTree def : classdecl.defs) {
+			if (def instanceof JCVariableDecl) {
+				JCVariableDecl varDecl = (JCVariableDecl) def;
+				if (varDecl.mods.getFlags().contains(Modifier.STATIC) && varDecl.init != null
+						&& getAdapter().needsVariableDecl(varDecl, VariableKind.FIELD)) {
+					printIndent().print(name + ".").printIdentifier(varDecl.name.toString()).print(" = ").print(varDecl.init).print(";").println();
+				}
+			} else if (def instanceof JCBlock && ((JCBlock) def).isStatic()) {
+				printIndent().print(def).println();
+			}
+		}
+		printIndent().print("return " + name + ";").println();
+		endIndent().printIndent().print("})(");
+		if (superclass != null) {
+			print(superclass);
+		}
+		print(");");
+		printExport(name);
+	}
+
+	/**
+	 * Prints the initialization of the instance fields and the instance
+	 * initializers of the given class (which are part of the constructor
+	 * function in JavaScript).
+	 */
+	private void printFieldInitializers(JCClassDecl classdecl) {
+		for (JCTree def : classdecl.defs) {
+			if (def instanceof JCVariableDecl) {
+				JCVariableDecl varDecl = (JCVariableDecl) def;
+				if (!varDecl.mods.getFlags().contains(Modifier.STATIC) && varDecl.init != null
+						&& getAdapter().needsVariableDecl(varDecl, VariableKind.FIELD)) {
+					printIndent().print("this.").printIdentifier(varDecl.name.toString()).print(" = ").print(varDecl.init).print(";").println();
+				}
+			} else if (def instanceof JCBlock && !((JCBlock) def).isStatic()) {
+				printBlockStatements(((JCBlock) def).stats);
+			}
+		}
+	}
+
+	@Override
+	public void visitMethodDef(JCMethodDecl methodDecl) {
+		JCClassDecl parent = (JCClassDecl) getParent();
+		if (methodDecl.getBody() == null) {
+			// abstract and native methods have no JavaScript counterpart
+			return;
+		}
+		Overload overload = context.getOverload(parent.sym, methodDecl.name.toString());
+		if (overload != null && overload.methods.size() > 1) {
+			if (!overload.isValid) {
+				report(methodDecl, methodDecl.name, JSweetProblem.INVALID_OVERLOAD, methodDecl.name);
+				return;
+			} else if (!overload.coreMethod.equals(methodDecl.sym)) {
+				return;
+			}
+		}
+		boolean constructor = isConstructor(methodDecl);
+		boolean globals = JSweetConfig.GLOBALS_CLASS_NAME.equals(parent.name.toString());
+		if (constructor) {
+			print("function " + parent.name + "(");
+		} else if (globals) {
+			print("function ").printIdentifier(Util.getActualName(methodDecl.sym)).print("(");
+		} else {
+			print(parent.name.toString());
+			if (!methodDecl.mods.getFlags().contains(Modifier.STATIC)) {
+				print(".prototype");
+			}
+			print(".").printIdentifier(Util.getActualName(methodDecl.sym)).print(" = function (");
+		}
+		for (JCVariableDecl param : methodDecl.params) {
+			if (!isVarargs(param)) {
+				printIdentifier(getParameterName(param)).print(", ");
+			}
+		}
+		if (getLastPrintedChar() == ' ') {
+			removeLastChars(2);
+		}
+		print(") ");
+		printMethodBody(methodDecl.getBody());
+		if (!constructor && !globals) {
+			print(";");
+		}
+	}
+
+	private boolean isVarargs(JCVariableDecl varDecl) {
+		return (varDecl.mods.flags & Flags.VARARGS) == Flags.VARARGS;
+	}
+
+	private String getParameterName(JCVariableDecl param) {
+		String name = param.name.toString();
+		if (JSweetConfig.JS_KEYWORDS.contains(name)) {
+			name = "_jsweet_" + name;
+		}
+		return name;
+	}
+
+	/**
+	 * Prints the statements that replace the TypeScript optional (default
+	 * values) and rest (varargs) parameters.
+	 */
+	private void printParameterPrologue(JCMethodDecl methodDecl) {
+		JCClassDecl parent = getParent(JCClassDecl.class);
+		Overload overload = context.getOverload(parent.sym, methodDecl.name.toString());
+		int i = 0;
+		for (JCVariableDecl param : methodDecl.params) {
+			String name = getParameterName(param);
+			if (isVarargs(param)) {
+				printIndent().print("var ").printIdentifier(name).print(" = Array.prototype.slice.call(arguments, " + i + ");").println();
+			} else if (overload != null && overload.methods.size() > 1 && overload.defaultValues[i] != null) {
+				printIndent().print("if (").printIdentifier(name).print(" === void 0) { ").printIdentifier(name).print(" = ")
+						.print(overload.defaultValues[i]).print("; }").println();
+			}
+			i++;
+		}
+	}
+
+	@Override
+	public void visitBlock(JCBlock block) {
+		JCTree parent = getParent();
+		if (parent instanceof JCMethodDecl) {
+			JCMethodDecl methodDecl = (JCMethodDecl) parent;
+			print("{").println().startIndent();
+			printParameterPrologue(methodDecl);
+			List<JCStatement> statements = block.stats;
+			if (isConstructor(methodDecl)) {
+				if (!statements.isEmpty() && TreeInfo.isSuperCall(statements.get(0))) {
+					printBlockStatements(statements.subList(0, 1));
+					statements = statements.subList(1, statements.size());
+				}
+				printFieldInitializers(getParent(JCClassDecl.class));
+			}
+			printBlockStatements(statements);
+			endIndent().printIndent().print("}");
+		} else if (parent instanceof JCClassDecl) {
+			// static initializer
+			print("{").println().startIndent();
+			printBlockStatements(block.stats);
+			endIndent().printIndent().print("}");
+		} else {
+			super.visitBlock(block);
+		}
+	}
+
+	@Override
+	public void visitVarDef(JCVariableDecl varDecl) {
+		if (!(getParent() instanceof JCLambda) && varDecl.vartype != null) {
+			typeChecker.checkType(varDecl, varDecl.name, varDecl.vartype);
+		}
+		boolean skip = skipTypeAnnotations;
+		skipTypeAnnotations = true;
+		super.visitVarDef(varDecl);
+		skipTypeAnnotations = skip;
+	}
+
+	@Override
+	public void visitApply(JCMethodInvocation inv) {
+		JCClassDecl currentClass = getParent(JCClassDecl.class);
+		if (inv.meth instanceof JCIdent && context.names._super.equals(((JCIdent) inv.meth).name)) {
+			if (currentClass != null && getJavaScriptSuperclass(currentClass) != null) {
+				print(SUPER_VAR_NAME + ".call(this");
+				if (!inv.args.isEmpty()) {
+					print(", ").printArgList(inv.args);
+				}
+				print(")");
+			}
+			return;
+		}
+		if (inv.meth instanceof JCFieldAccess && ((JCFieldAccess) inv.meth).selected instanceof JCIdent
+				&& context.names._super.equals(((JCIdent) ((JCFieldAccess) inv.meth).selected).name)) {
+			JCFieldAccess fieldAccess = (JCFieldAccess) inv.meth;
+			if (currentClass != null && getJavaScriptSuperclass(currentClass) != null) {
+				print(SUPER_VAR_NAME);
+			} else {
+				print("Object");
+			}
+			print(".prototype.").printIdentifier(Util.getActualName(fieldAccess.sym)).print(".call(this");
+			if (!inv.args.isEmpty()) {
+				print(", ").printArgList(inv.args);
+			}
+			print(")");
+			return;
+		}
+		super.visitApply(inv);
+	}
+
+	@Override
+	protected void printInvocationTypeArguments(JCMethodInvocation inv) {
+		// no type arguments in JavaScript
+	}
+
+	@Override
+	public void visitTypeApply(JCTypeApply typeApply) {
+		print(typeApply.clazz);
+	}
+
+	@Override
+	public void visitTypeCast(JCTypeCast cast) {
+		print(cast.expr);
+	}
+
+	@Override
+	public void visitNewClass(JCNewClass newClass) {
+		if (newClass.def != null && !Util.isInterface(newClass.clazz.type.tsym)
+				&& !context.hasAnnotationType(newClass.clazz.type.tsym, JSweetConfig.ANNOTATION_OBJECT_TYPE)) {
+			report(newClass, JSweetProblem.UNSUPPORTED_DIRECT_JS, "anonymous class");
+			return;
+		}
+		super.visitNewClass(newClass);
+	}
+
+	/**
+	 * Tells if the currently printed code has access to <code>this</code>
+	 * (functions created in such code must be bound to <code>this</code>).
+	 */
+	private boolean isInstanceContext() {
+		JCMethodDecl methodDecl = getParent(JCMethodDecl.class);
+		return methodDecl != null && !methodDecl.mods.getFlags().contains(Modifier.STATIC)
+				&& !JSweetConfig.GLOBALS_CLASS_NAME.equals(getParent(JCClassDecl.class).name.toString());
+	}
+
+	@Override
+	public void visitLambda(JCLambda lamba) {
+		Collection<VarSymbol> capturedVars = getCapturedVariables(lamba);
+		boolean bound = isInstanceContext();
+		if (!capturedVars.isEmpty()) {
+			print("(function (").print(getNames(capturedVars)).print(") { return ");
+		}
+		print("function (").printArgList(lamba.params).print(") ");
+		if (lamba.getBodyKind() == JCLambda.BodyKind.EXPRESSION) {
+			print("{ return ").print(lamba.body).print("; }");
+		} else {
+			print(lamba.body);
+		}
+		if (bound) {
+			print(".bind(this)");
+		}
+		if (!capturedVars.isEmpty()) {
+			print("; })");
+			if (bound) {
+				print(".call(this, ");
+			} else {
+				print("(");
+			}
+			print(getNames(capturedVars)).print(")");
+		}
+	}
+
+	private String getNames(Collection<VarSymbol> vars) {
+		List<String> names = new ArrayList<>();
+		for (VarSymbol var : vars) {
+			names.add(var.name.toString());
+		}
+		return String.join(", ", names);
+	}
+
+	@Override
+	public void visitReference(JCMemberReference memberReference) {
+		String params = "";
+		if (memberReference.sym instanceof MethodSymbol && ((MethodSymbol) memberReference.sym).params != null) {
+			params = getNames(((MethodSymbol) memberReference.sym).params);
+		}
+		print("function (" + params + ") { return ");
+		if (memberReference.expr.type.toString().endsWith(JSweetConfig.GLOBALS_CLASS_NAME)) {
+			print(getGlobalsQualifier(memberReference.sym)).print(memberReference.name.toString());
+		} else {
+			print(memberReference.expr).print(".").print(memberReference.name.toString());
+		}
+		print("(" + params + "); }");
+		if (isInstanceContext()) {
+			print(".bind(this)");
+		}
+	}
+
+	@Override
+	public String getTypeAssertion(String type) {
+		return "";
+	}
+
+	@Override
+	public String getTypeAnnotation(String type) {
+		return "";
+	}
+
+	@Override
+	public String getAmbientVariableDeclaration(String name) {
+		return "var " + name + ";";
+	}
+
+}
@@ -16,6 +16,7 @@
  */
 package org.jsweet.transpiler.typescript;
 
+import static java.util.Arrays.asList;
 import static org.jsweet.JSweetConfig.ANNOTATION_ERASED;
 import static org.jsweet.JSweetConfig.ANNOTATION_FUNCTIONAL_INTERFACE;
 import static org.jsweet.JSweetConfig.ANNOTATION_OBJECT_TYPE;
@@ -39,6 +40,7 @@ import static org.jsweet.JSweetConfig.isJSweetPath;
 import static org.jsweet.transpiler.util.Util.getFirstAnnotationValue;
 import static org.jsweet.transpiler.util.Util.getRootRelativeName;
 
+import java.io.PrintStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -71,6 +73,7 @@ import com.sun.tools.javac.tree.JCTree.JCMethodInvocation;
 import com.sun.tools.javac.tree.JCTree.JCNewClass;
 import com.sun.tools.javac.tree.JCTree.JCTypeApply;
 import com.sun.tools.javac.tree.JCTree.JCTypeCast;
+import com.sun.tools.javac.tree.TreeInfo;
 import com.sun.tools.javac.util.Log;
 
 /**
@@ -105,6 +108,22 @@ public class Java2TypeScriptAdapter extends AbstractPrinterAdapter {
 		typesMapping.put(LANG_PACKAGE + ".Boolean", "boolean");
 		typesMapping.put(LANG_PACKAGE + ".String", "string");
 		typesMapping.put(LANG_PACKAGE + ".Number", "number");
+
+		registerMethodSubstitution(UTIL_CLASSNAME, "$export", this::substituteExport);
+		for (String castMethodName : asList("array", "function", "string", "bool", "number", "integer", "object")) {
+			registerMethodSubstitution(UTIL_CLASSNAME, castMethodName, (invocation, fieldAccess) -> {
+				printCastMethodInvocation(invocation);
+				return true;
+			});
+		}
+		registerMethodSubstitution(UTIL_CLASSNAME, "union", this::substituteUnion);
+		registerMethodSubstitution(null, INDEXED_GET_FUCTION_NAME, this::substituteIndexedGet);
+		registerMethodSubstitution(null, INDEXED_GET_STATIC_FUCTION_NAME, this::substituteStaticIndexedGet);
+		registerMethodSubstitution(null, INDEXED_SET_FUCTION_NAME, this::substituteIndexedSet);
+		registerMethodSubstitution(null, INDEXED_SET_STATIC_FUCTION_NAME, this::substituteStaticIndexedSet);
+		registerMethodSubstitution(null, INDEXED_DELETE_FUCTION_NAME, this::substituteIndexedDelete);
+		registerMethodSubstitution(null, INDEXED_DELETE_STATIC_FUCTION_NAME, this::substituteStaticIndexedDelete);
+		registerMethodSubstitution(null, "$super", this::substituteSuperInvocation);
 	}
 
 	@Override
@@ -112,7 +131,7 @@ public class Java2TypeScriptAdapter extends AbstractPrinterAdapter {
 		if (isJSweetPath(qualifiedName) || isJDKPath(qualifiedName) || qualifiedName.endsWith(GLOBALS_PACKAGE_NAME + "." + GLOBALS_CLASS_NAME)) {
 			return null;
 		}
-		if (importDecl.qualid.type != null && Util.hasAnnotationType(importDecl.qualid.type.tsym, ANNOTATION_ERASED, ANNOTATION_OBJECT_TYPE)) {
+		if (importDecl.qualid.type != null && getPrinter().getContext().hasAnnotationType(importDecl.qualid.type.tsym, ANNOTATION_ERASED, ANNOTATION_OBJECT_TYPE)) {
 			return null;
 		}
 		if (importDecl.isStatic()) {
@@ -173,15 +192,17 @@ public class Java2TypeScriptAdapter extends AbstractPrinterAdapter {
 
 	@Override
 	public boolean substituteMethodInvocation(JCMethodInvocation invocation) {
-		if ("System.out.println".equals(invocation.meth.toString())) {
+		if (isInvocationOf(invocation, PrintStream.class.getName(), "println") && invocation.meth instanceof JCFieldAccess
+				&& isMemberReference(((JCFieldAccess) invocation.meth).selected, System.class.getName(), "out")) {
 			getPrinter().print("console.info(").print(invocation.args.head).print(")");
 			return true;
 		}
-		if ("System.err.println".equals(invocation.meth.toString())) {
+		if (isInvocationOf(invocation, PrintStream.class.getName(), "println") && invocation.meth instanceof JCFieldAccess
+				&& isMemberReference(((JCFieldAccess) invocation.meth).selected, System.class.getName(), "err")) {
 			getPrinter().print("console.error(").print(invocation.args.head).print(")");
 			return true;
 		}
-		if ("super".equals(invocation.meth.toString())) {
+		if (invocation.meth instanceof JCIdent && ((JCIdent) invocation.meth).name == getPrinter().getContext().names._super) {
 			// we omit call to super if class extends nothing or if parent is an
 			// interface
 			if (getPrinter().getParent(JCClassDecl.class).extending == null //
@@ -199,7 +220,7 @@ public class Java2TypeScriptAdapter extends AbstractPrinterAdapter {
 			targetClassName = targetType.getQualifiedName().toString();
 			targetMethodName = fieldAccess.name.toString();
 		} else {
-			targetMethodName = invocation.getMethodSelect().toString();
+			targetMethodName = TreeInfo.name(invocation.getMethodSelect()).toString();
 		}
 
 		// System.out.println(invocation+" ===> "+fieldAccess+" :
@@ -224,199 +245,185 @@ public class Java2TypeScriptAdapter extends AbstractPrinterAdapter {
 				return true;
 			}
 			if (targetMethodName.equals("values")) {
-				getPrinter().print("function() { var result: number[] = []; for(var val in ").print(relTarget)
+				getPrinter().print("function() { var result" + getPrinter().getTypeAnnotation("number[]") + " = []; for(var val in ").print(relTarget)
 						.print(") { if(!isNaN(val)) { result.push(parseInt(val,10)); } } return result; }()");
 				return true;
 			}
 		}
 
-		if (matchesMethod(targetClassName, targetMethodName, UTIL_CLASSNAME, "$export")) {
-			if (invocation.args.head.getKind() != Kind.STRING_LITERAL) {
-				getPrinter().report(invocation.args.head, JSweetProblem.STRING_LITERAL_EXPECTED);
-			}
-			String varName = "_exportedVar_" + StringUtils.strip(invocation.args.head.toString(), "\"");
-			getPrinter().footer.append("declare var " + varName + ";\n");
-			if (invocation.args.size() == 1) {
-				getPrinter().print(varName);
-			} else {
-				getPrinter().print(varName + " = ").print(invocation.args.tail.head).print("; ");
-				getPrinter().print("console.log('" + JSweetTranspiler.EXPORTED_VAR_BEGIN + StringUtils.strip(invocation.args.head.toString(), "\"") + "='+")
-						.print(varName).print("+'" + JSweetTranspiler.EXPORTED_VAR_END + "');");
-			}
-			return true;
-		}
-		if (matchesMethod(targetClassName, targetMethodName, UTIL_CLASSNAME, "array")) {
-			printCastMethodInvocation(invocation);
-			return true;
-		}
-		if (matchesMethod(targetClassName, targetMethodName, UTIL_CLASSNAME, "function")) {
-			printCastMethodInvocation(invocation);
-			return true;
-		}
-		if (matchesMethod(targetClassName, targetMethodName, UTIL_CLASSNAME, "string")) {
-			printCastMethodInvocation(invocation);
-			return true;
-		}
-		if (matchesMethod(targetClassName, targetMethodName, UTIL_CLASSNAME, "bool")) {
-			printCastMethodInvocation(invocation);
-			return true;
-		}
-		if (matchesMethod(targetClassName, targetMethodName, UTIL_CLASSNAME, "number")) {
-			printCastMethodInvocation(invocation);
+		if (super.substituteMethodInvocation(invocation)) {
 			return true;
 		}
-		if (matchesMethod(targetClassName, targetMethodName, UTIL_CLASSNAME, "integer")) {
-			printCastMethodInvocation(invocation);
+
+		if (targetClassName != null && targetClassName.endsWith(GLOBALS_CLASS_NAME)) {
+			if (getPrinter().getContext().useModules) {
+				if (JSweetConfig.GLOBALS_PACKAGE_NAME.equals(targetType.getEnclosingElement().getSimpleName().toString())) {
+					getPrinter().print(JSweetConfig.GLOBALS_PACKAGE_NAME).print(".");
+				}
+			}
+			getPrinter().printIdentifier(targetMethodName).print("(").printArgList(invocation.args).print(")");
 			return true;
 		}
-		if (matchesMethod(targetClassName, targetMethodName, UTIL_CLASSNAME, "object")) {
-			printCastMethodInvocation(invocation);
+		if (fieldAccess != null && targetClassName != null
+				&& (targetClassName.startsWith(UTIL_PACKAGE + ".function.") || targetClassName.startsWith(Function.class.getPackage().getName()))) {
+			if (targetClassName.startsWith(Function.class.getPackage().getName()) && TypeChecker.FORBIDDEN_JDK_FUNCTIONAL_METHODS.contains(targetMethodName)) {
+				getPrinter().report(invocation, JSweetProblem.JDK_METHOD, targetMethodName);
+			}
+			getPrinter().print(fieldAccess.getExpression()).print("(").printArgList(invocation.args).print(")");
 			return true;
 		}
-		if (matchesMethod(targetClassName, targetMethodName, UTIL_CLASSNAME, "union")) {
-			getPrinter().typeChecker.checkUnionTypeAssignment(getPrinter().getContext().types, getPrinter().getParent(), invocation);
-			getPrinter().print("(<any>");
-			printCastMethodInvocation(invocation);
-			getPrinter().print(")");
+		if (fieldAccess != null && targetClassName != null && targetClassName.equals(java.lang.Runnable.class.getName())) {
+			getPrinter().print(fieldAccess.getExpression()).print("(").printArgList(invocation.args).print(")");
 			return true;
 		}
 
-		if (matchesMethod(targetClassName, targetMethodName, null, INDEXED_GET_FUCTION_NAME)) {
-			if (isWithinGlobals(targetClassName)) {
-				report(invocation, JSweetProblem.GLOBAL_INDEXER_GET);
-				return true;
-			}
-
-			if (fieldAccess != null && !fieldAccess.toString().equals(UTIL_CLASSNAME + "." + INDEXED_GET_FUCTION_NAME)) {
-				getPrinter().print(fieldAccess.selected).print("[").print(invocation.args.head).print("]");
-			} else {
-				if (invocation.args.length() == 1) {
-					getPrinter().print("this[").print(invocation.args.head).print("]");
-				} else {
-					getPrinter().print(invocation.args.head).print("[").print(invocation.args.tail.head).print("]");
+		if (!JSweetConfig.isJDKReplacementMode()) {
+			Log log = Log.instance(getPrinter().getContext());
+			if (String.class.getName().equals(targetClassName)) {
+				synchronized (getPrinter().getContext().getCompilerLock()) {
+					log.rawError(invocation.pos, "Invalid use of native Java class. Use string(a_java_string) to convert to JSweet String first.");
 				}
 			}
-			return true;
 		}
-		if (matchesMethod(targetClassName, targetMethodName, null, INDEXED_GET_STATIC_FUCTION_NAME)) {
-			if (isWithinGlobals(targetClassName)) {
-				report(invocation, JSweetProblem.GLOBAL_INDEXER_GET);
-				return true;
-			}
 
-			getPrinter().print(fieldAccess.selected).print("[").print(invocation.args.head).print("]");
-			return true;
-		}
+		return false;
+	}
 
-		if (matchesMethod(targetClassName, targetMethodName, null, INDEXED_SET_FUCTION_NAME)) {
+	private String getTargetClassName(JCFieldAccess fieldAccess) {
+		return fieldAccess == null ? null : fieldAccess.selected.type.tsym.getQualifiedName().toString();
+	}
 
-			if (isWithinGlobals(targetClassName)) {
-				report(invocation, JSweetProblem.GLOBAL_INDEXER_SET);
-				return true;
-			}
+	private boolean substituteExport(JCMethodInvocation invocation, JCFieldAccess fieldAccess) {
+		if (invocation.args.head.getKind() != Kind.STRING_LITERAL) {
+			getPrinter().report(invocation.args.head, JSweetProblem.STRING_LITERAL_EXPECTED);
+		}
+		String varName = "_exportedVar_" + StringUtils.strip(invocation.args.head.toString(), "\"");
+		getPrinter().footer.append(getPrinter().getAmbientVariableDeclaration(varName) + "\n");
+		if (invocation.args.size() == 1) {
+			getPrinter().print(varName);
+		} else {
+			getPrinter().print(varName + " = ").print(invocation.args.tail.head).print("; ");
+			getPrinter().print("console.log('" + JSweetTranspiler.EXPORTED_VAR_BEGIN + StringUtils.strip(invocation.args.head.toString(), "\"") + "='+")
+					.print(varName).print("+'" + JSweetTranspiler.EXPORTED_VAR_END + "');");
+		}
+		return true;
+	}
 
-			if (fieldAccess != null && !fieldAccess.toString().equals(UTIL_CLASSNAME + "." + INDEXED_SET_FUCTION_NAME)) {
-				// check the type through the getter
-				for (Symbol e : fieldAccess.selected.type.tsym.getEnclosedElements()) {
-					if (e instanceof MethodSymbol && INDEXED_GET_FUCTION_NAME.equals(e.getSimpleName().toString())) {
-						MethodSymbol getMethod = (MethodSymbol) e;
-						TypeSymbol getterType = getMethod.getReturnType().tsym;
-						TypeSymbol argType = invocation.args.tail.head.type.tsym;
-						if (!Util.isAssignable(getPrinter().getContext().types, getterType, argType)) {
-							report(invocation.args.tail.head, JSweetProblem.INDEXED_SET_TYPE_MISMATCH, getterType);
-						}
-					}
-				}
+	private boolean substituteUnion(JCMethodInvocation invocation, JCFieldAccess fieldAccess) {
+		getPrinter().typeChecker.checkUnionTypeAssignment(getPrinter().getContext().types, getPrinter().getParent(), invocation);
+		getPrinter().print("(" + getPrinter().getTypeAssertion("any"));
+		printCastMethodInvocation(invocation);
+		getPrinter().print(")");
+		return true;
+	}
 
-				getPrinter().print(fieldAccess.selected).print("[").print(invocation.args.head).print("] = ").print(invocation.args.tail.head);
-			} else {
-				if (invocation.args.length() == 2) {
-					getPrinter().print("this[").print(invocation.args.head).print("] = <any>").print(invocation.args.tail.head);
-				} else {
-					getPrinter().print(invocation.args.head).print("[").print(invocation.args.tail.head).print("] = <any>")
-							.print(invocation.args.tail.tail.head);
-				}
-			}
+	private boolean substituteIndexedGet(JCMethodInvocation invocation, JCFieldAccess fieldAccess) {
+		if (isWithinGlobals(getTargetClassName(fieldAccess))) {
+			report(invocation, JSweetProblem.GLOBAL_INDEXER_GET);
 			return true;
 		}
 
-		if (matchesMethod(targetClassName, targetMethodName, null, INDEXED_SET_STATIC_FUCTION_NAME)) {
-
-			if (isWithinGlobals(targetClassName)) {
-				report(invocation, JSweetProblem.GLOBAL_INDEXER_SET);
-				return true;
+		if (fieldAccess != null && !matchesQualifiedName(fieldAccess, UTIL_CLASSNAME + "." + INDEXED_GET_FUCTION_NAME)) {
+			getPrinter().print(fieldAccess.selected).print("[").print(invocation.args.head).print("]");
+		} else {
+			if (invocation.args.length() == 1) {
+				getPrinter().print("this[").print(invocation.args.head).print("]");
+			} else {
+				getPrinter().print(invocation.args.head).print("[").print(invocation.args.tail.head).print("]");
 			}
+		}
+		return true;
+	}
 
-			getPrinter().print(fieldAccess.selected).print("[").print(invocation.args.head).print("] = ").print(invocation.args.tail.head);
+	private boolean substituteStaticIndexedGet(JCMethodInvocation invocation, JCFieldAccess fieldAccess) {
+		if (isWithinGlobals(getTargetClassName(fieldAccess))) {
+			report(invocation, JSweetProblem.GLOBAL_INDEXER_GET);
 			return true;
 		}
 
-		if (matchesMethod(targetClassName, targetMethodName, null, INDEXED_DELETE_FUCTION_NAME)) {
-			if (isWithinGlobals(targetClassName)) {
-				report(invocation, JSweetProblem.GLOBAL_DELETE);
-				return true;
-			}
+		getPrinter().print(fieldAccess.selected).print("[").print(invocation.args.head).print("]");
+		return true;
+	}
 
-			if (fieldAccess != null && !fieldAccess.toString().equals(UTIL_CLASSNAME + "." + INDEXED_DELETE_FUCTION_NAME)) {
-				getPrinter().print("delete ").print(fieldAccess.selected).print("[").print(invocation.args.head).print("]");
-			} else {
-				getPrinter().print("delete this[").print(invocation.args.head).print("]");
-			}
+	private boolean substituteIndexedSet(JCMethodInvocation invocation, JCFieldAccess fieldAccess) {
+		if (isWithinGlobals(getTargetClassName(fieldAccess))) {
+			report(invocation, JSweetProblem.GLOBAL_INDEXER_SET);
 			return true;
 		}
 
-		if (matchesMethod(targetClassName, targetMethodName, null, INDEXED_DELETE_STATIC_FUCTION_NAME)) {
-			if (isWithinGlobals(targetClassName)) {
-				report(invocation, JSweetProblem.GLOBAL_DELETE);
-				return true;
+		if (fieldAccess != null && !matchesQualifiedName(fieldAccess, UTIL_CLASSNAME + "." + INDEXED_SET_FUCTION_NAME)) {
+			// check the type through the getter
+			for (Symbol e : fieldAccess.selected.type.tsym.getEnclosedElements()) {
+				if (e instanceof MethodSymbol && INDEXED_GET_FUCTION_NAME.equals(e.getSimpleName().toString())) {
+					MethodSymbol getMethod = (MethodSymbol) e;
+					TypeSymbol getterType = getMethod.getReturnType().tsym;
+					TypeSymbol argType = invocation.args.tail.head.type.tsym;
+					if (!Util.isAssignable(getPrinter().getContext().types, getterType, argType)) {
+						report(invocation.args.tail.head, JSweetProblem.INDEXED_SET_TYPE_MISMATCH, getterType);
+					}
+				}
 			}
 
-			if (fieldAccess != null && !fieldAccess.toString().equals(UTIL_CLASSNAME + "." + INDEXED_GET_FUCTION_NAME)) {
-				getPrinter().print("delete ").print(fieldAccess.selected).print("[").print(invocation.args.head).print("]");
+			getPrinter().print(fieldAccess.selected).print("[").print(invocation.args.head).print("] = ").print(invocation.args.tail.head);
+		} else {
+			if (invocation.args.length() == 2) {
+				getPrinter().print("this[").print(invocation.args.head).print("] = " + getPrinter().getTypeAssertion("any")).print(invocation.args.tail.head);
 			} else {
-				if (invocation.args.length() == 1) {
-					getPrinter().print("delete ").print("this[").print(invocation.args.head).print("]");
-				} else {
-					getPrinter().print("delete ").print(invocation.args.head).print("[").print(invocation.args.tail.head).print("]");
-				}
+				getPrinter().print(invocation.args.head).print("[").print(invocation.args.tail.head).print("] = " + getPrinter().getTypeAssertion("any"))
+						.print(invocation.args.tail.tail.head);
 			}
-			return true;
 		}
+		return true;
+	}
 
-		if (targetClassName != null && targetClassName.endsWith(GLOBALS_CLASS_NAME)) {
-			if (getPrinter().getContext().useModules) {
-				if (JSweetConfig.GLOBALS_PACKAGE_NAME.equals(targetType.getEnclosingElement().getSimpleName().toString())) {
-					getPrinter().print(JSweetConfig.GLOBALS_PACKAGE_NAME).print(".");
-				}
-			}
-			getPrinter().printIdentifier(targetMethodName).print("(").printArgList(invocation.args).print(")");
+	private boolean substituteStaticIndexedSet(JCMethodInvocation invocation, JCFieldAccess fieldAccess) {
+		if (isWithinGlobals(getTargetClassName(fieldAccess))) {
+			report(invocation, JSweetProblem.GLOBAL_INDEXER_SET);
 			return true;
 		}
-		if (fieldAccess == null && matchesMethod(targetClassName, targetMethodName, null, "$super")) {
-			getPrinter().print("super(").printArgList(invocation.args).print(")");
+
+		getPrinter().print(fieldAccess.selected).print("[").print(invocation.args.head).print("] = ").print(invocation.args.tail.head);
+		return true;
+	}
+
+	private boolean substituteIndexedDelete(JCMethodInvocation invocation, JCFieldAccess fieldAccess) {
+		if (isWithinGlobals(getTargetClassName(fieldAccess))) {
+			report(invocation, JSweetProblem.GLOBAL_DELETE);
 			return true;
 		}
-		if (fieldAccess != null && targetClassName != null
-				&& (targetClassName.startsWith(UTIL_PACKAGE + ".function.") || targetClassName.startsWith(Function.class.getPackage().getName()))) {
-			if (targetClassName.startsWith(Function.class.getPackage().getName()) && TypeChecker.FORBIDDEN_JDK_FUNCTIONAL_METHODS.contains(targetMethodName)) {
-				getPrinter().report(invocation, JSweetProblem.JDK_METHOD, targetMethodName);
-			}
-			getPrinter().print(fieldAccess.getExpression()).print("(").printArgList(invocation.args).print(")");
-			return true;
+
+		if (fieldAccess != null && !matchesQualifiedName(fieldAccess, UTIL_CLASSNAME + "." + INDEXED_DELETE_FUCTION_NAME)) {
+			getPrinter().print("delete ").print(fieldAccess.selected).print("[").print(invocation.args.head).print("]");
+		} else {
+			getPrinter().print("delete this[").print(invocation.args.head).print("]");
 		}
-		if (fieldAccess != null && targetClassName != null && targetClassName.equals(java.lang.Runnable.class.getName())) {
-			getPrinter().print(fieldAccess.getExpression()).print("(").printArgList(invocation.args).print(")");
+		return true;
+	}
+
+	private boolean substituteStaticIndexedDelete(JCMethodInvocation invocation, JCFieldAccess fieldAccess) {
+		if (isWithinGlobals(getTargetClassName(fieldAccess))) {
+			report(invocation, JSweetProblem.GLOBAL_DELETE);
 			return true;
 		}
 
-		if (!JSweetConfig.isJDKReplacementMode()) {
-			Log log = Log.instance(getPrinter().getContext());
-			if (String.class.getName().equals(targetClassName)) {
-				log.rawError(invocation.pos, "Invalid use of native Java class. Use string(a_java_string) to convert to JSweet String first.");
+		if (fieldAccess != null && !matchesQualifiedName(fieldAccess, UTIL_CLASSNAME + "." + INDEXED_GET_FUCTION_NAME)) {
+			getPrinter().print("delete ").print(fieldAccess.selected).print("[").print(invocation.args.head).print("]");
+		} else {
+			if (invocation.args.length() == 1) {
+				getPrinter().print("delete ").print("this[").print(invocation.args.head).print("]");
+			} else {
+				getPrinter().print("delete ").print(invocation.args.head).print("[").print(invocation.args.tail.head).print("]");
 			}
 		}
+		return true;
+	}
 
-		return super.substituteMethodInvocation(invocation);
+	private boolean substituteSuperInvocation(JCMethodInvocation invocation, JCFieldAccess fieldAccess) {
+		if (fieldAccess != null) {
+			return false;
+		}
+		getPrinter().print("super(").printArgList(invocation.args).print(")");
+		return true;
 	}
 
 	private void printCastMethodInvocation(JCMethodInvocation invocation) {
@@ -445,20 +452,19 @@ public class Java2TypeScriptAdapter extends AbstractPrinterAdapter {
 		}
 
 		AnnotationMirror annotation;
-		if ((annotation = Util.getAnnotation(fieldAccess.sym, ANNOTATION_STRING_TYPE)) != null) {
+		if ((annotation = getPrinter().getContext().getAnnotation(fieldAccess.sym, ANNOTATION_STRING_TYPE)) != null) {
 			getPrinter().print("\"");
 			getPrinter().printIdentifier(getFirstAnnotationValue(annotation, fieldAccess.name).toString());
 			getPrinter().print("\"");
 			return true;
 		}
-		String selected = fieldAccess.selected.toString();
-		if (selected.equals(GLOBALS_CLASS_NAME)) {
+		if (matchesQualifiedName(fieldAccess.selected, GLOBALS_CLASS_NAME)) {
 			getPrinter().printIdentifier(fieldAccess.name.toString());
 			return true;
 		}
 
 		if (fieldAccess.selected.type.tsym instanceof PackageSymbol) {
-			if (Util.hasAnnotationType(fieldAccess.selected.type.tsym, ANNOTATION_ROOT)) {
+			if (getPrinter().getContext().hasAnnotationType(fieldAccess.selected.type.tsym, ANNOTATION_ROOT)) {
 				if (fieldAccess.type != null && fieldAccess.type.tsym != null) {
 					getPrinter().printIdentifier(Util.getActualName(fieldAccess.type.tsym));
 				} else {
@@ -490,7 +496,7 @@ public class Java2TypeScriptAdapter extends AbstractPrinterAdapter {
 			return true;
 		}
 		if (typesMapping.containsKey(fullType)) {
-			getPrinter().print("<").print(typesMapping.get(fullType)).print(">");
+			getPrinter().print(getPrinter().getTypeAssertion(typesMapping.get(fullType)));
 		}
 		return super.substituteNewClass(newClass);
 	}
@@ -501,10 +507,10 @@ public class Java2TypeScriptAdapter extends AbstractPrinterAdapter {
 		// if(fullName.startsWith(Console.class.getPackage().getName())) {
 		// return "any";
 		// }
-		if (Util.hasAnnotationType(typeTree.type.tsym, ANNOTATION_ERASED)) {
+		if (getPrinter().getContext().hasAnnotationType(typeTree.type.tsym, ANNOTATION_ERASED)) {
 			return getPrinter().print("any");
 		}
-		if (Util.hasAnnotationType(typeTree.type.tsym, ANNOTATION_OBJECT_TYPE)) {
+		if (getPrinter().getContext().hasAnnotationType(typeTree.type.tsym, ANNOTATION_OBJECT_TYPE)) {
 			// TODO: in case of object types, we should replace with the org
 			// object type...
 			return getPrinter().print("any");
@@ -608,7 +614,7 @@ public class Java2TypeScriptAdapter extends AbstractPrinterAdapter {
 	@Override
 	public boolean substituteIdentifier(JCIdent identifier) {
 		AnnotationMirror annotation;
-		if ((annotation = Util.getAnnotation(identifier.sym, ANNOTATION_STRING_TYPE)) != null) {
+		if ((annotation = getPrinter().getContext().getAnnotation(identifier.sym, ANNOTATION_STRING_TYPE)) != null) {
 			getPrinter().print("\"");
 			getPrinter().printIdentifier(getFirstAnnotationValue(annotation, identifier).toString());
 			getPrinter().print("\"");
@@ -627,13 +633,18 @@ public class Java2TypeScriptAdapter extends AbstractPrinterAdapter {
 
 	@Override
 	public boolean needsTypeCast(JCTypeCast cast) {
-		if (Util.hasAnnotationType(cast.clazz.type.tsym, ANNOTATION_ERASED, ANNOTATION_OBJECT_TYPE, ANNOTATION_FUNCTIONAL_INTERFACE)) {
+		if (getPrinter().getContext().hasAnnotationType(cast.clazz.type.tsym, ANNOTATION_ERASED, ANNOTATION_OBJECT_TYPE, ANNOTATION_FUNCTIONAL_INTERFACE)) {
 			return false;
 		} else {
 			return super.needsTypeCast(cast);
 		}
 	}
 
+	@Override
+	public Java2TypeScriptTranslator getPrinter() {
+		return (Java2TypeScriptTranslator) super.getPrinter();
+	}
+
 	@Override
 	public String getIdentifier(String identifier) {
 		return JSweetConfig.toJsIdentifier(identifier);
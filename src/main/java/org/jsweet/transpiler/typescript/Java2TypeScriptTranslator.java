@@ -101,6 +101,7 @@ import com.sun.tools.javac.tree.JCTree.JCTypeParameter;
 import com.sun.tools.javac.tree.JCTree.JCUnary;
 import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
 import com.sun.tools.javac.tree.JCTree.JCWhileLoop;
+import com.sun.tools.javac.tree.TreeInfo;
 import com.sun.tools.javac.tree.TreeScanner;
 
 /**
@@ -111,7 +112,11 @@ import com.sun.tools.javac.tree.TreeScanner;
  */
 public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 
-	private boolean skipTypeAnnotations = false;
+	/**
+	 * Tells if the type annotations should be omitted when printing variable
+	 * declarations.
+	 */
+	protected boolean skipTypeAnnotations = false;
 
 	/**
 	 * Creates a new TypeScript translator.
@@ -128,7 +133,16 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 	 */
 	public Java2TypeScriptTranslator(TranspilationHandler logHandler, JSweetContext context, JCCompilationUnit compilationUnit,
 			boolean preserveSourceLineNumbers) {
-		super(logHandler, context, compilationUnit, new Java2TypeScriptAdapter(), preserveSourceLineNumbers);
+		this(logHandler, context, compilationUnit, new Java2TypeScriptAdapter(), preserveSourceLineNumbers);
+	}
+
+	/**
+	 * Creates a new translator with the given adapter (for subclasses that
+	 * target another language).
+	 */
+	protected Java2TypeScriptTranslator(TranspilationHandler logHandler, JSweetContext context, JCCompilationUnit compilationUnit,
+			Java2TypeScriptAdapter adapter, boolean preserveSourceLineNumbers) {
+		super(logHandler, context, compilationUnit, adapter, preserveSourceLineNumbers);
 	}
 
 	/**
@@ -139,7 +153,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		return ".ts";
 	}
 
-	private static java.util.List<Class<?>> statementsWithNoSemis = Arrays
+	protected static java.util.List<Class<?>> statementsWithNoSemis = Arrays
 			.asList(new Class<?>[] { JCIf.class, JCForLoop.class, JCEnhancedForLoop.class, JCSwitch.class });
 
 	private List<String> compilationUnitMainCalls = new LinkedList<String>();
@@ -153,9 +167,11 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 
 	private void useModule(PackageSymbol targetPackage, JCTree sourceTree, String targetName, String moduleName) {
 		if (context.useModules) {
-			context.packageDependencies.add(targetPackage);
-			context.packageDependencies.add(compilationUnit.packge);
-			context.packageDependencies.addEdge(compilationUnit.packge, targetPackage);
+			synchronized (context.packageDependencies) {
+				context.packageDependencies.add(targetPackage);
+				context.packageDependencies.add(compilationUnit.packge);
+				context.packageDependencies.addEdge(compilationUnit.packge, targetPackage);
+			}
 		}
 		context.registerUsedModule(moduleName);
 		Set<String> importedNames = context.getImportedNames(compilationUnit.packge);
@@ -171,7 +187,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		if (parentPackage == null) {
 			return;
 		}
-		if (Util.hasAnnotationType(parentPackage, JSweetConfig.ANNOTATION_ROOT)) {
+		if (context.hasAnnotationType(parentPackage, JSweetConfig.ANNOTATION_ROOT)) {
 			report(topLevel.getPackageName(), JSweetProblem.ENCLOSED_ROOT_PACKAGES, rootPackage.getQualifiedName().toString(),
 					parentPackage.getQualifiedName().toString());
 		}
@@ -258,8 +274,8 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 						JCFieldAccess qualified = (JCFieldAccess) tree;
 						if (qualified.sym != null) {
 							// regular import case (qualified.sym is a package)
-							if (Util.hasAnnotationType(qualified.sym, JSweetConfig.ANNOTATION_MODULE)) {
-								String actualName = Util.getAnnotationValue(qualified.sym, JSweetConfig.ANNOTATION_MODULE, null);
+							if (context.hasAnnotationType(qualified.sym, JSweetConfig.ANNOTATION_MODULE)) {
+								String actualName = context.getAnnotationValue(qualified.sym, JSweetConfig.ANNOTATION_MODULE, null);
 								useModule(null, importDecl, qualified.name.toString(), actualName);
 							}
 						} else {
@@ -270,8 +286,8 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 									try {
 										for (Symbol importedMember : qualifier.sym.getEnclosedElements()) {
 											if (qualified.name.equals(importedMember.getSimpleName())) {
-												if (Util.hasAnnotationType(importedMember, JSweetConfig.ANNOTATION_MODULE)) {
-													String actualName = Util.getAnnotationValue(importedMember, JSweetConfig.ANNOTATION_MODULE, null);
+												if (context.hasAnnotationType(importedMember, JSweetConfig.ANNOTATION_MODULE)) {
+													String actualName = context.getAnnotationValue(importedMember, JSweetConfig.ANNOTATION_MODULE, null);
 													useModule(null, importDecl, importedMember.getSimpleName().toString(), actualName);
 													break;
 												}
@@ -397,7 +413,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			@Override
 			public void visitApply(JCMethodInvocation invocation) {
 				// TODO: same for static variables
-				if (invocation.meth instanceof JCIdent && JSweetConfig.TS_STRICT_MODE_KEYWORDS.contains(invocation.meth.toString().toLowerCase())) {
+				if (invocation.meth instanceof JCIdent && JSweetConfig.TS_STRICT_MODE_KEYWORDS.contains(((JCIdent) invocation.meth).name.toString().toLowerCase())) {
 					PackageSymbol invocationPackage = (PackageSymbol) ((JCIdent) invocation.meth).sym.getEnclosingElement().getEnclosingElement();
 					String rootRelativeInvocationPackageName = Util.getRootRelativeName(invocationPackage);
 					if (rootRelativeInvocationPackageName.indexOf('.') == -1) {
@@ -423,7 +439,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		inlinedModuleScanner.scan(compilationUnit);
 
 		if (!globalModule && !context.useModules) {
-			printIndent().print("module ").print(rootRelativePackageName).print(" {").startIndent().println();
+			printNamespaceBegin(rootRelativePackageName);
 		}
 
 		compilationUnitMainCalls.clear();
@@ -431,17 +447,18 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		for (JCTree def : topLevel.defs) {
 			mainMethod = null;
 
+			Position mark = mark();
 			printIndent();
 			int pos = getCurrentPosition();
 			print(def);
 			if (getCurrentPosition() == pos) {
-				removeLastIndent();
+				resetTo(mark);
 				continue;
 			}
 			println().println();
 		}
 		if (!globalModule && !context.useModules) {
-			removeLastChar().endIndent().printIndent().print("}");
+			printNamespaceEnd(rootRelativePackageName);
 		}
 
 		if (footer.length() > 0) {
@@ -453,6 +470,28 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		globalModule = false;
 	}
 
+	/**
+	 * Prints the beginning of the namespace that holds the declarations of a
+	 * compilation unit (when not using modules).
+	 * 
+	 * @param namespaceName
+	 *            the qualified name of the namespace
+	 */
+	protected void printNamespaceBegin(String namespaceName) {
+		printIndent().print("module ").print(namespaceName).print(" {").startIndent().println();
+	}
+
+	/**
+	 * Prints the end of the namespace that holds the declarations of a
+	 * compilation unit (when not using modules).
+	 * 
+	 * @param namespaceName
+	 *            the qualified name of the namespace
+	 */
+	protected void printNamespaceEnd(String namespaceName) {
+		removeLastChar().endIndent().printIndent().print("}");
+	}
+
 	private boolean interfaceScope = false;
 
 	private boolean enumScope = false;
@@ -468,7 +507,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			return;
 		}
 
-		declareClassScope = Util.hasAnnotationType(classdecl.sym, JSweetConfig.ANNOTATION_AMBIENT);
+		declareClassScope = context.hasAnnotationType(classdecl.sym, JSweetConfig.ANNOTATION_AMBIENT);
 		interfaceScope = false;
 		removedSuperclass = false;
 		enumScope = false;
@@ -552,30 +591,39 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		}
 
 		if (mainMethod != null && mainMethod.getParameters().size() < 2) {
-			String mainClassName = getRootRelativeName(classdecl.sym);
-			if (context.useModules) {
-				int dotIndex = mainClassName.lastIndexOf(".");
-				mainClassName = mainClassName.substring(dotIndex + 1);
-			}
-			if (globals) {
-				int dotIndex = mainClassName.lastIndexOf(".");
-				if (dotIndex == -1) {
-					mainClassName = "";
-				} else {
-					mainClassName = mainClassName.substring(0, dotIndex);
-				}
-			}
+			addMainMethodCall(classdecl, mainMethod);
+		}
 
-			String mainMethodQualifier = mainClassName;
-			if (!isBlank(mainClassName)) {
-				mainMethodQualifier = mainClassName + ".";
+		interfaceScope = false;
+	}
+
+	/**
+	 * Registers a call to the given main method, to be printed at the end of
+	 * the compilation unit.
+	 */
+	protected void addMainMethodCall(JCClassDecl classdecl, JCMethodDecl mainMethod) {
+		boolean globals = JSweetConfig.GLOBALS_CLASS_NAME.equals(classdecl.name.toString());
+		String mainClassName = getRootRelativeName(classdecl.sym);
+		if (context.useModules) {
+			int dotIndex = mainClassName.lastIndexOf(".");
+			mainClassName = mainClassName.substring(dotIndex + 1);
+		}
+		if (globals) {
+			int dotIndex = mainClassName.lastIndexOf(".");
+			if (dotIndex == -1) {
+				mainClassName = "";
+			} else {
+				mainClassName = mainClassName.substring(0, dotIndex);
 			}
-			context.entryFiles.add(new File(compilationUnit.sourcefile.getName()));
-			compilationUnitMainCalls
-					.add(mainMethodQualifier + JSweetConfig.MAIN_FUNCTION_NAME + "(" + (mainMethod.getParameters().isEmpty() ? "" : "null") + ");");
 		}
 
-		interfaceScope = false;
+		String mainMethodQualifier = mainClassName;
+		if (!isBlank(mainClassName)) {
+			mainMethodQualifier = mainClassName + ".";
+		}
+		context.entryFiles.add(new File(compilationUnit.sourcefile.getName()));
+		compilationUnitMainCalls
+				.add(mainMethodQualifier + JSweetConfig.MAIN_FUNCTION_NAME + "(" + (mainMethod.getParameters().isEmpty() ? "" : "null") + ");");
 	}
 
 	private String getTSMethodName(JCMethodDecl methodDecl) {
@@ -638,7 +686,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			}
 		}
 
-		boolean ambient = Util.hasAnnotationType(methodDecl.sym, JSweetConfig.ANNOTATION_AMBIENT);
+		boolean ambient = context.hasAnnotationType(methodDecl.sym, JSweetConfig.ANNOTATION_AMBIENT);
 
 		if (methodDecl.mods.getFlags().contains(Modifier.NATIVE)) {
 			if (!declareClassScope && !ambient) {
@@ -658,7 +706,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			report(methodDecl, methodDecl.name, JSweetProblem.METHOD_CONFLICTS_FIELD, methodDecl.name, v.owner);
 		}
 		if (JSweetConfig.MAIN_FUNCTION_NAME.equals(methodDecl.name.toString()) && methodDecl.mods.getFlags().contains(Modifier.STATIC)
-				&& !Util.hasAnnotationType(methodDecl.sym, JSweetConfig.ANNOTATION_DISABLED)) {
+				&& !context.hasAnnotationType(methodDecl.sym, JSweetConfig.ANNOTATION_DISABLED)) {
 			mainMethod = methodDecl;
 		}
 		if (methodDecl.pos == parent.pos) {
@@ -753,11 +801,39 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 				}
 				print(";");
 			} else {
-				print(" ").print(methodDecl.getBody());
+				print(" ");
+				printMethodBody(methodDecl.getBody());
 			}
 		}
 	}
 
+	/**
+	 * Prints the given method body. The identifiers generated for the local
+	 * variables (<code>__it_</code>, <code>__expr_</code>) and the call
+	 * targets (<code>__jswref_</code>) are numbered from zero within each
+	 * method, so that the code generated for a method only depends on that
+	 * method.
+	 */
+	protected AbstractTreePrinter printMethodBody(JCBlock body) {
+		LocalIds classLocalIds = localIds;
+		localIds = new LocalIds();
+		try {
+			return print(body);
+		} finally {
+			localIds = classLocalIds;
+		}
+	}
+
+	/**
+	 * The counters of the generated local identifiers.
+	 */
+	private static class LocalIds {
+		long foreachVarCounter = 0;
+		long applyTargetRefCounter = 0;
+	}
+
+	private LocalIds localIds = new LocalIds();
+
 	@Override
 	public void visitBlock(JCBlock block) {
 		JCTree parent = getParent();
@@ -790,19 +866,16 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		if (!globals) {
 			print("{").println().startIndent();
 		}
-
-		for (JCStatement statement : block.stats) {
-			printIndent();
-			int pos = getCurrentPosition();
-			print(statement);
-			if (getCurrentPosition() == pos) {
-				removeLastIndent();
-				continue;
-			}
-			if (!statementsWithNoSemis.contains(statement.getClass())) {
-				print(";");
+		if (initializer) {
+			LocalIds classLocalIds = localIds;
+			localIds = new LocalIds();
+			try {
+				printBlockStatements(block.stats);
+			} finally {
+				localIds = classLocalIds;
 			}
-			println();
+		} else {
+			printBlockStatements(block.stats);
 		}
 		if (!globals) {
 			endIndent().printIndent().print("}");
@@ -817,6 +890,25 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		}
 	}
 
+	/**
+	 * Prints the given statements of a block, one per line.
+	 */
+	protected void printBlockStatements(List<JCStatement> statements) {
+		for (JCStatement statement : statements) {
+			printIndent();
+			int pos = getCurrentPosition();
+			print(statement);
+			if (getCurrentPosition() == pos) {
+				removeLastIndent();
+				continue;
+			}
+			if (!statementsWithNoSemis.contains(statement.getClass())) {
+				print(";");
+			}
+			println();
+		}
+	}
+
 	@Override
 	public void visitVarDef(JCVariableDecl varDecl) {
 		if (getParent().getKind() == Kind.ENUM) {
@@ -826,7 +918,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			String name = varDecl.name.toString();
 
 			if (parent instanceof JCClassDecl) {
-				MethodSymbol m = Util.findMethodDeclarationInType(context.types, ((JCClassDecl) parent).sym, name, null);
+				MethodSymbol m = context.findMethodDeclarationInType(((JCClassDecl) parent).sym, varDecl.name, null);
 				if (m != null) {
 					report(varDecl, varDecl.name, JSweetProblem.FIELD_CONFLICTS_METHOD, name, m.owner);
 				}
@@ -864,11 +956,11 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 				}
 			}
 			if (!interfaceScope && parent instanceof JCClassDecl) {
-				if (Util.hasAnnotationType(varDecl.sym, JSweetConfig.ANNOTATION_OPTIONAL)) {
+				if (context.hasAnnotationType(varDecl.sym, JSweetConfig.ANNOTATION_OPTIONAL)) {
 					report(varDecl, varDecl.name, JSweetProblem.USELESS_OPTIONAL_ANNOTATION, varDecl.name, ((JCClassDecl) parent).name);
 				}
 			}
-			boolean ambient = Util.hasAnnotationType(varDecl.sym, JSweetConfig.ANNOTATION_AMBIENT);
+			boolean ambient = context.hasAnnotationType(varDecl.sym, JSweetConfig.ANNOTATION_AMBIENT);
 			if (globals || !(parent instanceof JCClassDecl || parent instanceof JCMethodDecl || parent instanceof JCLambda)) {
 				if (globals) {
 					if (context.useModules) {
@@ -896,7 +988,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			}
 
 			printIdentifier(name);
-			if (interfaceScope && Util.hasAnnotationType(varDecl.sym, JSweetConfig.ANNOTATION_OPTIONAL)) {
+			if (interfaceScope && context.hasAnnotationType(varDecl.sym, JSweetConfig.ANNOTATION_OPTIONAL)) {
 				print("?");
 			}
 			if (!skipTypeAnnotations) {
@@ -945,7 +1037,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			name = getAdapter().getIdentifier(name);
 			if (context.useModules) {
 				if (!context.getImportedNames(compilationUnit.packge).contains(name)) {
-					print("import ").print(name).print(" = ").print(adaptedQualId).print(";");
+					printImportAlias(name, adaptedQualId);
 					context.registerImportedName(compilationUnit.packge, name);
 				}
 			} else {
@@ -957,12 +1049,24 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 					}
 					context.globalImports.add(name);
 				}
-				print("import ").print(name).print(" = ").print(adaptedQualId).print(";");
+				printImportAlias(name, adaptedQualId);
 			}
 		}
 
 	}
 
+	/**
+	 * Prints a local alias for an imported element.
+	 * 
+	 * @param name
+	 *            the local name
+	 * @param qualifiedName
+	 *            the qualified name of the imported element
+	 */
+	protected void printImportAlias(String name, String qualifiedName) {
+		print("import ").print(name).print(" = ").print(qualifiedName).print(";");
+	}
+
 	@Override
 	public void visitSelect(JCFieldAccess fieldAccess) {
 		if (!getAdapter().substituteFieldAccess(fieldAccess)) {
@@ -1011,13 +1115,10 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		return null;
 	}
 
-	private long applyTargetRefCounter = 0;
-
 	@Override
 	public void visitApply(JCMethodInvocation inv) {
 		if (!getAdapter().substituteMethodInvocation(inv)) {
-			String meth = inv.meth.toString();
-			String methName = meth.substring(meth.lastIndexOf('.') + 1);
+			String methName = TreeInfo.name(inv.meth).toString();
 			if (methName.equals("super") && removedSuperclass) {
 				return;
 			}
@@ -1030,7 +1131,8 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 
 			boolean anonymous = JSweetConfig.ANONYMOUS_FUNCTION_NAME.equals(methName) || JSweetConfig.ANONYMOUS_STATIC_FUNCTION_NAME.equals(methName)
 					|| JSweetConfig.NEW_FUNCTION_NAME.equals(methName);
-			boolean targetIsThisOrStaticImported = meth.startsWith(methName) || meth.startsWith("this.");
+			boolean targetIsThis = isThisSelect(inv.meth);
+			boolean targetIsThisOrStaticImported = inv.meth instanceof JCIdent || targetIsThis;
 
 			MethodType type = (MethodType) inv.meth.type;
 			MethodSymbol methSym = null;
@@ -1039,11 +1141,11 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			if (targetIsThisOrStaticImported) {
 				JCImport staticImport = getStaticImport(methName);
 				if (staticImport == null) {
-					methSym = Util.findMethodDeclarationInType(context.types, getParent(JCClassDecl.class).sym, methName, type);
+					methSym = context.findMethodDeclarationInType(getParent(JCClassDecl.class).sym, TreeInfo.name(inv.meth), type);
 					if (methSym != null) {
 						typeChecker.checkApply(inv, methSym);
 						if (!methSym.getModifiers().contains(Modifier.STATIC)) {
-							if (!meth.startsWith("this.")) {
+							if (!targetIsThis) {
 								print("this");
 								if (!anonymous) {
 									print(".");
@@ -1051,7 +1153,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 							}
 						} else {
 							if (!JSweetConfig.GLOBALS_CLASS_NAME.equals(methSym.owner.getSimpleName().toString())) {
-								print("" + methSym.owner.getSimpleName());
+								print(getTypeReferenceName(methSym.owner));
 								if (!anonymous) {
 									print(".");
 								}
@@ -1060,7 +1162,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 					}
 				} else {
 					JCFieldAccess staticFieldAccess = (JCFieldAccess) staticImport.qualid;
-					methSym = Util.findMethodDeclarationInType(context.types, staticFieldAccess.selected.type.tsym, methName, type);
+					methSym = context.findMethodDeclarationInType(staticFieldAccess.selected.type.tsym, TreeInfo.name(inv.meth), type);
 					// staticImported = true;
 					if (JSweetConfig.TS_STRICT_MODE_KEYWORDS.contains(methName.toLowerCase())) {
 						// if method is a reserved TS keyword, no "static
@@ -1079,7 +1181,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			} else {
 				if (inv.meth instanceof JCFieldAccess) {
 					JCExpression selected = ((JCFieldAccess) inv.meth).selected;
-					methSym = Util.findMethodDeclarationInType(context.types, selected.type.tsym, methName, type);
+					methSym = context.findMethodDeclarationInType(selected.type.tsym, TreeInfo.name(inv.meth), type);
 					if (methSym != null) {
 						typeChecker.checkApply(inv, methSym);
 					}
@@ -1102,9 +1204,9 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 				}
 			} else {
 				if (inv.meth instanceof JCFieldAccess && applyVarargs && !targetIsThisOrStaticImported && !isStatic) {
-					targetVarName = "this['__jswref_" + (applyTargetRefCounter++) + "']";
+					targetVarName = "this['__jswref_" + (localIds.applyTargetRefCounter++) + "']";
 					print("(");
-					print(targetVarName + " = ");
+					print(targetVarName).print(" = ");
 					print(((JCFieldAccess) inv.meth).selected);
 					print(").");
 					if (keywordHandled) {
@@ -1145,14 +1247,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 				print(".apply");
 			}
 
-			if (inv.typeargs != null && !inv.typeargs.isEmpty()) {
-				print("<");
-				for (JCExpression argument : inv.typeargs) {
-					getAdapter().substituteAndPrintType(argument).print(",");
-				}
-				removeLastChar();
-				print(">");
-			}
+			printInvocationTypeArguments(inv);
 
 			print("(");
 
@@ -1164,7 +1259,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 					contextVar = targetVarName;
 				}
 
-				print(contextVar + ", ");
+				print(contextVar).print(", ");
 				if (inv.args.size() > 1) {
 					print("[");
 				}
@@ -1184,7 +1279,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 					// we cast array to any[] to avoid concat error on
 					// different
 					// types
-					print("].concat(<any[]>");
+					print("].concat(").print(getTypeAssertion("any[]"));
 				}
 
 				print(inv.args.last());
@@ -1198,9 +1293,35 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		}
 	}
 
+	/**
+	 * Tells if the given method select is a member of <code>this</code> (the
+	 * leftmost expression of the selection is <code>this</code>).
+	 */
+	private boolean isThisSelect(JCExpression methodSelect) {
+		JCExpression expression = methodSelect;
+		while (expression instanceof JCFieldAccess) {
+			expression = ((JCFieldAccess) expression).selected;
+		}
+		return expression != methodSelect && expression instanceof JCIdent && ((JCIdent) expression).name == context.names._this;
+	}
+
+	/**
+	 * Prints the explicit type arguments of a method invocation, if any.
+	 */
+	protected void printInvocationTypeArguments(JCMethodInvocation inv) {
+		if (inv.typeargs != null && !inv.typeargs.isEmpty()) {
+			print("<");
+			for (JCExpression argument : inv.typeargs) {
+				getAdapter().substituteAndPrintType(argument).print(",");
+			}
+			removeLastChar();
+			print(">");
+		}
+	}
+
 	@Override
 	public void visitIdent(JCIdent ident) {
-		String name = ident.toString();
+		String name = ident.name.toString();
 		if (!getAdapter().substituteIdentifier(ident)) {
 			// add this of class name if ident is a field
 			if (ident.sym instanceof VarSymbol && !ident.sym.name.equals(context.names._this) && !ident.sym.name.equals(context.names._super)) {
@@ -1211,7 +1332,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 						if (!varSym.getModifiers().contains(Modifier.STATIC)) {
 							print("this.");
 						} else {
-							print(varSym.owner.getSimpleName() + ".");
+							print(getTypeReferenceName(varSym.owner)).print(".");
 						}
 					} else {
 						if (JSweetConfig.JS_KEYWORDS.contains(name)) {
@@ -1224,6 +1345,14 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		}
 	}
 
+	/**
+	 * Gets the name to be used to refer to the given type from the current
+	 * compilation unit.
+	 */
+	protected String getTypeReferenceName(Symbol type) {
+		return type.getSimpleName().toString();
+	}
+
 	@Override
 	public void visitTypeApply(JCTypeApply typeApply) {
 		getAdapter().substituteAndPrintType(typeApply);
@@ -1238,7 +1367,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		}
 		boolean isInterface = Util.isInterface(clazz);
 		if (newClass.def != null || isInterface) {
-			if (isInterface || Util.hasAnnotationType(newClass.clazz.type.tsym, JSweetConfig.ANNOTATION_OBJECT_TYPE)) {
+			if (isInterface || context.hasAnnotationType(newClass.clazz.type.tsym, JSweetConfig.ANNOTATION_OBJECT_TYPE)) {
 				print("{").println().startIndent();
 				if (newClass.def != null) {
 					for (JCTree m : newClass.def.getMembers()) {
@@ -1265,9 +1394,8 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 									statementPrinted = true;
 								} else if (s instanceof JCExpressionStatement && ((JCExpressionStatement) s).expr instanceof JCMethodInvocation) {
 									JCMethodInvocation invocation = (JCMethodInvocation) ((JCExpressionStatement) s).expr;
-									String meth = invocation.meth.toString();
-									if (meth.equals(JSweetConfig.INDEXED_SET_FUCTION_NAME)
-											|| meth.equals(JSweetConfig.UTIL_CLASSNAME + "." + JSweetConfig.INDEXED_SET_FUCTION_NAME)) {
+									if (getAdapter().matchesQualifiedName(invocation.meth, JSweetConfig.INDEXED_SET_FUCTION_NAME)
+											|| getAdapter().matchesQualifiedName(invocation.meth, JSweetConfig.UTIL_CLASSNAME + "." + JSweetConfig.INDEXED_SET_FUCTION_NAME)) {
 										if (invocation.getArguments().size() == 3) {
 											if ("this".equals(invocation.getArguments().get(0).toString())) {
 												printIndent().print(invocation.args.tail.head).print(": ").print(invocation.args.tail.tail.head).print(",")
@@ -1289,7 +1417,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 							for (Symbol s : clazz.getEnclosedElements()) {
 								if (s instanceof VarSymbol) {
 									if (!initializedVars.contains(s)) {
-										if (!Util.hasAnnotationType(s, JSweetConfig.ANNOTATION_OPTIONAL)) {
+										if (!context.hasAnnotationType(s, JSweetConfig.ANNOTATION_OPTIONAL)) {
 											report(m, JSweetProblem.UNINITIALIZED_FIELD, s);
 										}
 									}
@@ -1330,9 +1458,8 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 								currentStatementPrinted = true;
 							} else if (s instanceof JCExpressionStatement && ((JCExpressionStatement) s).expr instanceof JCMethodInvocation) {
 								JCMethodInvocation invocation = (JCMethodInvocation) ((JCExpressionStatement) s).expr;
-								String meth = invocation.meth.toString();
-								if (meth.equals(JSweetConfig.INDEXED_SET_FUCTION_NAME)
-										|| meth.equals(JSweetConfig.UTIL_CLASSNAME + "." + JSweetConfig.INDEXED_SET_FUCTION_NAME)) {
+								if (getAdapter().matchesQualifiedName(invocation.meth, JSweetConfig.INDEXED_SET_FUCTION_NAME)
+										|| getAdapter().matchesQualifiedName(invocation.meth, JSweetConfig.UTIL_CLASSNAME + "." + JSweetConfig.INDEXED_SET_FUCTION_NAME)) {
 									if (invocation.getArguments().size() == 3) {
 										if ("this".equals(invocation.getArguments().get(0).toString())) {
 											printIndent().print("target[").print(invocation.args.tail.head).print("]").print(" = ")
@@ -1357,12 +1484,12 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 				print("new ").print(newClass.clazz).print("(").printArgList(newClass.args).print("))");
 			}
 		} else {
-			if (Util.hasAnnotationType(newClass.clazz.type.tsym, JSweetConfig.ANNOTATION_ERASED)) {
+			if (context.hasAnnotationType(newClass.clazz.type.tsym, JSweetConfig.ANNOTATION_ERASED)) {
 				if (newClass.args.length() != 1) {
 					report(newClass, JSweetProblem.ERASED_CLASS_CONSTRUCTOR);
 				}
 				print("(").print(newClass.args.head).print(")");
-			} else if (Util.hasAnnotationType(newClass.clazz.type.tsym, JSweetConfig.ANNOTATION_OBJECT_TYPE)) {
+			} else if (context.hasAnnotationType(newClass.clazz.type.tsym, JSweetConfig.ANNOTATION_OBJECT_TYPE)) {
 				print("{}");
 			} else {
 				if (!getAdapter().substituteNewClass(newClass)) {
@@ -1392,11 +1519,11 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 
 	@Override
 	public void visitForeachLoop(JCEnhancedForLoop foreachLoop) {
-		String itVarName = "__it_" + Util.getId();
-		String exprVarName = "__expr_" + Util.getId();
-		print("var " + exprVarName + " = ").print(foreachLoop.expr).print("; ");
-		print("for(var " + itVarName + "=0;" + itVarName + "<" + exprVarName + ".length;" + itVarName + "++) { ")
-				.print("var " + foreachLoop.var.name.toString() + "=" + exprVarName + "[" + itVarName + "];").println();
+		String itVarName = "__it_" + (localIds.foreachVarCounter++);
+		String exprVarName = "__expr_" + (localIds.foreachVarCounter++);
+		print("var ").print(exprVarName).print(" = ").print(foreachLoop.expr).print("; ");
+		print("for(var ").print(itVarName).print("=0;").print(itVarName).print("<").print(exprVarName).print(".length;").print(itVarName).print("++) { ");
+		print("var ").print(foreachLoop.var.name.toString()).print("=").print(exprVarName).print("[").print(itVarName).print("];").println();
 		startIndent().printIndent().print(foreachLoop.body);
 		endIndent().print("}");
 	}
@@ -1445,7 +1572,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 	@Override
 	public void visitAssignop(JCAssignOp op) {
 		print(op.lhs);
-		print(op.operator.name.toString() + "=");
+		print(op.operator.name.toString()).print("=");
 		print(op.rhs);
 	}
 
@@ -1627,25 +1754,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 
 	@Override
 	public void visitLambda(JCLambda lamba) {
-		Map<String, VarSymbol> varAccesses = new HashMap<>();
-		Util.fillAllVariableAccesses(varAccesses, lamba);
-		Collection<VarSymbol> finalVars = new ArrayList<>(varAccesses.values());
-		if (!varAccesses.isEmpty()) {
-			Map<String, VarSymbol> varDefs = new HashMap<>();
-			int parentIndex = getStack().size() - 2;
-			int i = parentIndex;
-			JCStatement statement = null;
-			while (i > 0 && getStack().get(i).getKind() != Kind.LAMBDA_EXPRESSION && getStack().get(i).getKind() != Kind.METHOD) {
-				if (statement == null && getStack().get(i) instanceof JCStatement) {
-					statement = (JCStatement) getStack().get(i);
-				}
-				i--;
-			}
-			if (i >= 0 && getStack().get(i).getKind() != Kind.LAMBDA_EXPRESSION && statement != null) {
-				Util.fillAllVariablesInScope(varDefs, getStack(), lamba, getStack().get(i));
-			}
-			finalVars.retainAll(varDefs.values());
-		}
+		Collection<VarSymbol> finalVars = getCapturedVariables(lamba);
 		if (!finalVars.isEmpty()) {
 			print("((");
 			for (VarSymbol var : finalVars) {
@@ -1669,6 +1778,34 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		}
 	}
 
+	/**
+	 * Gets the local variables of the enclosing method that are accessed by
+	 * the given lambda, and which value must be captured when the lambda is
+	 * created.
+	 */
+	protected Collection<VarSymbol> getCapturedVariables(JCLambda lamba) {
+		Map<String, VarSymbol> varAccesses = new HashMap<>();
+		Util.fillAllVariableAccesses(varAccesses, lamba);
+		Collection<VarSymbol> finalVars = new ArrayList<>(varAccesses.values());
+		if (!varAccesses.isEmpty()) {
+			Map<String, VarSymbol> varDefs = new HashMap<>();
+			int parentIndex = getStack().size() - 2;
+			int i = parentIndex;
+			JCStatement statement = null;
+			while (i > 0 && getStack().get(i).getKind() != Kind.LAMBDA_EXPRESSION && getStack().get(i).getKind() != Kind.METHOD) {
+				if (statement == null && getStack().get(i) instanceof JCStatement) {
+					statement = (JCStatement) getStack().get(i);
+				}
+				i--;
+			}
+			if (i >= 0 && getStack().get(i).getKind() != Kind.LAMBDA_EXPRESSION && statement != null) {
+				Util.fillAllVariablesInScope(varDefs, getStack(), lamba, getStack().get(i));
+			}
+			finalVars.retainAll(varDefs.values());
+		}
+		return finalVars;
+	}
+
 	@Override
 	public void visitReference(JCMemberReference memberReference) {
 		if (memberReference.sym instanceof MethodSymbol) {
@@ -1745,6 +1882,30 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		print("throw ").print(throwStatement.expr);
 	}
 
+	/**
+	 * Gets a type assertion (a cast) to the given type, as printed in the
+	 * target language.
+	 */
+	public String getTypeAssertion(String type) {
+		return "<" + type + ">";
+	}
+
+	/**
+	 * Gets a type annotation for a variable of the given type, as printed in
+	 * the target language.
+	 */
+	public String getTypeAnnotation(String type) {
+		return ": " + type;
+	}
+
+	/**
+	 * Gets the declaration of a variable that is defined externally, as
+	 * printed in the target language.
+	 */
+	public String getAmbientVariableDeclaration(String name) {
+		return "declare var " + name + ";";
+	}
+
 	@Override
 	public void visitAssert(JCAssert assertion) {
 		if (!context.ignoreAssertions) {
@@ -18,8 +18,14 @@ package org.jsweet.transpiler.util;
 
 import static org.jsweet.transpiler.util.Util.getRootRelativeName;
 
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
 import org.jsweet.transpiler.JSweetProblem;
 
+import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Type.MethodType;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.JCTree.JCArrayAccess;
@@ -35,6 +41,7 @@ import com.sun.tools.javac.tree.JCTree.JCNewClass;
 import com.sun.tools.javac.tree.JCTree.JCTypeApply;
 import com.sun.tools.javac.tree.JCTree.JCTypeCast;
 import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.tree.TreeInfo;
 import com.sun.tools.javac.util.Name;
 
 /**
@@ -45,8 +52,48 @@ import com.sun.tools.javac.util.Name;
  */
 public abstract class AbstractPrinterAdapter {
 
+	/**
+	 * A substitution of the invocations of a given method.
+	 * 
+	 * @see AbstractPrinterAdapter#registerMethodSubstitution(String, String,
+	 *      MethodSubstitution)
+	 */
+	@FunctionalInterface
+	public interface MethodSubstitution {
+		/**
+		 * Substitutes the given invocation.
+		 * 
+		 * @param invocation
+		 *            the invocation being printed
+		 * @param fieldAccess
+		 *            the method select if the invocation is qualified, null
+		 *            otherwise
+		 * @return true if substituted
+		 */
+		boolean substitute(JCMethodInvocation invocation, JCFieldAccess fieldAccess);
+	}
+
+	private static class MethodSubstitutionEntry {
+		final String ownerClassName;
+		final MethodSubstitution substitution;
+		Name ownerName;
+
+		MethodSubstitutionEntry(String ownerClassName, MethodSubstitution substitution) {
+			this.ownerClassName = ownerClassName;
+			this.substitution = substitution;
+		}
+	}
+
 	private AbstractTreePrinter printer;
 
+	private Map<String, LinkedList<MethodSubstitutionEntry>> methodSubstitutions = new HashMap<>();
+
+	private Map<Name, List<MethodSubstitutionEntry>> methodSubstitutionIndex;
+
+	private Map<String, Name> names = new HashMap<>();
+
+	private Map<String, Name[]> qualifiedNames = new HashMap<>();
+
 	/**
 	 * Reports a problem during the printing phase.
 	 * 
@@ -140,9 +187,82 @@ public abstract class AbstractPrinterAdapter {
 		}
 	}
 
+	/**
+	 * Tells if the given expression is an identifier or a field access that
+	 * matches the given qualified name as written in the source code (for
+	 * instance <code>"Globals.$get"</code>). The names are compared one by one,
+	 * so that the expression is not rendered.
+	 */
+	public boolean matchesQualifiedName(JCTree expression, String qualifiedName) {
+		Name[] names = getQualifiedName(qualifiedName);
+		JCTree tree = expression;
+		for (int i = names.length - 1; i > 0; i--) {
+			if (!(tree instanceof JCFieldAccess) || ((JCFieldAccess) tree).name != names[i]) {
+				return false;
+			}
+			tree = ((JCFieldAccess) tree).selected;
+		}
+		return tree instanceof JCIdent && ((JCIdent) tree).name == names[0];
+	}
+
+	/**
+	 * Tells if the given expression (an identifier or a field access) refers
+	 * to a field or a method of the given name, declared in the given class.
+	 * The expression is matched through its symbol, so that it is not
+	 * rendered.
+	 * 
+	 * @param expression
+	 *            the expression to be matched
+	 * @param ownerClassName
+	 *            the qualified name of the class declaring the member (null to
+	 *            match any class)
+	 * @param memberName
+	 *            the name of the member
+	 */
+	public boolean isMemberReference(JCTree expression, String ownerClassName, String memberName) {
+		Symbol symbol = TreeInfo.symbol(expression);
+		return symbol != null && symbol.name == getName(memberName)
+				&& (ownerClassName == null || (symbol.owner != null && symbol.owner.getQualifiedName() == getName(ownerClassName)));
+	}
+
+	/**
+	 * Tells if the given invocation invokes a method of the given name,
+	 * declared in the given class (null to match any class).
+	 * 
+	 * @see #isMemberReference(JCTree, String, String)
+	 */
+	public boolean isInvocationOf(JCMethodInvocation invocation, String ownerClassName, String methodName) {
+		return isMemberReference(invocation.meth, ownerClassName, methodName);
+	}
+
+	/**
+	 * Gets the compiler name for the given string (names are unique in the
+	 * compiler's name table, so that they can be compared by identity).
+	 */
+	protected Name getName(String name) {
+		Name result = names.get(name);
+		if (result == null) {
+			result = printer.getContext().getName(name);
+			names.put(name, result);
+		}
+		return result;
+	}
+
+	private Name[] getQualifiedName(String qualifiedName) {
+		Name[] result = qualifiedNames.get(qualifiedName);
+		if (result == null) {
+			String[] segments = qualifiedName.split("\\.");
+			result = new Name[segments.length];
+			for (int i = 0; i < segments.length; i++) {
+				result[i] = getName(segments[i]);
+			}
+			qualifiedNames.put(qualifiedName, result);
+		}
+		return result;
+	}
+
 	public boolean matchesWithResultType(JCMethodInvocation invocation, Class<?> resultClass, String methodName) {
-		String[] select = invocation.getMethodSelect().toString().split("\\.");
-		if (methodName.equals(select[select.length - 1]) && resultClass.getName().equals(((MethodType) invocation.getMethodSelect().type).restype.toString())) {
+		if (TreeInfo.name(invocation.getMethodSelect()) == getName(methodName) && resultClass.getName().equals(((MethodType) invocation.getMethodSelect().type).restype.toString())) {
 			return true;
 		} else {
 			return false;
@@ -225,16 +345,64 @@ public abstract class AbstractPrinterAdapter {
 	}
 
 	/**
-	 * Substitutes the value of a <em>method invocation</em> expression.
+	 * Substitutes the value of a <em>method invocation</em> expression. By
+	 * default, applies the substitutions registered for the invoked method.
 	 * 
 	 * @param invocation
 	 *            the invocation being printed
 	 * @return true if substituted
+	 * @see #registerMethodSubstitution(String, String, MethodSubstitution)
 	 */
 	public boolean substituteMethodInvocation(JCMethodInvocation invocation) {
+		if (methodSubstitutionIndex == null) {
+			methodSubstitutionIndex = new HashMap<>();
+			for (Map.Entry<String, LinkedList<MethodSubstitutionEntry>> e : methodSubstitutions.entrySet()) {
+				for (MethodSubstitutionEntry entry : e.getValue()) {
+					entry.ownerName = entry.ownerClassName == null ? null : getName(entry.ownerClassName);
+				}
+				methodSubstitutionIndex.put(getName(e.getKey()), e.getValue());
+			}
+		}
+		List<MethodSubstitutionEntry> entries = methodSubstitutionIndex.get(TreeInfo.name(invocation.meth));
+		if (entries == null) {
+			return false;
+		}
+		JCFieldAccess fieldAccess = invocation.meth instanceof JCFieldAccess ? (JCFieldAccess) invocation.meth : null;
+		for (MethodSubstitutionEntry entry : entries) {
+			if (fieldAccess == null || entry.ownerName == null || fieldAccess.selected.type.tsym.getQualifiedName() == entry.ownerName) {
+				if (entry.substitution.substitute(invocation, fieldAccess)) {
+					return true;
+				}
+			}
+		}
 		return false;
 	}
 
+	/**
+	 * Registers a substitution for the invocations of the given method. The
+	 * substitutions are indexed by method name, so that finding the
+	 * substitutions of an invocation does not depend on the number of
+	 * registered substitutions. When several substitutions match an
+	 * invocation, the last registered one is applied first (so that an
+	 * adapter can override the substitutions of its parent adapter), and the
+	 * next ones are applied only if it returns false.
+	 * 
+	 * @param ownerClassName
+	 *            the qualified name of the class declaring the method (null to
+	 *            match any class); the unqualified invocations, of statically
+	 *            imported or inherited methods, are matched on the method name
+	 *            only
+	 * @param methodName
+	 *            the name of the method
+	 * @param substitution
+	 *            the substitution
+	 * @see org.jsweet.transpiler.JSweetTranspiler#setTranslationCacheDirectory(java.io.File)
+	 */
+	public void registerMethodSubstitution(String ownerClassName, String methodName, MethodSubstitution substitution) {
+		methodSubstitutions.computeIfAbsent(methodName, n -> new LinkedList<>()).addFirst(new MethodSubstitutionEntry(ownerClassName, substitution));
+		methodSubstitutionIndex = null;
+	}
+
 	/**
 	 * Substitutes the value of a <em>field assignment</em> expression.
 	 * 
@@ -92,7 +92,16 @@ public abstract class AbstractTreePrinter extends AbstractTreeScanner {
 
 	private static final String INDENT = "    ";
 
-	private StringBuilder out = new StringBuilder();
+	private static final String[] INDENTS = new String[16];
+
+	static {
+		INDENTS[0] = "";
+		for (int i = 1; i < INDENTS.length; i++) {
+			INDENTS[i] = INDENTS[i - 1] + INDENT;
+		}
+	}
+
+	private OutputBuffer out = new OutputBuffer();
 
 	private int indent = 0;
 
@@ -137,6 +146,14 @@ public abstract class AbstractTreePrinter extends AbstractTreeScanner {
 		return out.toString();
 	}
 
+	/**
+	 * Gets the buffer holding the output of this printer, which can be written
+	 * directly to a file without building the output string.
+	 */
+	public OutputBuffer getOutputBuffer() {
+		return out;
+	}
+
 	/**
 	 * Print a given AST.
 	 */
@@ -154,12 +171,12 @@ public abstract class AbstractTreePrinter extends AbstractTreeScanner {
 			int line = compilationUnit.lineMap.getLineNumber(stack.peek().pos);
 			// adjusting line...
 			while (currentLine < line) {
-				out.append("\n");
+				out.append('\n');
 				currentColumn = 0;
 				currentLine++;
 			}
-			while (currentLine != 1 && currentLine > line && out.charAt(out.length() - 1) == '\n') {
-				out.deleteCharAt(out.length() - 1);
+			while (currentLine != 1 && currentLine > line && out.getLastChar() == '\n') {
+				out.truncate(out.length() - 1);
 				currentColumn = 0;
 				currentLine--;
 			}
@@ -192,10 +209,28 @@ public abstract class AbstractTreePrinter extends AbstractTreeScanner {
 	@Override
 	protected void onRollbacked(JCTree target) {
 		super.onRollbacked(target);
-		Position position = positionStack.peek();
-		out.delete(position.position, out.length());
-		currentColumn = position.column;
-		currentLine = position.line;
+		resetTo(positionStack.peek());
+	}
+
+	/**
+	 * Gets a checkpoint of the current output, so that the output printed from
+	 * now on can be undone with {@link #resetTo(Position)}. This is the
+	 * preferred way to print speculatively, since it does not involve any
+	 * exception.
+	 */
+	public Position mark() {
+		return new Position(out.mark(), currentLine, currentColumn);
+	}
+
+	/**
+	 * Removes the output printed since the given checkpoint was taken (see
+	 * {@link #mark()}).
+	 */
+	public AbstractTreePrinter resetTo(Position mark) {
+		out.truncate(mark.position);
+		currentLine = mark.line;
+		currentColumn = mark.column;
+		return this;
 	}
 
 	/**
@@ -218,15 +253,19 @@ public abstract class AbstractTreePrinter extends AbstractTreeScanner {
 	 * Gets the lastly printed character.
 	 */
 	public char getLastPrintedChar() {
-		return out.charAt(out.length() - 1);
+		return out.getLastChar();
 	}
 
 	/**
 	 * Prints an indentation for the current indentation value.
 	 */
 	public AbstractTreePrinter printIndent() {
-		for (int i = 0; i < indent; i++) {
-			out.append(INDENT);
+		if (indent < INDENTS.length) {
+			out.append(INDENTS[indent]);
+		} else {
+			for (int i = 0; i < indent; i++) {
+				out.append(INDENT);
+			}
 		}
 		return this;
 	}
@@ -278,7 +317,7 @@ public abstract class AbstractTreePrinter extends AbstractTreeScanner {
 	 * Removes the last output character.
 	 */
 	public AbstractTreePrinter removeLastChar() {
-		out.deleteCharAt(out.length() - 1);
+		out.truncate(out.length() - 1);
 		currentColumn--;
 		return this;
 	}
@@ -288,7 +327,7 @@ public abstract class AbstractTreePrinter extends AbstractTreeScanner {
 	 */
 	public AbstractTreePrinter removeLastChars(int count) {
 		if (count > 0) {
-			out.delete(out.length() - count, out.length());
+			out.truncate(out.length() - count);
 		}
 		currentColumn -= count;
 		return this;
@@ -307,11 +346,11 @@ public abstract class AbstractTreePrinter extends AbstractTreeScanner {
 	 */
 	public AbstractTreePrinter println() {
 		if (this.preserveSourceLineNumbers) {
-			out.append(" ");
+			out.append(' ');
 			currentColumn++;
 			return this;
 		}
-		out.append("\n");
+		out.append('\n');
 		currentLine++;
 		currentColumn = 0;
 		return this;
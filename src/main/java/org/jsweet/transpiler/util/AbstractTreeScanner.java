@@ -58,10 +58,14 @@ public abstract class AbstractTreeScanner extends TreeScanner {
 			if (name != null) {
 				e += name.length();
 			}
-			logHandler.report(problem,
-					new TranspilationHandler.SourcePosition(new File(compilationUnit.sourcefile.getName()), tree, s, e, diagnosticSource.getLineNumber(s),
-							diagnosticSource.getColumnNumber(s, false), diagnosticSource.getLineNumber(e), diagnosticSource.getColumnNumber(e, false)), problem
-							.getMessage(params));
+			TranspilationHandler.SourcePosition position;
+			// the source content is loaded through the shared file manager
+			synchronized (context.getCompilerLock()) {
+				position = new TranspilationHandler.SourcePosition(new File(compilationUnit.sourcefile.getName()), tree, s, e,
+						diagnosticSource.getLineNumber(s), diagnosticSource.getColumnNumber(s, false), diagnosticSource.getLineNumber(e),
+						diagnosticSource.getColumnNumber(e, false));
+			}
+			logHandler.report(problem, position, problem.getMessage(params));
 		}
 	}
 
@@ -77,6 +81,8 @@ public abstract class AbstractTreeScanner extends TreeScanner {
 
 	protected DiagnosticSource diagnosticSource;
 
+	private int visitedNodeCount = 0;
+
 	public AbstractTreeScanner(TranspilationHandler logHandler, JSweetContext context, JCCompilationUnit compilationUnit) {
 		this.logHandler = logHandler;
 		this.context = context;
@@ -92,6 +98,7 @@ public abstract class AbstractTreeScanner extends TreeScanner {
 		if (tree == null) {
 			return;
 		}
+		visitedNodeCount++;
 		enter(tree);
 		try {
 			tree.accept(this);
@@ -112,8 +119,15 @@ public abstract class AbstractTreeScanner extends TreeScanner {
 	protected void onRollbacked(JCTree target) {
 	}
 
+	private final RollbackException rollbackSignal = new RollbackException(null, null);
+
+	/**
+	 * Rollbacks the scanning up to the given target tree, which must be in the
+	 * current scanning stack. The rollback signal is preallocated and does not
+	 * capture any stack trace.
+	 */
 	protected void rollback(JCTree target, Consumer<JCTree> onRollbacked) {
-		throw new RollbackException(target, onRollbacked);
+		throw rollbackSignal.reset(target, onRollbacked);
 	}
 
 	protected void enter(JCTree tree) {
@@ -124,6 +138,13 @@ public abstract class AbstractTreeScanner extends TreeScanner {
 		stack.pop();
 	}
 
+	/**
+	 * Returns the number of trees scanned so far by this scanner.
+	 */
+	public int getVisitedNodeCount() {
+		return visitedNodeCount;
+	}
+
 	public Stack<JCTree> getStack() {
 		return this.stack;
 	}
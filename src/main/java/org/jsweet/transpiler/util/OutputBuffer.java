@@ -0,0 +1,198 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.transpiler.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A character buffer made of fixed-size chunks, used by the printers to build
+ * their output.
+ * 
+ * <p>
+ * Unlike a <code>StringBuilder</code>, the buffer never copies its content when
+ * growing, and its content can be written to a {@link Writer} without building
+ * a string first. The chunks are taken from a shared pool and given back when
+ * truncating or releasing the buffer, so that they can be reused by the next
+ * printed compilation units.
+ */
+public class OutputBuffer {
+
+	private static final int CHUNK_SHIFT = 13;
+
+	/**
+	 * The size of a chunk, in characters.
+	 */
+	public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private static final int MAX_POOLED_CHUNKS = 512;
+
+	private static final ConcurrentLinkedQueue<char[]> pool = new ConcurrentLinkedQueue<>();
+
+	private static final AtomicInteger pooledChunkCount = new AtomicInteger();
+
+	private final ArrayList<char[]> chunks = new ArrayList<>();
+
+	private int length = 0;
+
+	private static char[] takeChunk() {
+		char[] chunk = pool.poll();
+		if (chunk == null) {
+			return new char[CHUNK_SIZE];
+		}
+		pooledChunkCount.decrementAndGet();
+		return chunk;
+	}
+
+	private static void giveBackChunk(char[] chunk) {
+		if (pooledChunkCount.incrementAndGet() <= MAX_POOLED_CHUNKS) {
+			pool.offer(chunk);
+		} else {
+			pooledChunkCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Gets the number of characters in this buffer.
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Gets the character at the given index.
+	 */
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+		}
+		return chunks.get(index >>> CHUNK_SHIFT)[index & CHUNK_MASK];
+	}
+
+	/**
+	 * Gets the last character of this buffer.
+	 */
+	public char getLastChar() {
+		return charAt(length - 1);
+	}
+
+	/**
+	 * Appends a character.
+	 */
+	public OutputBuffer append(char c) {
+		int offset = length & CHUNK_MASK;
+		if (offset == 0 && (length >>> CHUNK_SHIFT) == chunks.size()) {
+			chunks.add(takeChunk());
+		}
+		chunks.get(length >>> CHUNK_SHIFT)[offset] = c;
+		length++;
+		return this;
+	}
+
+	/**
+	 * Appends a string.
+	 */
+	public OutputBuffer append(String string) {
+		int start = 0;
+		int end = string.length();
+		while (start < end) {
+			int offset = length & CHUNK_MASK;
+			if (offset == 0 && (length >>> CHUNK_SHIFT) == chunks.size()) {
+				chunks.add(takeChunk());
+			}
+			int count = Math.min(end - start, CHUNK_SIZE - offset);
+			string.getChars(start, start + count, chunks.get(length >>> CHUNK_SHIFT), offset);
+			start += count;
+			length += count;
+		}
+		return this;
+	}
+
+	/**
+	 * Gets the current position, to be used later with
+	 * {@link #truncate(int)}.
+	 */
+	public int mark() {
+		return length;
+	}
+
+	/**
+	 * Removes all the characters after the given position (typically returned
+	 * by {@link #mark()}). The chunks that are not used anymore are given back
+	 * to the pool.
+	 */
+	public OutputBuffer truncate(int position) {
+		if (position < 0 || position > length) {
+			throw new IndexOutOfBoundsException("position: " + position + ", length: " + length);
+		}
+		length = position;
+		int usedChunks = (length + CHUNK_MASK) >>> CHUNK_SHIFT;
+		for (int i = chunks.size() - 1; i >= usedChunks; i--) {
+			giveBackChunk(chunks.remove(i));
+		}
+		return this;
+	}
+
+	/**
+	 * Empties this buffer and gives all its chunks back to the pool. The
+	 * buffer can still be used afterwards.
+	 */
+	public void release() {
+		truncate(0);
+	}
+
+	/**
+	 * Writes the content of this buffer to the given writer.
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		int remaining = length;
+		for (char[] chunk : chunks) {
+			int count = Math.min(remaining, CHUNK_SIZE);
+			writer.write(chunk, 0, count);
+			remaining -= count;
+		}
+	}
+
+	/**
+	 * Appends the content of this buffer to the given string builder.
+	 */
+	public void appendTo(StringBuilder builder) {
+		builder.ensureCapacity(builder.length() + length);
+		int remaining = length;
+		for (char[] chunk : chunks) {
+			int count = Math.min(remaining, CHUNK_SIZE);
+			builder.append(chunk, 0, count);
+			remaining -= count;
+		}
+	}
+
+	/**
+	 * Gets the content of this buffer as a string.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(length);
+		appendTo(builder);
+		return builder.toString();
+	}
+
+}
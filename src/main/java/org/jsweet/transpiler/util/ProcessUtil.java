@@ -55,6 +55,18 @@ public class ProcessUtil {
 		}
 	}
 
+	/**
+	 * Gets the directory of a node package installed with npm (see
+	 * {@link #installNodePackage(String, boolean)} with the global option).
+	 */
+	public static File getGlobalNodeModuleDir(String nodePackageName) {
+		if (System.getProperty("os.name").startsWith("Windows")) {
+			return new File(NPM_DIR, "node_modules" + File.separator + nodePackageName);
+		} else {
+			return new File(NPM_DIR, "lib" + File.separator + "node_modules" + File.separator + nodePackageName);
+		}
+	}
+
 	/**
 	 * Tells if this node command is installed.
 	 */
@@ -23,6 +23,14 @@ import com.sun.tools.javac.tree.JCTree;
 /**
  * This exception can be thrown to rollback the scanning of an AST.
  * 
+ * <p>
+ * A rollback is a control-flow signal rather than an error, so this exception
+ * does not capture any stack trace. Scanners preallocate and reuse one
+ * instance (see {@link AbstractTreeScanner#rollback(JCTree, Consumer)}).
+ * Printers that only need to undo some output can use
+ * {@link AbstractTreePrinter#mark()} and
+ * {@link AbstractTreePrinter#resetTo(AbstractTreePrinter.Position)} instead.
+ * 
  * @author Renaud Pawlak
  */
 public class RollbackException extends RuntimeException {
@@ -41,9 +49,18 @@ public class RollbackException extends RuntimeException {
 	 *            the handler to be executed once rollbacked.
 	 */
 	public RollbackException(JCTree target, Consumer<JCTree> onRollbacked) {
-		super();
+		super(null, null, false, false);
+		this.target = target;
+		this.onRollbacked = onRollbacked;
+	}
+
+	/**
+	 * Retargets this exception so that it can be thrown again.
+	 */
+	RollbackException reset(JCTree target, Consumer<JCTree> onRollbacked) {
 		this.target = target;
 		this.onRollbacked = onRollbacked;
+		return this;
 	}
 
 	/**
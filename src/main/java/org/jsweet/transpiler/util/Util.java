@@ -21,6 +21,13 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -28,6 +35,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -70,6 +78,7 @@ import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
 import com.sun.tools.javac.tree.JCTree.JCMethodInvocation;
 import com.sun.tools.javac.tree.JCTree.JCStatement;
 import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.tree.TreeInfo;
 import com.sun.tools.javac.tree.TreeScanner;
 import com.sun.tools.javac.util.Name;
 
@@ -80,13 +89,58 @@ import com.sun.tools.javac.util.Name;
  */
 public class Util {
 
-	private static long id = 121;
+	private static final AtomicLong id = new AtomicLong(121);
 
 	/**
-	 * Returns a unique id (incremental).
+	 * Returns a unique id (incremental and safe for concurrent use).
 	 */
 	public static long getId() {
-		return id++;
+		return id.getAndIncrement();
+	}
+
+	/**
+	 * Returns the SHA-1 hash of the given string, as an hexadecimal string.
+	 */
+	public static String getHash(String content) {
+		try {
+			return toHexString(MessageDigest.getInstance("SHA-1").digest(content.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the SHA-1 hash of the given buffer's content, as an hexadecimal
+	 * string. The hash is the same as the one of the content string (see
+	 * {@link #getHash(String)}), but the content string is never built.
+	 */
+	public static String getHash(OutputBuffer content) {
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+			OutputStream nullOutputStream = new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+				}
+			};
+			try (Writer writer = new OutputStreamWriter(new DigestOutputStream(nullOutputStream, messageDigest), StandardCharsets.UTF_8)) {
+				content.writeTo(writer);
+			}
+			return toHexString(messageDigest.digest());
+		} catch (NoSuchAlgorithmException | IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String toHexString(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
 	}
 
 	/**
@@ -302,9 +356,7 @@ public class Util {
 	 * invocation.
 	 */
 	public static MethodSymbol findMethodDeclarationInType(Types types, TypeSymbol typeSymbol, JCMethodInvocation invocation) {
-		String meth = invocation.meth.toString();
-		String methName = meth.substring(meth.lastIndexOf('.') + 1);
-		return findMethodDeclarationInType(types, typeSymbol, methName, (MethodType) invocation.meth.type);
+		return findMethodDeclarationInType(types, typeSymbol, TreeInfo.name(invocation.meth).toString(), (MethodType) invocation.meth.type);
 	}
 
 	/**
@@ -320,8 +372,11 @@ public class Util {
 				if (methodType == null) {
 					return (MethodSymbol) element;
 				}
-				if (types.isSubSignature(methodType, ((MethodSymbol) element).type)) {
-					return (MethodSymbol) element;
+				// the types are the compiler lock (see JSweetContext#getCompilerLock())
+				synchronized (types) {
+					if (types.isSubSignature(methodType, ((MethodSymbol) element).type)) {
+						return (MethodSymbol) element;
+					}
 				}
 			}
 		}
@@ -622,7 +677,10 @@ public class Util {
 		if (to.equals(from)) {
 			return true;
 		} else {
-			return types.isAssignable(from.asType(), to.asType());
+			// the types are the compiler lock (see JSweetContext#getCompilerLock())
+			synchronized (types) {
+				return types.isAssignable(from.asType(), to.asType());
+			}
 		}
 	}
 
@@ -630,9 +688,12 @@ public class Util {
 	 * Tells if the given list contains an type which is assignable from type.
 	 */
 	public static boolean containsAssignableType(Types types, List<Type> list, Type type) {
-		for (Type t : list) {
-			if (types.isAssignable(t, type)) {
-				return true;
+		// the types are the compiler lock (see JSweetContext#getCompilerLock())
+		synchronized (types) {
+			for (Type t : list) {
+				if (types.isAssignable(t, type)) {
+					return true;
+				}
 			}
 		}
 		return false;
@@ -0,0 +1,175 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * The TypeScript compiler service used by the JSweet transpiler (see
+ * org.jsweet.transpiler.TscService).
+ * 
+ * Usage: node tsc-service.js <typescript module directory>
+ * 
+ * Each line read on stdin is a JSON request: {"id": <n>, "cwd": <dir>, "args":
+ * [<tsc command line arguments>]}. The service keeps the TypeScript program in
+ * memory between the requests and only emits the files that have changed (or
+ * which output is missing). Each request is answered with one JSON line on
+ * stdout: {"id": <n>, "diagnostics": [{"file", "line", "column", "message"}],
+ * "emittedFiles": [<file>]}, or {"id": <n>, "error": <message>}.
+ */
+
+var fs = require('fs');
+var path = require('path');
+var readline = require('readline');
+var ts = require(process.argv[2]);
+
+var currentDirectory = process.cwd();
+var rootFileNames = [];
+var options = {};
+var optionsKey = null;
+var service = null;
+// the versions and output file names of the emitted files, by file name
+var emittedVersions = {};
+
+function getScriptVersion(fileName) {
+	try {
+		var stats = fs.statSync(fileName);
+		return stats.mtime.getTime() + ':' + stats.size;
+	} catch (e) {
+		return '0';
+	}
+}
+
+var host = {
+	getScriptFileNames : function() {
+		return rootFileNames;
+	},
+	getScriptVersion : getScriptVersion,
+	getScriptSnapshot : function(fileName) {
+		if (!fs.existsSync(fileName)) {
+			return undefined;
+		}
+		return ts.ScriptSnapshot.fromString(fs.readFileSync(fileName).toString());
+	},
+	getCurrentDirectory : function() {
+		return currentDirectory;
+	},
+	getCompilationSettings : function() {
+		return options;
+	},
+	getDefaultLibFileName : function(options) {
+		return ts.getDefaultLibFilePath(options);
+	},
+	fileExists : function(fileName) {
+		return ts.sys.fileExists(fileName);
+	},
+	readFile : function(fileName) {
+		return ts.sys.readFile(fileName);
+	}
+};
+
+function toDiagnostic(diagnostic) {
+	var result = {
+		message : ts.flattenDiagnosticMessageText(diagnostic.messageText, '\n')
+	};
+	if (diagnostic.file) {
+		var position = diagnostic.file.getLineAndCharacterOfPosition(diagnostic.start);
+		result.file = diagnostic.file.fileName;
+		result.line = position.line + 1;
+		result.column = position.character + 1;
+	}
+	return result;
+}
+
+function compile(request) {
+	currentDirectory = request.cwd;
+	var commandLine = ts.parseCommandLine(request.args);
+	var diagnostics = commandLine.errors.slice();
+	var key = JSON.stringify(commandLine.options);
+	if (service === null || key !== optionsKey) {
+		// options changed: the program must be rebuilt and everything emitted
+		options = commandLine.options;
+		optionsKey = key;
+		emittedVersions = {};
+		service = ts.createLanguageService(host, ts.createDocumentRegistry());
+	}
+	rootFileNames = commandLine.fileNames.map(function(fileName) {
+		return path.resolve(currentDirectory, fileName);
+	});
+
+	diagnostics = diagnostics.concat(service.getCompilerOptionsDiagnostics());
+	var emittedFiles = [];
+	rootFileNames.forEach(function(fileName) {
+		diagnostics = diagnostics.concat(service.getSyntacticDiagnostics(fileName), service.getSemanticDiagnostics(fileName));
+		if (/\.d\.ts$/.test(fileName)) {
+			return;
+		}
+		var version = getScriptVersion(fileName);
+		var emitted = emittedVersions[fileName];
+		if (emitted && emitted.version === version && emitted.outputFileNames.every(function(outputFileName) {
+			return fs.existsSync(outputFileName);
+		})) {
+			return;
+		}
+		var output = service.getEmitOutput(fileName);
+		if (output.emitSkipped) {
+			return;
+		}
+		output.outputFiles.forEach(function(outputFile) {
+			mkdirs(path.dirname(outputFile.name));
+			fs.writeFileSync(outputFile.name, outputFile.text);
+			emittedFiles.push(outputFile.name);
+		});
+		emittedVersions[fileName] = {
+			version : version,
+			outputFileNames : output.outputFiles.map(function(outputFile) {
+				return outputFile.name;
+			})
+		};
+	});
+
+	return {
+		id : request.id,
+		diagnostics : diagnostics.filter(function(diagnostic) {
+			return diagnostic.category === ts.DiagnosticCategory.Error;
+		}).map(toDiagnostic),
+		emittedFiles : emittedFiles
+	};
+}
+
+function mkdirs(dir) {
+	if (!fs.existsSync(dir)) {
+		mkdirs(path.dirname(dir));
+		fs.mkdirSync(dir);
+	}
+}
+
+readline.createInterface({
+	input : process.stdin,
+	terminal : false
+}).on('line', function(line) {
+	var request = JSON.parse(line);
+	var response;
+	try {
+		response = compile(request);
+	} catch (e) {
+		response = {
+			id : request.id,
+			error : String(e && e.stack || e)
+		};
+	}
+	process.stdout.write(JSON.stringify(response) + '\n');
+}).on('close', function() {
+	process.exit(0);
+});
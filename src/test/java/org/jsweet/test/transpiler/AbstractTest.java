@@ -116,6 +116,29 @@ public class AbstractTest {
 		super();
 	}
 
+	/**
+	 * Gets an output directory for the current test.
+	 * 
+	 * @param name
+	 *            the name of the directory within the test's output directory,
+	 *            or null for the test's output directory itself
+	 */
+	protected File getTestOutputDir(String name) {
+		return new File(new File(TMPOUT_DIR), getCurrentTestName() + (name == null ? "" : "/" + name));
+	}
+
+	/**
+	 * Creates a new transpiler, independent from the shared one, which writes
+	 * in a clean TypeScript output directory and does not generate the
+	 * JavaScript files.
+	 */
+	protected JSweetTranspiler createTranspiler(File tsOutputDir) {
+		FileUtils.deleteQuietly(tsOutputDir);
+		JSweetTranspiler testTranspiler = new JSweetTranspiler(tsOutputDir, null, System.getProperty("java.class.path"));
+		testTranspiler.setGenerateJsFiles(false);
+		return testTranspiler;
+	}
+
 	protected SourceFile getSourceFile(Class<?> mainClass) {
 		return new SourceFile(new File(TEST_DIRECTORY_NAME + "/" + mainClass.getName().replace(".", "/") + ".java"));
 	}
@@ -0,0 +1,117 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.test.transpiler;
+
+import static java.util.Arrays.asList;
+import static org.jsweet.JSweetConfig.UTIL_CLASSNAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jsweet.transpiler.JSweetContext;
+import org.jsweet.transpiler.typescript.Java2TypeScriptAdapter;
+import org.jsweet.transpiler.typescript.Java2TypeScriptTranslator;
+import org.junit.Test;
+
+import com.sun.tools.javac.file.JavacFileManager;
+import com.sun.tools.javac.tree.JCTree.JCMethodInvocation;
+import com.sun.tools.javac.tree.TreeMaker;
+
+public class AdapterTests {
+
+	/**
+	 * An adapter that overrides the <code>$export</code> substitution of its
+	 * parent adapter with two substitutions.
+	 */
+	static class ExportAdapter extends Java2TypeScriptAdapter {
+		final List<String> calls = new ArrayList<>();
+		boolean firstSubstitutes = true;
+		boolean lastSubstitutes = true;
+
+		ExportAdapter() {
+			registerMethodSubstitution(UTIL_CLASSNAME, "$export", (invocation, fieldAccess) -> {
+				calls.add("first");
+				if (firstSubstitutes) {
+					getPrinter().print("first");
+				}
+				return firstSubstitutes;
+			});
+			registerMethodSubstitution(UTIL_CLASSNAME, "$export", (invocation, fieldAccess) -> {
+				calls.add("last");
+				if (lastSubstitutes) {
+					getPrinter().print("last");
+				}
+				return lastSubstitutes;
+			});
+		}
+	}
+
+	private JSweetContext context;
+	private TreeMaker make;
+	private Java2TypeScriptTranslator printer;
+
+	private ExportAdapter createAdapter() {
+		context = new JSweetContext();
+		JavacFileManager.preRegister(context);
+		make = TreeMaker.instance(context);
+		ExportAdapter adapter = new ExportAdapter();
+		printer = new Java2TypeScriptTranslator(null, context,
+				make.TopLevel(com.sun.tools.javac.util.List.nil(), null, com.sun.tools.javac.util.List.nil()), adapter, false) {
+		};
+		return adapter;
+	}
+
+	private String substitute(ExportAdapter adapter, String methodName) {
+		// an unqualified invocation, as with a static import
+		JCMethodInvocation invocation = make.Apply(com.sun.tools.javac.util.List.nil(), make.Ident(context.getName(methodName)),
+				com.sun.tools.javac.util.List.of(make.Literal("a"), make.Literal(1)));
+		adapter.calls.clear();
+		int start = printer.getOutput().length();
+		return adapter.substituteMethodInvocation(invocation) ? printer.getOutput().substring(start) : null;
+	}
+
+	@Test
+	public void testLastRegisteredSubstitutionWins() {
+		ExportAdapter adapter = createAdapter();
+		assertEquals("last", substitute(adapter, "$export"));
+		assertEquals(asList("last"), adapter.calls);
+	}
+
+	@Test
+	public void testSubstitutionFallsThroughOnFalse() {
+		ExportAdapter adapter = createAdapter();
+		adapter.lastSubstitutes = false;
+		assertEquals("first", substitute(adapter, "$export"));
+		assertEquals(asList("last", "first"), adapter.calls);
+
+		// the substitution of the parent adapter is applied last
+		adapter.firstSubstitutes = false;
+		String output = substitute(adapter, "$export");
+		assertEquals(asList("last", "first"), adapter.calls);
+		assertTrue(output.startsWith("_exportedVar_a = 1; "));
+	}
+
+	@Test
+	public void testSubstitutionsAreIndexedByName() {
+		ExportAdapter adapter = createAdapter();
+		assertEquals(null, substitute(adapter, "export"));
+		assertTrue(adapter.calls.isEmpty());
+	}
+
+}
@@ -16,11 +16,41 @@
  */
 package org.jsweet.test.transpiler;
 
+import static java.util.Arrays.asList;
+import static org.jsweet.JSweetConfig.ANNOTATION_MIXIN;
+import static org.jsweet.JSweetConfig.ANNOTATION_ROOT;
+import static org.jsweet.JSweetConfig.MAVEN_CANDIES_GROUP;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.jsweet.transpiler.ModuleKind;
+import org.jsweet.transpiler.candies.CandiesMerger;
+import org.jsweet.transpiler.candies.CandiesProcessor;
 import org.junit.Test;
 
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewMethod;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.ArrayMemberValue;
+import javassist.bytecode.annotation.ClassMemberValue;
+import javassist.bytecode.annotation.MemberValue;
+
 import source.candies.Angular;
 import source.candies.ExpressLib;
 import source.candies.GlobalsImport;
@@ -72,4 +102,167 @@ public class CandiesTests extends AbstractTest {
 		} , getSourceFile(ExpressLib.class));
 	}
 
+	@Test
+	public void testCandyJarIndex() throws Exception {
+		File workingDir = new File(new File(TMPOUT_DIR), getCurrentTestName());
+		FileUtils.deleteQuietly(workingDir);
+		CandiesProcessor candiesProcessor = new CandiesProcessor(workingDir, System.getProperty("java.class.path"));
+		candiesProcessor.processCandies();
+		File indexFile = new File(workingDir, CandiesProcessor.CANDY_JAR_INDEX_FILE_NAME);
+		assertTrue(indexFile.exists());
+		String index = FileUtils.readFileToString(indexFile);
+		assertTrue(index.contains("jsweet-core"));
+
+		// unchanged jars are not inspected again, so the index is not rewritten
+		indexFile.setLastModified(0);
+		candiesProcessor.touch();
+		candiesProcessor.processCandies();
+		assertEquals(0, indexFile.lastModified());
+		assertEquals(index, FileUtils.readFileToString(indexFile));
+	}
+
+	@Test
+	public void testCandiesMerger() throws Exception {
+		File workingDir = new File(new File(TMPOUT_DIR), getCurrentTestName());
+		FileUtils.deleteQuietly(workingDir);
+		File targetDir = new File(workingDir, "processed");
+		File candyJar = new File(workingDir, "candy.jar");
+		candyJar.getParentFile().mkdirs();
+
+		// a candy declaring two mixins for a target and one for another target
+		ClassPool pool = new ClassPool(true);
+		CtClass[] candyClasses = { makeClass(pool, "def.lib.A", "a"), makeClass(pool, "def.lib.B", "b"), //
+				makeMixin(pool, "def.lib.AMixin1", "def.lib.A", "a1"), makeMixin(pool, "def.lib.AMixin2", "def.lib.A", "a2"), //
+				makeMixin(pool, "def.lib.BMixin", "def.lib.B", "b1") };
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(candyJar))) {
+			for (CtClass candyClass : candyClasses) {
+				out.putNextEntry(new ZipEntry(candyClass.getName().replace('.', '/') + ".class"));
+				out.write(candyClass.toBytecode());
+				out.closeEntry();
+			}
+		}
+		CtClass packageInfo = pool.makeInterface("def.lib.package-info");
+		ClassFile packageInfoFile = packageInfo.getClassFile();
+		ArrayMemberValue mixins = new ArrayMemberValue(packageInfoFile.getConstPool());
+		mixins.setValue(new MemberValue[] { new ClassMemberValue("def.lib.AMixin1", packageInfoFile.getConstPool()),
+				new ClassMemberValue("def.lib.AMixin2", packageInfoFile.getConstPool()),
+				new ClassMemberValue("def.lib.BMixin", packageInfoFile.getConstPool()) });
+		annotate(packageInfoFile, ANNOTATION_ROOT, "mixins", mixins);
+		packageInfo.writeFile(targetDir.getPath());
+
+		Map<String, List<String>> merged = new CandiesMerger(targetDir, asList(candyJar)).merge();
+		assertEquals(asList("def.lib.AMixin1", "def.lib.AMixin2"), merged.get("def.lib.A"));
+		assertEquals(asList("def.lib.BMixin"), merged.get("def.lib.B"));
+
+		ClassPool mergedPool = new ClassPool(true);
+		mergedPool.appendClassPath(targetDir.getPath());
+		CtClass a = mergedPool.get("def.lib.A");
+		for (String method : new String[] { "a", "a1", "a2" }) {
+			assertTrue("missing method " + method, a.getDeclaredMethod(method) != null);
+		}
+		CtClass b = mergedPool.get("def.lib.B");
+		for (String method : new String[] { "b", "b1" }) {
+			assertTrue("missing method " + method, b.getDeclaredMethod(method) != null);
+		}
+	}
+
+	@Test
+	public void testCandiesUpdate() throws Exception {
+		File workingDir = getTestOutputDir(null);
+		FileUtils.deleteQuietly(workingDir);
+		File tsDefsDir = new File(workingDir, CandiesProcessor.CANDIES_TSDEFS_DIR_NAME);
+		File packageInfo = new File(workingDir, CandiesProcessor.CANDIES_PROCESSED_DIR_NAME + "/def/liba/package-info.class");
+		File sharedTsDef = new File(tsDefsDir, "src/typings/shared.d.ts");
+
+		// two candies holding the same file: the last one of the classpath wins
+		File libA1 = makeCandy(new File(workingDir, "lib-a-1.jar"), "lib-a", "1", "def.liba", //
+				"src/typings/lib-a/a.d.ts", "a", "src/typings/shared.d.ts", "a1");
+		File libB = makeCandy(new File(workingDir, "lib-b.jar"), "lib-b", "1", null, //
+				"src/typings/lib-b/b.d.ts", "b", "src/typings/shared.d.ts", "b");
+		processCandies(workingDir, libA1, libB);
+		assertTrue(new File(tsDefsDir, "src/typings/lib-a/a.d.ts").exists());
+		assertTrue(packageInfo.exists());
+		assertEquals("b", FileUtils.readFileToString(sharedTsDef));
+
+		// a changed candy and an added candy
+		File libA2 = makeCandy(new File(workingDir, "lib-a-2.jar"), "lib-a", "2", null, //
+				"src/typings/lib-a/a2.d.ts", "a2", "src/typings/shared.d.ts", "a2");
+		File libC = makeCandy(new File(workingDir, "lib-c.jar"), "lib-c", "1", null, //
+				"src/typings/lib-c/c.d.ts", "c");
+		processCandies(workingDir, libA2, libB, libC);
+		assertFalse(new File(tsDefsDir, "src/typings/lib-a/a.d.ts").exists());
+		assertFalse(packageInfo.exists());
+		assertTrue(new File(tsDefsDir, "src/typings/lib-a/a2.d.ts").exists());
+		assertTrue(new File(tsDefsDir, "src/typings/lib-b/b.d.ts").exists());
+		assertTrue(new File(tsDefsDir, "src/typings/lib-c/c.d.ts").exists());
+		assertEquals("b", FileUtils.readFileToString(sharedTsDef));
+
+		// a removed candy: the unchanged candies are not extracted again, but
+		// the files shared with the removed candy are
+		File cTsDef = new File(tsDefsDir, "src/typings/lib-c/c.d.ts");
+		assertTrue(cTsDef.setLastModified(0));
+		processCandies(workingDir, libA2, libC);
+		assertFalse(new File(tsDefsDir, "src/typings/lib-b/b.d.ts").exists());
+		assertTrue(new File(tsDefsDir, "src/typings/lib-a/a2.d.ts").exists());
+		assertEquals(0, cTsDef.lastModified());
+		assertEquals("a2", FileUtils.readFileToString(sharedTsDef));
+	}
+
+	private static void processCandies(File workingDir, File... candyJars) throws Exception {
+		String classPath = StringUtils.join(candyJars, File.pathSeparator);
+		new CandiesProcessor(workingDir, classPath).processCandies();
+	}
+
+	/**
+	 * Writes a candy jar holding the given TypeScript definitions (entry names
+	 * followed by their contents) and an optional lib package.
+	 */
+	private static File makeCandy(File jarFile, String name, String version, String libPackage, String... tsDefs) throws Exception {
+		jarFile.getParentFile().mkdirs();
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile), manifest)) {
+			out.putNextEntry(new ZipEntry("META-INF/maven/" + MAVEN_CANDIES_GROUP + "/"));
+			out.closeEntry();
+			out.putNextEntry(new ZipEntry("META-INF/maven/" + MAVEN_CANDIES_GROUP + "/" + name + "/pom.xml"));
+			out.write(("<project>\n<groupId>" + MAVEN_CANDIES_GROUP + "</groupId>\n<artifactId>" + name + "</artifactId>\n<version>" + version
+					+ "</version>\n<dependencies>\n</dependencies>\n</project>").getBytes());
+			out.closeEntry();
+			for (int i = 0; i < tsDefs.length; i += 2) {
+				out.putNextEntry(new ZipEntry(tsDefs[i]));
+				out.write(tsDefs[i + 1].getBytes());
+				out.closeEntry();
+			}
+			if (libPackage != null) {
+				CtClass packageInfo = new ClassPool(true).makeInterface(libPackage + ".package-info");
+				out.putNextEntry(new ZipEntry(libPackage.replace('.', '/') + "/package-info.class"));
+				out.write(packageInfo.toBytecode());
+				out.closeEntry();
+			}
+		}
+		return jarFile;
+	}
+
+	private static CtClass makeClass(ClassPool pool, String className, String methodName) throws Exception {
+		CtClass ctClass = pool.makeClass(className);
+		ctClass.addMethod(CtNewMethod.make("public void " + methodName + "() {}", ctClass));
+		return ctClass;
+	}
+
+	private static CtClass makeMixin(ClassPool pool, String className, String targetClassName, String methodName) throws Exception {
+		CtClass ctClass = makeClass(pool, className, methodName);
+		ClassFile classFile = ctClass.getClassFile();
+		annotate(classFile, ANNOTATION_MIXIN, "target", new ClassMemberValue(targetClassName, classFile.getConstPool()));
+		return ctClass;
+	}
+
+	private static void annotate(ClassFile classFile, String annotationName, String property, MemberValue value) {
+		ConstPool constPool = classFile.getConstPool();
+		AnnotationsAttribute annotations = new AnnotationsAttribute(constPool, AnnotationsAttribute.invisibleTag);
+		Annotation annotation = new Annotation(annotationName, constPool);
+		annotation.addMemberValue(property, value);
+		annotations.addAnnotation(annotation);
+		classFile.addAttribute(annotations);
+	}
+
 }
@@ -0,0 +1,102 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.test.transpiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.jsweet.JSweetDaemon;
+import org.jsweet.transpiler.JSweetProblem;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import source.overload.WrongOverload;
+
+public class DaemonTests extends AbstractTest {
+
+	@Test
+	public void testDaemon() throws Exception {
+		File testDir = getTestOutputDir(null);
+		FileUtils.deleteQuietly(testDir);
+		File daemonFile = new File(testDir, "daemon.json");
+		File inputDir = new File(testDir, "input");
+		FileUtils.copyFileToDirectory(getSourceFile(WrongOverload.class).getJavaFile(), new File(inputDir, "source/overload"));
+		String[] args = { "-i", inputDir.getPath(), "--tsout", new File(testDir, "out").getPath(), "--directJs" };
+
+		// no daemon running yet
+		assertNull(JSweetDaemon.forward(daemonFile, args, new TestTranspilationHandler()));
+
+		Thread daemonThread = new Thread(() -> {
+			try {
+				new JSweetDaemon(null, daemonFile).run();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		});
+		daemonThread.start();
+		try {
+			for (int i = 0; i < 100 && !daemonFile.exists(); i++) {
+				Thread.sleep(100);
+			}
+			assertTrue(daemonFile.exists());
+
+			// the problems are streamed to the client, and the exit code tells
+			// that the transpilation failed
+			TestTranspilationHandler logHandler = new TestTranspilationHandler();
+			assertEquals(Integer.valueOf(1), JSweetDaemon.forward(daemonFile, args, logHandler));
+			logHandler.assertReportedProblems(JSweetProblem.INVALID_OVERLOAD, JSweetProblem.INVALID_OVERLOAD);
+			assertTrue(logHandler.getReportedSourcePositions().get(0).getFile().getPath().endsWith("WrongOverload.java"));
+
+			// the requests the daemon cannot honor are left to the client
+			logHandler = new TestTranspilationHandler();
+			String[] verboseArgs = { "-v", "-i", inputDir.getPath(), "--tsout", new File(testDir, "out").getPath(), "--directJs" };
+			assertNull(JSweetDaemon.forward(daemonFile, verboseArgs, logHandler));
+			logHandler.assertReportedProblems();
+
+			// a request with a wrong secret is not answered
+			JsonObject info = new Gson().fromJson(FileUtils.readFileToString(daemonFile), JsonObject.class);
+			try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), info.get("port").getAsInt())) {
+				PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+				out.println("{\"secret\":\"wrong\",\"stop\":true}");
+				out.flush();
+				assertNull(new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine());
+			}
+			assertTrue(daemonThread.isAlive());
+		} finally {
+			assertTrue(JSweetDaemon.stop(daemonFile));
+			daemonThread.join(10000);
+		}
+		assertFalse(daemonThread.isAlive());
+		assertFalse(daemonFile.exists());
+		assertFalse(JSweetDaemon.stop(daemonFile));
+	}
+
+}
@@ -0,0 +1,146 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.test.transpiler;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jsweet.transpiler.JSweetContext;
+import org.jsweet.transpiler.util.AbstractPrinterAdapter;
+import org.jsweet.transpiler.util.AbstractTreePrinter;
+import org.jsweet.transpiler.util.AbstractTreePrinter.Position;
+import org.junit.Test;
+
+import com.sun.tools.javac.file.JavacFileManager;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCBinary;
+import com.sun.tools.javac.tree.JCTree.JCLiteral;
+import com.sun.tools.javac.tree.JCTree.JCParens;
+import com.sun.tools.javac.tree.TreeMaker;
+
+public class PrinterTests {
+
+	/**
+	 * Prints parentheses as brackets, binary operations between parentheses,
+	 * and literals as is. Printing the "x" literal rolls back to the enclosing
+	 * binary operation, and then from there to the enclosing parentheses.
+	 * Printing the "y" literal only rolls back to the binary operation.
+	 */
+	static class RollbackPrinter extends AbstractTreePrinter {
+		final List<String> rollbacks = new ArrayList<>();
+
+		RollbackPrinter(JSweetContext context, TreeMaker make) {
+			super(null, context, make.TopLevel(com.sun.tools.javac.util.List.nil(), null, com.sun.tools.javac.util.List.nil()),
+					new AbstractPrinterAdapter() {
+					}, false);
+		}
+
+		@Override
+		public String getTargetFilesExtension() {
+			return "test";
+		}
+
+		@Override
+		public void visitParens(JCParens parens) {
+			print("[").print(parens.expr).print("]");
+		}
+
+		@Override
+		public void visitBinary(JCBinary binary) {
+			print("(").print(binary.lhs).print(" + ").print(binary.rhs).print(")");
+		}
+
+		@Override
+		public void visitLiteral(JCLiteral literal) {
+			print(String.valueOf(literal.value));
+			if ("x".equals(literal.value)) {
+				rollback(getParent(JCBinary.class), binary -> {
+					rollbacks.add("binary");
+					print("retried");
+					// nested rollback, which reuses the signal being handled
+					rollback(getParent(JCParens.class), parens -> {
+						rollbacks.add("parens");
+						print("outer");
+					});
+				});
+			} else if ("y".equals(literal.value)) {
+				rollback(getParent(JCBinary.class), binary -> {
+					rollbacks.add("binary");
+					print("once");
+				});
+			}
+		}
+	}
+
+	private RollbackPrinter printer;
+	private TreeMaker make;
+
+	private void createPrinter() {
+		JSweetContext context = new JSweetContext();
+		JavacFileManager.preRegister(context);
+		make = TreeMaker.instance(context);
+		printer = new RollbackPrinter(context, make);
+	}
+
+	private JCTree parens(Object lhs, Object rhs) {
+		return make.Parens(make.Binary(JCTree.Tag.PLUS, make.Literal(lhs), make.Literal(rhs)));
+	}
+
+	@Test
+	public void testMarkAndResetTo() {
+		createPrinter();
+		printer.print("first").println();
+		Position mark = printer.mark();
+		printer.print("speculative").println().print(parens(1, 2));
+		assertEquals("first\nspeculative\n[(1 + 2)]", printer.getOutput());
+		assertEquals(3, printer.getCurrentLine());
+		assertEquals(9, printer.getCurrentColumn());
+
+		printer.resetTo(mark);
+		assertEquals("first\n", printer.getOutput());
+		assertEquals(2, printer.getCurrentLine());
+		assertEquals(0, printer.getCurrentColumn());
+
+		printer.print("kept");
+		assertEquals("first\nkept", printer.getOutput());
+		assertEquals(2, printer.getCurrentLine());
+		assertEquals(4, printer.getCurrentColumn());
+	}
+
+	@Test
+	public void testNestedRollback() {
+		createPrinter();
+		printer.print(parens("x", 1));
+		assertEquals(asList("binary", "parens"), printer.rollbacks);
+		assertEquals("outer", printer.getOutput());
+		assertEquals(5, printer.getCurrentColumn());
+		assertTrue(printer.getStack().isEmpty());
+		assertTrue(printer.getPositionStack().isEmpty());
+
+		// the reused signal still targets the right tree afterwards
+		printer.rollbacks.clear();
+		printer.print(parens("y", 1));
+		assertEquals(asList("binary"), printer.rollbacks);
+		assertEquals("outer[once]", printer.getOutput());
+		assertEquals(11, printer.getCurrentColumn());
+	}
+
+}
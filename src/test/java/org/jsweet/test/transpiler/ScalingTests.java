@@ -0,0 +1,138 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.test.transpiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+
+import org.jsweet.transpiler.JSweetTranspiler;
+import org.jsweet.transpiler.ModuleKind;
+import org.jsweet.transpiler.SourceFile;
+import org.jsweet.transpiler.TranspilationMetrics;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Transpiles synthetic projects (see {@link SyntheticProjectGenerator}) of
+ * increasing sizes, and reports the transpilation times and peak heap usages.
+ * 
+ * <p>
+ * The scaling tests are long, so they only run when the
+ * <code>jsweet.test.scaling</code> system property is set, to
+ * <code>true</code> for the default sizes, or to a comma-separated list of
+ * class counts (for instance <code>-Djsweet.test.scaling=100,1000</code>).
+ */
+public class ScalingTests extends AbstractTest {
+
+	private static final String SCALING_PROPERTY = "jsweet.test.scaling";
+
+	private static final int[] DEFAULT_CLASS_COUNTS = { 100, 1000, 10000 };
+
+	private int[] getClassCounts() {
+		String scaling = System.getProperty(SCALING_PROPERTY);
+		Assume.assumeTrue("scaling tests are disabled (set -D" + SCALING_PROPERTY + ")", scaling != null);
+		if ("true".equals(scaling) || scaling.isEmpty()) {
+			return DEFAULT_CLASS_COUNTS;
+		}
+		String[] counts = scaling.split(",");
+		int[] classCounts = new int[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			classCounts[i] = Integer.parseInt(counts[i].trim());
+		}
+		return classCounts;
+	}
+
+	private static void resetPeakHeapUsage() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private static long getPeakHeapUsage() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	private TranspilationMetrics transpile(SyntheticProjectGenerator generator, ModuleKind moduleKind, String name) throws Exception {
+		File projectDir = getTestOutputDir(name);
+		List<File> javaFiles = generator.generate(new File(projectDir, "src"));
+
+		TestTranspilationHandler logHandler = new TestTranspilationHandler();
+		JSweetTranspiler transpiler = createTranspiler(new File(projectDir, "ts"));
+		transpiler.setModuleKind(moduleKind);
+		System.gc();
+		resetPeakHeapUsage();
+		transpiler.transpile(logHandler, SourceFile.toSourceFiles(javaFiles));
+		long peakHeapUsage = getPeakHeapUsage();
+		logHandler.assertReportedProblems();
+
+		TranspilationMetrics metrics = transpiler.getLastMetrics();
+		logger.info(String.format("%s: %d classes, %d ms (%.2f ms/class), peak heap %d MB - %s", name, generator.getClassCount(), metrics.getDuration(),
+				(double) metrics.getDuration() / generator.getClassCount(), peakHeapUsage / (1024 * 1024), metrics));
+		return metrics;
+	}
+
+	@Test
+	public void testGeneratedProject() throws Exception {
+		SyntheticProjectGenerator generator = new SyntheticProjectGenerator();
+		generator.setClassCount(20);
+		generator.setClassesPerPackage(4);
+		generator.setPackageDepth(3);
+		generator.setOverloadDensity(0.5);
+		generator.setLambdaNesting(3);
+		TranspilationMetrics metrics = transpile(generator, ModuleKind.none, "namespaces");
+		// classes + globals + main
+		assertEquals(20 + 5 + 1, metrics.getFiles());
+
+		generator.setUseModuleAnnotation(true);
+		metrics = transpile(generator, ModuleKind.commonjs, "modules");
+		assertTrue(new File(getTestOutputDir("modules"), "ts/synthetic/g0/g0/p0/module.ts").exists());
+	}
+
+	@Test
+	public void testScalingWithNamespaces() throws Exception {
+		for (int classCount : getClassCounts()) {
+			SyntheticProjectGenerator generator = new SyntheticProjectGenerator();
+			generator.setClassCount(classCount);
+			transpile(generator, ModuleKind.none, "namespaces-" + classCount);
+		}
+	}
+
+	@Test
+	public void testScalingWithModules() throws Exception {
+		for (int classCount : getClassCounts()) {
+			SyntheticProjectGenerator generator = new SyntheticProjectGenerator();
+			generator.setClassCount(classCount);
+			generator.setUseModuleAnnotation(true);
+			transpile(generator, ModuleKind.commonjs, "modules-" + classCount);
+		}
+	}
+
+}
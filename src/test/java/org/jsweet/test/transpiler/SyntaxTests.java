@@ -34,6 +34,7 @@ import source.syntax.GlobalsInvocation;
 import source.syntax.IndexedAccessInStaticScope;
 import source.syntax.Keywords;
 import source.syntax.Labels;
+import source.syntax.MemberInvocations;
 import source.syntax.QualifiedNames;
 import source.syntax.References;
 import source.syntax.SpecialFunctions;
@@ -50,6 +51,14 @@ public class SyntaxTests extends AbstractTest {
 		} , getSourceFile(References.class));
 	}
 
+	@Test
+	public void testMemberInvocations() {
+		eval((logHandler, r) -> {
+			Assert.assertEquals("There should be no errors", 0, logHandler.reportedProblems.size());
+			Assert.assertEquals((Number) 4, r.get("count"));
+		} , getSourceFile(MemberInvocations.class));
+	}
+
 	@Test
 	public void testKeywords() {
 		transpile((logHandler) -> {
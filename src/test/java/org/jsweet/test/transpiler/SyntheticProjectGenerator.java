@@ -0,0 +1,380 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.test.transpiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Generates synthetic JSweet projects of any size, in order to test how the
+ * transpiler scales.
+ * 
+ * <p>
+ * The generated classes are spread over packages of a given depth. Each class
+ * depends on classes of other packages (always with a lower index, so that
+ * the dependency graph has no cycles), and can hold overloaded methods,
+ * nested lambdas, and accesses to the package globals and to an ambient
+ * library declared in a <code>@Module</code> package. A
+ * <code>synthetic.Main</code> class exports the computation of all the
+ * classes.
+ */
+public class SyntheticProjectGenerator {
+
+	/**
+	 * The root package of the generated projects.
+	 */
+	public static final String ROOT_PACKAGE = "synthetic";
+
+	/**
+	 * The name of the module declared by the ambient library package.
+	 */
+	public static final String LIBRARY_MODULE_NAME = "synthetic-lib";
+
+	private int classCount = 100;
+	private int classesPerPackage = 10;
+	private int packageDepth = 2;
+	private double overloadDensity = 0.2;
+	private int lambdaNesting = 2;
+	private int dependencyFanOut = 3;
+	private boolean useModuleAnnotation = false;
+	private boolean useGlobals = true;
+
+	private static class GeneratedClass {
+		final int index;
+		final String packageName;
+		final String name;
+
+		GeneratedClass(int index, String packageName) {
+			this.index = index;
+			this.packageName = packageName;
+			this.name = "C" + index;
+		}
+
+		String getQualifiedName() {
+			return packageName + "." + name;
+		}
+	}
+
+	/**
+	 * Generates the project's Java files in the given source directory (which
+	 * is cleaned first).
+	 * 
+	 * @return the generated files
+	 */
+	public List<File> generate(File sourceDir) throws IOException {
+		FileUtils.deleteQuietly(sourceDir);
+		List<File> files = new ArrayList<>();
+		int packageCount = Math.max(1, (classCount + classesPerPackage - 1) / classesPerPackage);
+		List<String> packageNames = new ArrayList<>();
+		for (int i = 0; i < packageCount; i++) {
+			packageNames.add(getPackageName(i));
+		}
+		List<GeneratedClass> classes = new ArrayList<>();
+		for (int i = 0; i < classCount; i++) {
+			classes.add(new GeneratedClass(i, packageNames.get(i / classesPerPackage)));
+		}
+
+		for (GeneratedClass generatedClass : classes) {
+			files.add(write(sourceDir, generatedClass.packageName, generatedClass.name, generateClass(generatedClass, classes)));
+		}
+		if (useGlobals) {
+			for (String packageName : packageNames) {
+				files.add(write(sourceDir, packageName, "Globals", generateGlobals(packageName)));
+			}
+		}
+		if (useModuleAnnotation) {
+			String libraryPackage = ROOT_PACKAGE + ".lib";
+			files.add(write(sourceDir, libraryPackage, "package-info", "@jsweet.lang.Module(\"" + LIBRARY_MODULE_NAME + "\")\npackage " + libraryPackage + ";\n"));
+			files.add(write(sourceDir, libraryPackage, "Lib", generateLibrary(libraryPackage)));
+		}
+		files.add(write(sourceDir, ROOT_PACKAGE, "Main", generateMain(classes)));
+		return files;
+	}
+
+	private String getPackageName(int index) {
+		StringBuilder sb = new StringBuilder(ROOT_PACKAGE);
+		// intermediate levels group the packages, the last level is unique
+		for (int level = 1; level < packageDepth; level++) {
+			sb.append(".g").append(index % (1 << level));
+		}
+		sb.append(".p").append(index);
+		return sb.toString();
+	}
+
+	private File write(File sourceDir, String packageName, String name, String content) throws IOException {
+		File file = new File(sourceDir, packageName.replace('.', File.separatorChar) + File.separator + name + ".java");
+		FileUtils.write(file, content);
+		return file;
+	}
+
+	private List<GeneratedClass> getDependencies(GeneratedClass generatedClass, List<GeneratedClass> classes) {
+		List<GeneratedClass> dependencies = new ArrayList<>();
+		// depend on the previous packages only (no cycles)
+		int firstIndexInPackage = (generatedClass.index / classesPerPackage) * classesPerPackage;
+		for (int i = 1; i <= dependencyFanOut && firstIndexInPackage - i * classesPerPackage + generatedClass.index % classesPerPackage >= 0; i++) {
+			dependencies.add(classes.get(firstIndexInPackage - i * classesPerPackage + generatedClass.index % classesPerPackage));
+		}
+		return dependencies;
+	}
+
+	private boolean hasOverloads(GeneratedClass generatedClass) {
+		// evenly spread the classes with overloads
+		return Math.floor((generatedClass.index + 1) * overloadDensity) > Math.floor(generatedClass.index * overloadDensity);
+	}
+
+	private String generateClass(GeneratedClass generatedClass, List<GeneratedClass> classes) {
+		List<GeneratedClass> dependencies = getDependencies(generatedClass, classes);
+		StringBuilder sb = new StringBuilder();
+		sb.append("package ").append(generatedClass.packageName).append(";\n\n");
+		if (lambdaNesting > 0) {
+			sb.append("import java.util.function.Function;\n");
+		}
+		for (GeneratedClass dependency : dependencies) {
+			sb.append("import ").append(dependency.getQualifiedName()).append(";\n");
+		}
+		if (useModuleAnnotation) {
+			sb.append("import ").append(ROOT_PACKAGE).append(".lib.Lib;\n");
+		}
+		sb.append("\npublic class ").append(generatedClass.name).append(" {\n\n");
+		sb.append("\tprivate int value;\n");
+		for (GeneratedClass dependency : dependencies) {
+			sb.append("\tprivate ").append(dependency.name).append(" dependency").append(dependency.index).append(";\n");
+		}
+		sb.append("\n\tpublic ").append(generatedClass.name).append("(int value) {\n");
+		sb.append("\t\tthis.value = value;\n");
+		for (GeneratedClass dependency : dependencies) {
+			sb.append("\t\tthis.dependency").append(dependency.index).append(" = new ").append(dependency.name).append("(value + 1);\n");
+		}
+		sb.append("\t}\n\n");
+		sb.append("\tpublic int getValue() {\n\t\treturn value;\n\t}\n\n");
+
+		sb.append("\tpublic int compute() {\n");
+		sb.append("\t\tint result = value;\n");
+		for (GeneratedClass dependency : dependencies) {
+			sb.append("\t\tresult += dependency").append(dependency.index).append(".getValue();\n");
+		}
+		if (lambdaNesting > 0) {
+			sb.append("\t\tresult += nestedLambdas(result);\n");
+		}
+		if (hasOverloads(generatedClass)) {
+			sb.append("\t\tif (m() != null) {\n\t\t\tresult++;\n\t\t}\n");
+		}
+		if (useGlobals) {
+			sb.append("\t\tresult += Globals.next();\n");
+		}
+		if (useModuleAnnotation) {
+			sb.append("\t\tresult += Lib.compute(result);\n");
+		}
+		sb.append("\t\treturn result;\n");
+		sb.append("\t}\n");
+
+		if (hasOverloads(generatedClass)) {
+			sb.append("\n\tpublic String m() {\n\t\treturn m(\"").append(generatedClass.name).append("\");\n\t}\n");
+			sb.append("\n\tpublic String m(String s) {\n\t\treturn m(s, ").append(generatedClass.index).append(");\n\t}\n");
+			sb.append("\n\tpublic String m(String s, int i) {\n\t\treturn s + i;\n\t}\n");
+		}
+
+		if (lambdaNesting > 0) {
+			sb.append("\n\tpublic int nestedLambdas(int a0) {\n");
+			appendNestedLambda(sb, 1);
+			sb.append("\t\treturn f1.apply(a0);\n");
+			sb.append("\t}\n");
+		}
+		sb.append("\n}\n");
+		return sb.toString();
+	}
+
+	private void appendNestedLambda(StringBuilder sb, int level) {
+		String indent = StringUtils.repeat('\t', level + 1);
+		sb.append(indent).append("Function<Integer, Integer> f").append(level).append(" = a").append(level).append(" -> {\n");
+		if (level < lambdaNesting) {
+			appendNestedLambda(sb, level + 1);
+			sb.append(indent).append("\treturn f").append(level + 1).append(".apply(a").append(level).append(" + a").append(level - 1).append(");\n");
+		} else {
+			sb.append(indent).append("\treturn a").append(level).append(" * 2 + a").append(level - 1).append(";\n");
+		}
+		sb.append(indent).append("};\n");
+	}
+
+	private String generateGlobals(String packageName) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("package ").append(packageName).append(";\n\n");
+		sb.append("public class Globals {\n\n");
+		sb.append("\tpublic static int counter = 0;\n\n");
+		sb.append("\tpublic static int next() {\n\t\treturn ++counter;\n\t}\n\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	private String generateLibrary(String packageName) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("package ").append(packageName).append(";\n\n");
+		sb.append("import jsweet.lang.Ambient;\n\n");
+		sb.append("@Ambient\n");
+		sb.append("public class Lib {\n\n");
+		sb.append("\tpublic static native int compute(int value);\n\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	private String generateMain(List<GeneratedClass> classes) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("package ").append(ROOT_PACKAGE).append(";\n\n");
+		if (useGlobals) {
+			sb.append("import static jsweet.util.Globals.$export;\n\n");
+		}
+		sb.append("public class Main {\n\n");
+		sb.append("\tpublic static void main(String[] args) {\n");
+		sb.append("\t\tint total = 0;\n");
+		for (GeneratedClass generatedClass : classes) {
+			sb.append("\t\ttotal += new ").append(generatedClass.getQualifiedName()).append("(").append(generatedClass.index).append(").compute();\n");
+		}
+		if (useGlobals) {
+			sb.append("\t\t$export(\"total\", total);\n");
+		}
+		sb.append("\t}\n\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the number of generated classes.
+	 */
+	public int getClassCount() {
+		return classCount;
+	}
+
+	/**
+	 * Sets the number of generated classes (default is 100).
+	 */
+	public void setClassCount(int classCount) {
+		this.classCount = classCount;
+	}
+
+	/**
+	 * Gets the number of classes per package.
+	 */
+	public int getClassesPerPackage() {
+		return classesPerPackage;
+	}
+
+	/**
+	 * Sets the number of classes per package (default is 10).
+	 */
+	public void setClassesPerPackage(int classesPerPackage) {
+		this.classesPerPackage = classesPerPackage;
+	}
+
+	/**
+	 * Gets the depth of the generated packages.
+	 */
+	public int getPackageDepth() {
+		return packageDepth;
+	}
+
+	/**
+	 * Sets the depth of the generated packages, below the root package
+	 * (default is 2).
+	 */
+	public void setPackageDepth(int packageDepth) {
+		this.packageDepth = packageDepth;
+	}
+
+	/**
+	 * Gets the ratio of classes holding overloaded methods.
+	 */
+	public double getOverloadDensity() {
+		return overloadDensity;
+	}
+
+	/**
+	 * Sets the ratio (between 0 and 1) of classes holding overloaded methods
+	 * (default is 0.2).
+	 */
+	public void setOverloadDensity(double overloadDensity) {
+		this.overloadDensity = overloadDensity;
+	}
+
+	/**
+	 * Gets the nesting level of the lambdas generated in each class.
+	 */
+	public int getLambdaNesting() {
+		return lambdaNesting;
+	}
+
+	/**
+	 * Sets the nesting level of the lambdas generated in each class (default
+	 * is 2, 0 for no lambdas).
+	 */
+	public void setLambdaNesting(int lambdaNesting) {
+		this.lambdaNesting = lambdaNesting;
+	}
+
+	/**
+	 * Gets the number of classes of other packages each class depends on.
+	 */
+	public int getDependencyFanOut() {
+		return dependencyFanOut;
+	}
+
+	/**
+	 * Sets the number of classes of other packages each class depends on
+	 * (default is 3).
+	 */
+	public void setDependencyFanOut(int dependencyFanOut) {
+		this.dependencyFanOut = dependencyFanOut;
+	}
+
+	/**
+	 * Tells if the classes use an ambient library declared in a
+	 * <code>@Module</code> package.
+	 */
+	public boolean isUseModuleAnnotation() {
+		return useModuleAnnotation;
+	}
+
+	/**
+	 * Sets the classes to use an ambient library declared in a
+	 * <code>@Module</code> package (default is false). The generated project
+	 * must then be transpiled with a module kind.
+	 */
+	public void setUseModuleAnnotation(boolean useModuleAnnotation) {
+		this.useModuleAnnotation = useModuleAnnotation;
+	}
+
+	/**
+	 * Tells if the classes use package globals and
+	 * <code>jsweet.util.Globals</code>.
+	 */
+	public boolean isUseGlobals() {
+		return useGlobals;
+	}
+
+	/**
+	 * Sets the classes to use package globals and
+	 * <code>jsweet.util.Globals</code> (default is true).
+	 */
+	public void setUseGlobals(boolean useGlobals) {
+		this.useGlobals = useGlobals;
+	}
+
+}
@@ -24,16 +24,24 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.util.LinkedList;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.jsweet.JSweetCommandLineLauncher;
+import org.jsweet.transpiler.JSweetProblem;
 import org.jsweet.transpiler.JSweetTranspiler;
 import org.jsweet.transpiler.ModuleKind;
 import org.jsweet.transpiler.SourceFile;
+import org.jsweet.transpiler.TranspilationMetrics;
+import org.jsweet.transpiler.TranspilationMetrics.Phase;
+import org.jsweet.transpiler.util.EvaluationResult;
 import org.jsweet.transpiler.util.ProcessUtil;
 import org.jsweet.transpiler.util.Util;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import source.api.ForeachIteration;
 import source.overload.Overload;
+import source.overload.WrongOverloads;
 import source.structural.AbstractClass;
 
 public class TranspilerTests extends AbstractTest {
@@ -143,4 +151,235 @@ public class TranspilerTests extends AbstractTest {
 
 	}
 
+	@Test
+	public void testParallelTranspilation() throws Exception {
+		LinkedList<File> javaFiles = new LinkedList<>();
+		Util.addFiles(".java", new File(TEST_DIRECTORY_NAME + "/source/blocksgame"), javaFiles);
+		File serialOutDir = getTestOutputDir("serial");
+		File parallelOutDir = getTestOutputDir("parallel");
+
+		TestTranspilationHandler logHandler = new TestTranspilationHandler();
+		JSweetTranspiler serialTranspiler = createTranspiler(serialOutDir);
+		serialTranspiler.transpile(logHandler, SourceFile.toSourceFiles(javaFiles));
+		logHandler.assertReportedProblems();
+
+		JSweetTranspiler parallelTranspiler = createTranspiler(parallelOutDir);
+		parallelTranspiler.setTranspilationThreads(4);
+		parallelTranspiler.transpile(logHandler, SourceFile.toSourceFiles(javaFiles));
+		logHandler.assertReportedProblems();
+
+		LinkedList<File> serialTsFiles = new LinkedList<>();
+		Util.addFiles(".ts", serialOutDir, serialTsFiles);
+		assertFalse(serialTsFiles.isEmpty());
+		for (File serialTsFile : serialTsFiles) {
+			File parallelTsFile = parallelOutDir.toPath().resolve(serialOutDir.toPath().relativize(serialTsFile.toPath())).toFile();
+			assertEquals("generated code differs for " + serialTsFile, FileUtils.readFileToString(serialTsFile),
+					FileUtils.readFileToString(parallelTsFile));
+		}
+	}
+
+	@Test
+	public void testIncrementalTranspilation() throws Exception {
+		LinkedList<File> javaFiles = new LinkedList<>();
+		Util.addFiles(".java", new File(TEST_DIRECTORY_NAME + "/source/blocksgame"), javaFiles);
+		File outDir = getTestOutputDir(null);
+
+		TestTranspilationHandler logHandler = new TestTranspilationHandler();
+		JSweetTranspiler transpiler = createTranspiler(outDir);
+		transpiler.setIncremental(true);
+		transpiler.transpile(logHandler, SourceFile.toSourceFiles(javaFiles));
+		logHandler.assertReportedProblems();
+		assertTrue(new File(JSweetTranspiler.TMP_WORKING_DIR_NAME, JSweetTranspiler.DEPENDENCY_INDEX_FILE_NAME).exists());
+
+		File pointTsFile = new File(outDir, "source/blocksgame/util/Point.ts");
+		File directionTsFile = new File(outDir, "source/blocksgame/util/Direction.ts");
+		String pointTs = FileUtils.readFileToString(pointTsFile);
+		assertTrue(pointTsFile.delete());
+		assertTrue(directionTsFile.setLastModified(0));
+
+		// Point is translated again, but Direction does not depend on it
+		transpiler.transpile(logHandler, SourceFile.toSourceFiles(javaFiles));
+		logHandler.assertReportedProblems();
+		assertEquals(pointTs, FileUtils.readFileToString(pointTsFile));
+		assertEquals(0, directionTsFile.lastModified());
+	}
+
+	@Test
+	public void testDirectJavaScriptGeneration() throws Exception {
+		File outDir = getTestOutputDir(null);
+
+		TestTranspilationHandler logHandler = new TestTranspilationHandler();
+		JSweetTranspiler transpiler = createTranspiler(outDir);
+		transpiler.setGenerateJsDirectly(true);
+		EvaluationResult result = transpiler.eval(logHandler, getSourceFile(Overload.class));
+		logHandler.assertReportedProblems();
+		assertEquals("default1", result.<String> get("res1"));
+		assertEquals("s11", result.<String> get("res2"));
+		assertEquals("s22", result.<String> get("res3"));
+		assertTrue(new File(outDir, "source/overload/Overload.js").exists());
+		assertFalse(new File(outDir, "source/overload/Overload.ts").exists());
+
+		transpiler.setModuleKind(ModuleKind.commonjs);
+		logHandler = new TestTranspilationHandler();
+		transpiler.transpile(logHandler, getSourceFile(Overload.class));
+		logHandler.assertReportedProblems(JSweetProblem.DIRECT_JS_WITH_MODULES);
+		// the metrics of an aborted transpilation are also notified
+		TranspilationMetrics[] notifiedMetrics = { null };
+		transpiler.addMetricsListener((t, metrics) -> notifiedMetrics[0] = metrics);
+		transpiler.transpile(new TestTranspilationHandler(), getSourceFile(Overload.class));
+		assertTrue(transpiler.getLastMetrics() == notifiedMetrics[0]);
+		assertEquals(1, notifiedMetrics[0].getErrors());
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		TestTranspilationHandler logHandler = new TestTranspilationHandler();
+		JSweetTranspiler transpiler = createTranspiler(getTestOutputDir(null));
+		TranspilationMetrics[] notifiedMetrics = { null };
+		transpiler.addMetricsListener((t, metrics) -> notifiedMetrics[0] = metrics);
+		transpiler.transpile(logHandler, getSourceFile(Overload.class), getSourceFile(AbstractClass.class));
+		logHandler.assertReportedProblems();
+
+		TranspilationMetrics metrics = transpiler.getLastMetrics();
+		assertTrue(metrics == notifiedMetrics[0]);
+		assertEquals(2, metrics.getFiles());
+		assertEquals(2, metrics.getUnits().size());
+		for (Phase phase : new Phase[] { Phase.CANDIES, Phase.PARSE, Phase.ENTER, Phase.ATTRIBUTE, Phase.OVERLOAD_SCAN, Phase.PRINT, Phase.WRITE }) {
+			assertTrue("missing phase " + phase, metrics.getPhase(phase) != null);
+		}
+		assertTrue(metrics.getPhase(Phase.TSC) == null);
+		assertTrue(metrics.getVisitedNodes() > 0);
+		assertTrue(metrics.getEmittedBytes() > 0);
+		assertTrue(metrics.toJson().contains("\"OVERLOAD_SCAN\""));
+	}
+
+	@Test
+	public void testBoundedMemoryTranspilation() throws Exception {
+		LinkedList<File> javaFiles = new LinkedList<>();
+		Util.addFiles(".java", new File(TEST_DIRECTORY_NAME + "/source/blocksgame"), javaFiles);
+		for (ModuleKind moduleKind : new ModuleKind[] { ModuleKind.none, ModuleKind.commonjs }) {
+			File defaultOutDir = getTestOutputDir(moduleKind + "/default");
+			File boundedOutDir = getTestOutputDir(moduleKind + "/bounded");
+
+			TestTranspilationHandler logHandler = new TestTranspilationHandler();
+			JSweetTranspiler defaultTranspiler = createTranspiler(defaultOutDir);
+			defaultTranspiler.setModuleKind(moduleKind);
+			defaultTranspiler.transpile(logHandler, SourceFile.toSourceFiles(javaFiles));
+			logHandler.assertReportedProblems();
+
+			JSweetTranspiler boundedTranspiler = createTranspiler(boundedOutDir);
+			boundedTranspiler.setModuleKind(moduleKind);
+			boundedTranspiler.setBoundedMemory(true);
+			boundedTranspiler.transpile(logHandler, SourceFile.toSourceFiles(javaFiles));
+			logHandler.assertReportedProblems();
+
+			LinkedList<File> defaultTsFiles = new LinkedList<>();
+			Util.addFiles(".ts", defaultOutDir, defaultTsFiles);
+			assertFalse(defaultTsFiles.isEmpty());
+			for (File defaultTsFile : defaultTsFiles) {
+				File boundedTsFile = boundedOutDir.toPath().resolve(defaultOutDir.toPath().relativize(defaultTsFile.toPath())).toFile();
+				assertEquals("generated code differs for " + defaultTsFile, FileUtils.readFileToString(defaultTsFile),
+						FileUtils.readFileToString(boundedTsFile));
+			}
+		}
+	}
+
+	@Test
+	public void testUnchangedOutputIsNotRewritten() throws Exception {
+		File outDir = getTestOutputDir(null);
+		SourceFile[] sourceFiles = { getSourceFile(Overload.class) };
+		TestTranspilationHandler logHandler = new TestTranspilationHandler();
+		JSweetTranspiler transpiler = createTranspiler(outDir);
+		transpiler.setModuleKind(ModuleKind.commonjs);
+		transpiler.transpile(logHandler, sourceFiles);
+		logHandler.assertReportedProblems();
+		assertTrue(transpiler.getLastMetrics().getEmittedBytes() > 0);
+
+		File tsFile = new File(outDir, "source/overload/module.ts");
+		assertTrue(tsFile.exists());
+		String content = FileUtils.readFileToString(tsFile);
+
+		transpiler.transpile(logHandler, sourceFiles);
+		logHandler.assertReportedProblems();
+		assertEquals(0, transpiler.getLastMetrics().getEmittedBytes());
+
+		// a file modified by someone else is written again
+		FileUtils.write(tsFile, "modified");
+		transpiler.transpile(logHandler, sourceFiles);
+		logHandler.assertReportedProblems();
+		assertEquals(tsFile.length(), transpiler.getLastMetrics().getEmittedBytes());
+		assertEquals(content, FileUtils.readFileToString(tsFile));
+	}
+
+	@Test
+	public void testDeterministicGeneratedIdentifiers() throws Exception {
+		TestTranspilationHandler logHandler = new TestTranspilationHandler();
+		JSweetTranspiler transpiler = createTranspiler(getTestOutputDir(null));
+		SourceFile foreachIteration = getSourceFile(ForeachIteration.class);
+		transpiler.transpile(logHandler, foreachIteration);
+		logHandler.assertReportedProblems();
+		String content = FileUtils.readFileToString(foreachIteration.getTsFile());
+		// generated identifiers are numbered per method
+		assertEquals(2, StringUtils.countMatches(content, "var __it_0=0;"));
+
+		// the generated code does not depend on the previously transpiled
+		// files
+		transpiler.transpile(logHandler, getSourceFile(Overload.class), foreachIteration);
+		logHandler.assertReportedProblems();
+		assertEquals(content, FileUtils.readFileToString(foreachIteration.getTsFile()));
+	}
+
+	@Test
+	public void testTranslationCache() throws Exception {
+		File cacheDir = getTestOutputDir("cache");
+		FileUtils.deleteQuietly(cacheDir);
+		String[] outputs = new String[2];
+		for (int run = 0; run < 2; run++) {
+			JSweetTranspiler transpiler = createTranspiler(getTestOutputDir("out" + run));
+			transpiler.setTranslationCacheDirectory(cacheDir);
+			TestTranspilationHandler logHandler = new TestTranspilationHandler();
+			SourceFile overload = getSourceFile(Overload.class);
+			transpiler.transpile(logHandler, overload, getSourceFile(WrongOverloads.class));
+			// the problems are reported again when the translation comes from
+			// the cache
+			logHandler.assertReportedProblems(JSweetProblem.INVALID_OVERLOAD, JSweetProblem.INVALID_OVERLOAD, JSweetProblem.INVALID_OVERLOAD,
+					JSweetProblem.INVALID_OVERLOAD, JSweetProblem.INVALID_OVERLOAD, JSweetProblem.INVALID_OVERLOAD);
+			outputs[run] = FileUtils.readFileToString(overload.getTsFile());
+			assertEquals(run == 0 ? 2 : 0, transpiler.getLastMetrics().getUnits().size());
+		}
+		assertEquals(outputs[0], outputs[1]);
+	}
+
+	@Test
+	public void testTscService() throws Exception {
+		File outDir = getTestOutputDir(null);
+		JSweetTranspiler transpiler = createTranspiler(outDir);
+		// the service compiles the generated TypeScript files
+		transpiler.setGenerateJsFiles(true);
+		transpiler.setUseTscService(true);
+		try {
+			TestTranspilationHandler logHandler = new TestTranspilationHandler();
+			EvaluationResult result = transpiler.eval(logHandler, getSourceFile(Overload.class));
+			logHandler.assertReportedProblems();
+			assertEquals("default1", result.<String> get("res1"));
+			File jsFile = new File(outDir, "source/overload/Overload.js");
+			assertTrue(jsFile.exists());
+
+			// the service does not emit the files that are up to date
+			assertTrue(jsFile.setLastModified(0));
+			transpiler.transpile(logHandler, getSourceFile(Overload.class));
+			logHandler.assertReportedProblems();
+			assertEquals(0, jsFile.lastModified());
+
+			// a missing output file is emitted again
+			assertTrue(jsFile.delete());
+			transpiler.transpile(logHandler, getSourceFile(Overload.class));
+			logHandler.assertReportedProblems();
+			assertTrue(jsFile.exists());
+		} finally {
+			transpiler.setUseTscService(false);
+		}
+		assertFalse(transpiler.isUseTscService());
+	}
+
 }
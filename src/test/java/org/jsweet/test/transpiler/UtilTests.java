@@ -18,6 +18,9 @@ package org.jsweet.test.transpiler;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.StringWriter;
+
+import org.jsweet.transpiler.util.OutputBuffer;
 import org.jsweet.transpiler.util.Util;
 import org.junit.Test;
 
@@ -34,5 +37,37 @@ public class UtilTests {
 		assertEquals("../..", Util.getRelativePath("/a/b/c", "/a"));
 		assertEquals("..", Util.getRelativePath("/a/b/c", "/a/b"));
 	}
+
+	@Test
+	public void testOutputBuffer() throws Exception {
+		OutputBuffer buffer = new OutputBuffer();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < OutputBuffer.CHUNK_SIZE / 4; i++) {
+			buffer.append("line " + i).append('\n');
+			expected.append("line " + i).append('\n');
+		}
+		buffer.append("\u00e9t\u00e9 \ud83d\ude00");
+		expected.append("\u00e9t\u00e9 \ud83d\ude00");
+		assertEquals(expected.length(), buffer.length());
+		assertEquals(expected.toString(), buffer.toString());
+		assertEquals(expected.charAt(OutputBuffer.CHUNK_SIZE), buffer.charAt(OutputBuffer.CHUNK_SIZE));
+		assertEquals(Util.getHash(expected.toString()), Util.getHash(buffer));
+
+		int mark = OutputBuffer.CHUNK_SIZE + 3;
+		buffer.truncate(mark);
+		expected.setLength(mark);
+		assertEquals(expected.toString(), buffer.toString());
+		assertEquals(expected.charAt(mark - 1), buffer.getLastChar());
+
+		buffer.append("end");
+		expected.append("end");
+		StringWriter writer = new StringWriter();
+		buffer.writeTo(writer);
+		assertEquals(expected.toString(), writer.toString());
+
+		buffer.release();
+		assertEquals(0, buffer.length());
+		assertEquals("", buffer.toString());
+	}
 	
 }
@@ -0,0 +1,74 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jsweet.transpiler.candies;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * Tests the shared candies cache, which is package-private.
+ */
+public class SharedCandiesCacheTests {
+
+	@Test
+	public void testConcurrentRestoreOrProduce() throws Exception {
+		File workingDir = new File("tempOut/" + getClass().getSimpleName() + ".testConcurrentRestoreOrProduce");
+		FileUtils.deleteQuietly(workingDir);
+		SharedCandiesCache cache = new SharedCandiesCache(new File(workingDir, "cache"));
+		AtomicInteger producerRuns = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int i = 0; i < 2; i++) {
+				File candiesDir = new File(workingDir, "candies" + i);
+				File processedFile = new File(candiesDir, "processed/file.txt");
+				results.add(executor.submit(() -> {
+					start.await();
+					cache.restoreOrProduce("key", candiesDir, asList(processedFile.getParentFile()), () -> {
+						producerRuns.incrementAndGet();
+						FileUtils.write(processedFile, "processed");
+					});
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, producerRuns.get());
+		for (int i = 0; i < 2; i++) {
+			assertEquals("processed", FileUtils.readFileToString(new File(workingDir, "candies" + i + "/processed/file.txt")));
+		}
+	}
+
+}
@@ -0,0 +1,47 @@
+/* 
+ * JSweet - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package source.syntax;
+
+import static jsweet.util.Globals.$export;
+
+public class MemberInvocations {
+
+	MemberInvocations valueRef;
+
+	int count = 0;
+
+	MemberInvocations value() {
+		count++;
+		return this;
+	}
+
+	void run() {
+		// the targets start with the name of the invoked method
+		valueRef.value();
+		this.valueRef.value();
+		value();
+		this.value();
+	}
+
+	public static void main(String[] args) {
+		MemberInvocations m = new MemberInvocations();
+		m.valueRef = m;
+		m.run();
+		$export("count", m.count);
+	}
+
+}